@@ -1,13 +1,17 @@
 package com.hmdp.config;
 
+import com.hmdp.utils.AdminInterceptor;
+import com.hmdp.utils.CachePolicyRegistry;
 import com.hmdp.utils.LoginInterceptor;
 import com.hmdp.utils.RefreshTokenInterceptor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import javax.annotation.Resource;
+import java.util.Set;
 
 
 @Configuration
@@ -16,10 +20,17 @@ public class MvcConfig implements WebMvcConfigurer {
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private CachePolicyRegistry cachePolicyRegistry;
+
+    // 可以访问运维接口的用户id
+    @Value("${hmdp.admin.user-ids:}")
+    private Set<Long> adminUserIds;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         // 1. Token刷新拦截器（拦截所有请求，优先级最高）
-        registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate))
+        registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate, cachePolicyRegistry))
                 .addPathPatterns("/**")
                 .order(0);
         
@@ -35,6 +46,11 @@ public class MvcConfig implements WebMvcConfigurer {
                         "/blog/hot"
                 )
                 .order(1);
+
+        // 3. 运维接口权限拦截器（只允许管理员访问）
+        registry.addInterceptor(new AdminInterceptor(adminUserIds))
+                .addPathPatterns("/admin/**")
+                .order(2);
     }
 
 }
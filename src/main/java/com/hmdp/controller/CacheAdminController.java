@@ -0,0 +1,161 @@
+package com.hmdp.controller;
+
+import com.hmdp.dto.Result;
+import com.hmdp.utils.BloomFilterRegistry;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CachePolicy;
+import com.hmdp.utils.CachePolicyRegistry;
+import com.hmdp.utils.HotKeyCache;
+import com.hmdp.utils.LocalCache;
+import com.hmdp.utils.RedisBloomFilter;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * 缓存运维接口，查看本地缓存、布隆过滤器等运行指标，调整缓存过期策略
+ * </p>
+ */
+@RestController
+@RequestMapping("/admin/cache")
+public class CacheAdminController {
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private BloomFilterRegistry bloomFilterRegistry;
+
+    @Resource
+    private CachePolicyRegistry cachePolicyRegistry;
+
+    @Resource
+    private HotKeyCache hotKeyCache;
+
+    /**
+     * 本地缓存、请求合并与提前刷新的统计信息
+     */
+    @GetMapping("/stats")
+    public Result stats() {
+        LocalCache localCache = cacheClient.getLocalCache();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("localSize", localCache.size());
+        stats.put("localHitCount", localCache.getHitCount());
+        stats.put("localMissCount", localCache.getMissCount());
+        stats.put("localEvictionCount", localCache.getEvictionCount());
+        stats.put("singleFlightInFlight", cacheClient.getSingleFlight().inFlightCount());
+        stats.put("singleFlightSharedCount", cacheClient.getSingleFlight().getSharedCount());
+        stats.put("earlyRefreshCount", cacheClient.getEarlyRefreshCount());
+        return Result.ok(stats);
+    }
+
+    /**
+     * 缓存重建调度器的统计信息：跟踪的key数量、队列深度、去重/丢弃/限速次数、重建耗时
+     */
+    @GetMapping("/refresh")
+    public Result refresh() {
+        return Result.ok(cacheClient.getRefreshAheadScheduler().stats());
+    }
+
+    /**
+     * 布隆过滤器的统计信息，包括估算误判率和实际观测到的误判率
+     */
+    @GetMapping("/bloom")
+    public Result bloom() {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (RedisBloomFilter filter : bloomFilterRegistry.all()) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("name", filter.getName());
+            stats.put("numBits", filter.getNumBits());
+            stats.put("numHashFunctions", filter.getNumHashFunctions());
+            stats.put("queryCount", filter.getQueryCount());
+            stats.put("rejectCount", filter.getRejectCount());
+            stats.put("falsePositiveCount", filter.getFalsePositiveCount());
+            stats.put("estimatedFpp", filter.estimatedFpp());
+            stats.put("observedFpp", filter.observedFpp());
+            list.add(stats);
+        }
+        return Result.ok(list);
+    }
+
+    /**
+     * 当前节点探测到的热点key，按滑动窗口内的估计访问量降序
+     */
+    @GetMapping("/hotkeys")
+    public Result hotKeys() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("threshold", hotKeyCache.getDetector().getThreshold());
+        result.put("pinnedSize", hotKeyCache.getPinned().size());
+        result.put("pinnedHitCount", hotKeyCache.getPinned().getHitCount());
+        List<Map<String, Object>> keys = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : hotKeyCache.getDetector().topK().entrySet()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("key", entry.getKey());
+            item.put("estimatedCount", entry.getValue());
+            item.put("hot", entry.getValue() >= hotKeyCache.getDetector().getThreshold());
+            keys.add(item);
+        }
+        result.put("keys", keys);
+        return Result.ok(result);
+    }
+
+    /**
+     * 当前生效的过期策略，以及各前缀预计过期时间的分布
+     */
+    @GetMapping("/policy")
+    public Result policy() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("policies", cachePolicyRegistry.policies());
+        result.put("expiryDistribution", cachePolicyRegistry.expiryDistribution());
+        return Result.ok(result);
+    }
+
+    /**
+     * 运行时覆盖某个前缀的过期策略，只对当前节点生效
+     *
+     * @param prefix        key前缀
+     * @param jitter        随机抖动比例
+     * @param minTtlSeconds TTL下限(秒)
+     * @param maxTtlSeconds TTL上限(秒)
+     * @param ttlSeconds    固定TTL(秒)，设置后忽略代码中的TTL
+     */
+    @PutMapping("/policy")
+    public Result overridePolicy(@RequestParam("prefix") String prefix,
+                                 @RequestParam(value = "jitter", defaultValue = "0.1") Double jitter,
+                                 @RequestParam(value = "minTtlSeconds", required = false) Long minTtlSeconds,
+                                 @RequestParam(value = "maxTtlSeconds", required = false) Long maxTtlSeconds,
+                                 @RequestParam(value = "ttlSeconds", required = false) Long ttlSeconds) {
+        CachePolicy policy;
+        try {
+            policy = new CachePolicy(jitter, toMillis(minTtlSeconds), toMillis(maxTtlSeconds), toMillis(ttlSeconds));
+        } catch (IllegalArgumentException e) {
+            return Result.fail(e.getMessage());
+        }
+        cachePolicyRegistry.override(prefix, policy);
+        return Result.ok();
+    }
+
+    /**
+     * 取消运行时覆盖，恢复配置的过期策略
+     */
+    @DeleteMapping("/policy")
+    public Result clearPolicy(@RequestParam("prefix") String prefix) {
+        cachePolicyRegistry.clearOverride(prefix);
+        return Result.ok();
+    }
+
+    private static long toMillis(Long seconds) {
+        return seconds == null ? CachePolicy.UNSET : TimeUnit.SECONDS.toMillis(seconds);
+    }
+}
@@ -0,0 +1,30 @@
+package com.hmdp.controller;
+
+import com.hmdp.dto.Result;
+import com.hmdp.utils.HybridLock;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+
+/**
+ * <p>
+ * 锁运维接口，查看各业务锁的竞争情况
+ * </p>
+ */
+@RestController
+@RequestMapping("/admin/lock")
+public class LockAdminController {
+
+    @Resource
+    private HybridLock hybridLock;
+
+    /**
+     * 按锁名称统计的获取次数、本地竞争次数、超时次数和等待时间
+     */
+    @GetMapping("/stats")
+    public Result stats() {
+        return Result.ok(hybridLock.stats());
+    }
+}
@@ -0,0 +1,92 @@
+package com.hmdp.controller;
+
+import com.hmdp.dto.Result;
+import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.StreamBacklogMonitor;
+import com.hmdp.utils.StreamDeadLetterQueue;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+
+/**
+ * <p>
+ * 秒杀运维接口，查看订单消息的积压情况，查看和重放死信队列，补充秒杀库存
+ * </p>
+ */
+@RestController
+@RequestMapping("/admin/seckill")
+public class SeckillAdminController {
+
+    @Resource
+    private StreamDeadLetterQueue deadLetterQueue;
+
+    @Resource
+    private StreamBacklogMonitor backlogMonitor;
+
+    @Resource
+    private IVoucherService voucherService;
+
+    /**
+     * 订单Stream的长度、pending消息数、消费延迟、过载拒绝次数和裁剪情况
+     */
+    @GetMapping("/backlog")
+    public Result backlog() {
+        return Result.ok(backlogMonitor.stats());
+    }
+
+    /**
+     * 死信队列中最新的消息，包含原订单字段、失败原因和投递次数
+     *
+     * @param count 最多返回的消息数
+     */
+    @GetMapping("/dlq")
+    public Result deadLetters(@RequestParam(value = "count", defaultValue = "20") Integer count) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("stream", StreamDeadLetterQueue.dlqKey(SECKILL_ORDER_STREAM));
+        result.put("size", deadLetterQueue.size(SECKILL_ORDER_STREAM));
+        result.put("messages", deadLetterQueue.list(SECKILL_ORDER_STREAM, Math.max(1, count)));
+        return Result.ok(result);
+    }
+
+    /**
+     * 把一条死信消息重新投递到订单Stream，修复导致失败的问题后调用
+     *
+     * @param id 死信消息的id
+     */
+    @PostMapping("/dlq/{id}/replay")
+    public Result replay(@PathVariable("id") String id) {
+        RecordId newId = deadLetterQueue.replay(SECKILL_ORDER_STREAM, id);
+        if (newId == null) {
+            return Result.fail("死信消息不存在！");
+        }
+        return Result.ok(newId.getValue());
+    }
+
+    /**
+     * 补充秒杀券库存
+     *
+     * @param voucherId 优惠券id
+     * @param amount    补充的数量
+     */
+    @PutMapping("/{id}/stock")
+    public Result replenishStock(@PathVariable("id") Long voucherId, @RequestParam("amount") Integer amount) {
+        if (amount == null || amount <= 0) {
+            return Result.fail("补充数量必须大于0");
+        }
+        if (!voucherService.replenishSeckillStock(voucherId, amount)) {
+            return Result.fail("秒杀券不存在");
+        }
+        return Result.ok();
+    }
+}
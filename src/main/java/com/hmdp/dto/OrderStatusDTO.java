@@ -0,0 +1,38 @@
+package com.hmdp.dto;
+
+import lombok.Data;
+
+/**
+ * 异步秒杀订单的处理状态
+ */
+@Data
+public class OrderStatusDTO {
+    /**
+     * 已进入队列，还没有处理结果
+     */
+    public static final String PROCESSING = "PROCESSING";
+    /**
+     * 落库失败，等待重试
+     */
+    public static final String RETRYING = "RETRYING";
+    /**
+     * 下单成功
+     */
+    public static final String SUCCESS = "SUCCESS";
+    /**
+     * 下单失败，不会再重试
+     */
+    public static final String FAILED = "FAILED";
+
+    private Long orderId;
+    private Long voucherId;
+    private String status;
+    /**
+     * 失败原因，只有RETRYING和FAILED状态有值
+     */
+    private String reason;
+    /**
+     * 状态更新时间(毫秒时间戳)
+     */
+    private Long updateTime;
+}
@@ -28,6 +28,13 @@ public interface IBlogService extends IService<Blog> {
      */
     Result queryBlogById(Long id);
 
+    /**
+     * 根据ID查询探店笔记，结果会被缓存，不包含作者信息和点赞状态
+     * @param id 笔记ID
+     * @return 笔记，不存在时返回null
+     */
+    Blog queryBlog(Long id);
+
     /**
      * 点赞博客
      * @param id 博客ID
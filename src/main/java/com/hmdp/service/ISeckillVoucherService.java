@@ -13,4 +13,15 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface ISeckillVoucherService extends IService<SeckillVoucher> {
 
+    /**
+     * 查询秒杀券，先查本地缓存和Redis缓存，由预热任务提前写入
+     */
+    SeckillVoucher queryCached(Long voucherId);
+
+    /**
+     * 预热即将开始和进行中的秒杀：恢复丢失的库存和下单用户集合，写入秒杀券缓存
+     *
+     * @return 重新写入库存的秒杀券数量
+     */
+    int preheat();
 }
@@ -4,6 +4,8 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.ShopType;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -19,4 +21,10 @@ public interface IShopTypeService extends IService<ShopType> {
      * @return 店铺类型列表
      */
     Result queryTypeList();
+
+    /**
+     * 按sort排序查询店铺类型，结果会被缓存
+     * @return 店铺类型列表，不存在时返回null
+     */
+    List<ShopType> listTypes();
 }
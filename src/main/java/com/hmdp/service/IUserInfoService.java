@@ -13,4 +13,10 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IUserInfoService extends IService<UserInfo> {
 
+    /**
+     * 查询用户详情，结果会被缓存，不包含创建和更新时间
+     * @param userId 用户id
+     * @return 用户详情，没有详情时返回null
+     */
+    UserInfo queryUserInfo(Long userId);
 }
@@ -4,6 +4,8 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -21,4 +23,20 @@ public interface IVoucherOrderService extends IService<VoucherOrder> {
      * @param voucherOrder 订单信息
      */
     void createVoucherOrder(VoucherOrder voucherOrder);
+
+    /**
+     * 批量创建优惠券订单（异步调用），整批在一个事务中完成
+     * 批内重复的订单会被跳过，每种优惠券只扣减一次库存，订单用一条多行INSERT保存
+     * 与已有订单重复时唯一索引抛出DuplicateKeyException，整批回滚
+     * @param voucherOrders 订单信息
+     * @return 成功保存的订单，批内重复或库存不足的订单不在其中
+     */
+    List<VoucherOrder> createVoucherOrders(List<VoucherOrder> voucherOrders);
+
+    /**
+     * 查询异步秒杀订单的处理状态，优先读取Redis中的状态记录，没有记录时按主键查询订单
+     * 下单成功时已经写入PROCESSING记录，记录和订单都不存在时返回订单不存在
+     * @param orderId 秒杀接口返回的订单id
+     */
+    Result queryOrderStatus(Long orderId);
 }
@@ -4,6 +4,8 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -16,5 +18,26 @@ public interface IVoucherService extends IService<Voucher> {
 
     Result queryVoucherOfShop(Long shopId);
 
+    /**
+     * 查询店铺的优惠券列表，结果会被缓存
+     * @param shopId 店铺id
+     * @return 优惠券列表
+     */
+    List<Voucher> listVoucherOfShop(Long shopId);
+
+    /**
+     * 新增普通券，并删除店铺优惠券列表的缓存
+     * @param voucher 优惠券信息
+     */
+    void addVoucher(Voucher voucher);
+
     void addSeckillVoucher(Voucher voucher);
+
+    /**
+     * 补充秒杀券库存，同时更新数据库和Redis中的库存，并清除售罄标记
+     * @param voucherId 优惠券id
+     * @param amount 补充的数量
+     * @return 是否补充成功，秒杀券不存在时返回false
+     */
+    boolean replenishSeckillStock(Long voucherId, int amount);
 }
@@ -13,20 +13,33 @@ import com.hmdp.service.IBlogService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.service.IFollowService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.HotKeyCache;
+import com.hmdp.utils.HybridLock;
+import com.hmdp.utils.RedisCache;
+import com.hmdp.utils.RedisCacheEvict;
 import com.hmdp.utils.UserHolder;
 import cn.hutool.core.util.StrUtil;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.springframework.data.redis.core.ZSetOperations;
 import static com.hmdp.utils.RedisConstants.BLOG_LIKED_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_USER_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_USER_TTL;
 import static com.hmdp.utils.RedisConstants.FEED_KEY;
 
 /**
@@ -49,7 +62,21 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
     @Resource
     private IFollowService followService;
 
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private HotKeyCache hotKeyCache;
+
+    @Resource
+    private HybridLock hybridLock;
+
+    @Lazy
+    @Resource
+    private IBlogService proxyBlogService; // 通过自身代理调用，缓存注解才会生效
+
     @Override
+    @RedisCacheEvict(prefix = CACHE_BLOG_KEY, key = "#blog.id")
     public Result saveBlog(Blog blog) {
         // 获取登录用户
         UserDTO user = UserHolder.getUser();
@@ -83,11 +110,12 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
 
     @Override
     public Result queryBlogById(Long id) {
-        // 1. 查询博客
-        Blog blog = getById(id);
-        if (blog == null) {
+        // 1. 查询博客，缓存中的对象会被多个请求共享，复制后再补充用户信息和点赞状态
+        Blog cached = proxyBlogService.queryBlog(id);
+        if (cached == null) {
             return Result.fail("笔记不存在");
         }
+        Blog blog = BeanUtil.copyProperties(cached, Blog.class);
         
         // 2. 查询博客相关的用户信息
         queryBlogUser(blog);
@@ -99,12 +127,26 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
     }
 
     @Override
+    @RedisCache(prefix = CACHE_BLOG_KEY, key = "#id", strategy = RedisCache.Strategy.MUTEX)
+    public Blog queryBlog(Long id) {
+        return getById(id);
+    }
+
+    @Override
+    @RedisCacheEvict(prefix = CACHE_BLOG_KEY, key = "#id")
     public Result likeBlog(Long id) {
         // 1. 获取登录用户
         Long userId = UserHolder.getUser().getId();
-        
+        // 同一用户的点赞、取消点赞串行执行，并发的重复点击不会把点赞数加两次
+        return hybridLock.execute("like", userId,
+                () -> doLikeBlog(userId, id),
+                () -> Result.fail("操作太频繁，请稍后重试！"));
+    }
+
+    private Result doLikeBlog(Long userId, Long id) {
         // 2. 判断当前用户是否已经点赞
         String key = BLOG_LIKED_KEY + id;
+        hotKeyCache.record(key);
         Double score = stringRedisTemplate.opsForZSet().score(key, userId.toString());
         
         if (score == null) {
@@ -124,6 +166,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
                 stringRedisTemplate.opsForZSet().remove(key, userId.toString());
             }
         }
+        // 5. 点赞列表变化，清除各节点固定在本地的Top5点赞用户
+        cacheClient.invalidateLocal(key);
         
         return Result.ok();
     }
@@ -131,8 +175,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
     @Override
     public Result queryBlogLikes(Long id) {
         String key = BLOG_LIKED_KEY + id;
-        // 1. 查询Top5的点赞用户 zrange key 0 4
-        Set<String> top5 = stringRedisTemplate.opsForZSet().range(key, 0, 4);
+        // 1. 查询Top5的点赞用户 zrange key 0 4，热点博客的结果固定在本地
+        Set<String> top5 = hotKeyCache.getOrLoad(key, () -> stringRedisTemplate.opsForZSet().range(key, 0, 4));
         if (top5 == null || top5.isEmpty()) {
             return Result.ok(Collections.emptyList());
         }
@@ -140,16 +184,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         // 2. 解析出其中的用户id
         List<Long> ids = top5.stream().map(Long::valueOf).collect(Collectors.toList());
         
-        // 3. 根据用户id查询用户信息 WHERE id IN (5, 1) ORDER BY FIELD(id, 5, 1)
-        // 注意：需要按照ids的顺序查询，使用ORDER BY FIELD
-        String idStr = StrUtil.join(",", ids);
-        List<UserDTO> userDTOS = userService.query()
-                .in("id", ids)
-                .last("ORDER BY FIELD(id," + idStr + ")")
-                .list()
-                .stream()
-                .map(user -> BeanUtil.copyProperties(user, UserDTO.class))
-                .collect(Collectors.toList());
+        // 3. 根据用户id批量查询用户信息，结果按照ids的顺序排列
+        List<UserDTO> userDTOS = queryUsers(ids);
         
         // 4. 返回
         return Result.ok(userDTOS);
@@ -194,9 +230,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
                 .list();
         
         // 6. 补充blog的用户信息和点赞状态
+        queryBlogUsers(blogs);
         for (Blog blog : blogs) {
-            // 查询blog相关的用户
-            queryBlogUser(blog);
             // 查询blog是否被点赞
             isBlogLiked(blog);
         }
@@ -222,6 +257,41 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         }
     }
 
+    /**
+     * 批量查询博客关联的用户信息，一次MGET查询缓存，未命中的用户一次IN查询数据库
+     */
+    private void queryBlogUsers(List<Blog> blogs) {
+        if (blogs.isEmpty()) {
+            return;
+        }
+        List<Long> userIds = blogs.stream().map(Blog::getUserId).distinct().collect(Collectors.toList());
+        Map<Long, UserDTO> userMap = queryUsers(userIds).stream()
+                .collect(Collectors.toMap(UserDTO::getId, Function.identity()));
+        for (Blog blog : blogs) {
+            UserDTO user = userMap.get(blog.getUserId());
+            if (user != null) {
+                blog.setName(user.getNickName());
+                blog.setIcon(user.getIcon());
+            }
+        }
+    }
+
+    /**
+     * 根据id批量查询用户，只缓存UserDTO中的公开字段
+     */
+    private List<UserDTO> queryUsers(List<Long> ids) {
+        return cacheClient.queryBatchWithPassThrough(
+                CACHE_USER_KEY, ids, UserDTO.class, this::listUserDTOByIds, UserDTO::getId,
+                CACHE_USER_TTL, TimeUnit.MINUTES);
+    }
+
+    private List<UserDTO> listUserDTOByIds(Collection<Long> ids) {
+        return userService.listByIds(ids)
+                .stream()
+                .map(user -> BeanUtil.copyProperties(user, UserDTO.class))
+                .collect(Collectors.toList());
+    }
+
     @Override
     public Result queryHotBlog(Integer current) {
         // 根据用户查询
@@ -231,10 +301,8 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         // 获取当前页数据
         List<Blog> records = page.getRecords();
         // 查询用户信息和点赞状态
-        records.forEach(blog -> {
-            queryBlogUser(blog);
-            isBlogLiked(blog);
-        });
+        queryBlogUsers(records);
+        records.forEach(this::isBlogLiked);
         return Result.ok(records);
     }
 
@@ -252,6 +320,7 @@ public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IB
         
         // 2. 判断当前用户是否已经点赞
         String key = BLOG_LIKED_KEY + blog.getId();
+        hotKeyCache.record(key);
         Double score = stringRedisTemplate.opsForZSet().score(key, userId.toString());
         blog.setIsLike(score != null);
     }
@@ -9,6 +9,7 @@ import com.hmdp.mapper.FollowMapper;
 import com.hmdp.service.IFollowService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.HybridLock;
 import com.hmdp.utils.UserHolder;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
@@ -36,15 +37,33 @@ public class FollowServiceImpl extends ServiceImpl<FollowMapper, Follow> impleme
     @Resource
     private IUserService userService;
 
+    @Resource
+    private HybridLock hybridLock;
+
     @Override
     public Result follow(Long followUserId, Boolean isFollow) {
         // 1. 获取登录用户
         Long userId = UserHolder.getUser().getId();
+        // 同一用户的关注、取关串行执行，重复点击不会插入重复的关注记录
+        return hybridLock.execute("follow", userId,
+                () -> doFollow(userId, followUserId, isFollow),
+                () -> Result.fail("操作太频繁，请稍后重试！"));
+    }
+
+    private Result doFollow(Long userId, Long followUserId, Boolean isFollow) {
         String key = "follow:" + userId;
         
         // 2. 判断是关注还是取关
         if (isFollow) {
-            // 3. 关注，新增数据
+            // 3. 关注，已经关注过时直接返回
+            Long count = query()
+                    .eq("user_id", userId)
+                    .eq("follow_user_id", followUserId)
+                    .count();
+            if (count > 0) {
+                return Result.ok();
+            }
+            // 新增数据
             Follow follow = new Follow();
             follow.setUserId(userId);
             follow.setFollowUserId(followUserId);
@@ -1,11 +1,34 @@
 package com.hmdp.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.VoucherOrder;
 import com.hmdp.mapper.SeckillVoucherMapper;
+import com.hmdp.mapper.VoucherOrderMapper;
 import com.hmdp.service.ISeckillVoucherService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.ShardedStockCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SECKILL_VOUCHER_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SECKILL_VOUCHER_TTL;
+
 /**
  * <p>
  * 秒杀优惠券表，与优惠券是一对一关系 服务实现类
@@ -14,7 +37,151 @@ import org.springframework.stereotype.Service;
  * @author 虎哥
  * @since 2022-01-04
  */
+@Slf4j
 @Service
 public class SeckillVoucherServiceImpl extends ServiceImpl<SeckillVoucherMapper, SeckillVoucher> implements ISeckillVoucherService {
 
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private VoucherOrderMapper voucherOrderMapper;
+
+    @Resource
+    private ShardedStockCounter shardedStockCounter;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Value("${hmdp.seckill.preheat.enabled:true}")
+    private boolean preheatEnabled;
+
+    @Value("${hmdp.seckill.preheat.lead-minutes:10}")
+    private long leadMinutes;
+
+    @Value("${hmdp.seckill.preheat.batch-size:100}")
+    private int batchSize;
+
+    @Override
+    public SeckillVoucher queryCached(Long voucherId) {
+        return cacheClient.queryWithPassThrough(CACHE_SECKILL_VOUCHER_KEY, voucherId, SeckillVoucher.class,
+                this::getById, CACHE_SECKILL_VOUCHER_TTL, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 定时预热，启动后立即执行一次
+     */
+    @Scheduled(fixedDelayString = "${hmdp.seckill.preheat.interval-ms:10000}")
+    public void scheduledPreheat() {
+        if (!preheatEnabled) {
+            return;
+        }
+        try {
+            preheat();
+        } catch (Exception e) {
+            log.error("秒杀预热失败", e);
+        }
+    }
+
+    /**
+     * 扫描lead-minutes分钟内开始以及正在进行的秒杀，按voucher_id分批处理，每批：
+     * 1. 一次pipeline检查库存key、分片数量key和秒杀券缓存是否存在
+     * 2. 库存key丢失的秒杀券：从数据库查询已下单用户，一次pipeline用SETNX写回数据库中的剩余库存并恢复下单用户集合
+     * 3. 秒杀券缓存(包含开始和结束时间)不存在时写入，秒杀开始时的时间校验直接命中缓存
+     */
+    @Override
+    public int preheat() {
+        LocalDateTime now = LocalDateTime.now();
+        long lastId = 0;
+        int restored = 0;
+        while (true) {
+            List<SeckillVoucher> vouchers = query()
+                    .le("begin_time", now.plusMinutes(leadMinutes))
+                    .gt("end_time", now)
+                    .gt("voucher_id", lastId)
+                    .orderByAsc("voucher_id")
+                    .last("LIMIT " + batchSize)
+                    .list();
+            if (vouchers.isEmpty()) {
+                break;
+            }
+            restored += preheatBatch(vouchers);
+            lastId = vouchers.get(vouchers.size() - 1).getVoucherId();
+        }
+        if (restored > 0) {
+            log.warn("秒杀预热恢复了{}个优惠券的库存", restored);
+        }
+        return restored;
+    }
+
+    private int preheatBatch(List<SeckillVoucher> vouchers) {
+        // 1. 检查哪些key已丢失，库存key(分片时为各分片的库存key和分片数量key)任意一个丢失都需要预热
+        List<List<String>> stockKeys = new ArrayList<>(vouchers.size());
+        for (SeckillVoucher voucher : vouchers) {
+            stockKeys.add(shardedStockCounter.preheatKeys(voucher.getVoucherId()));
+        }
+        List<Object> exists = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                for (int i = 0; i < vouchers.size(); i++) {
+                    for (String key : stockKeys.get(i)) {
+                        operations.hasKey(key);
+                    }
+                    operations.hasKey(CACHE_SECKILL_VOUCHER_KEY + vouchers.get(i).getVoucherId());
+                }
+                return null;
+            }
+        });
+        List<SeckillVoucher> cold = new ArrayList<>();
+        int index = 0;
+        for (int i = 0; i < vouchers.size(); i++) {
+            SeckillVoucher voucher = vouchers.get(i);
+            boolean missing = false;
+            for (int k = 0; k < stockKeys.get(i).size(); k++) {
+                missing |= !Boolean.TRUE.equals(exists.get(index++));
+            }
+            if (missing) {
+                cold.add(voucher);
+            }
+            if (!Boolean.TRUE.equals(exists.get(index++))) {
+                cacheClient.set(CACHE_SECKILL_VOUCHER_KEY + voucher.getVoucherId(), voucher,
+                        CACHE_SECKILL_VOUCHER_TTL, TimeUnit.MINUTES);
+            }
+        }
+        if (cold.isEmpty()) {
+            return 0;
+        }
+
+        // 2. 查询已下单的用户，恢复一人一单的判断
+        Map<Long, List<Long>> buyers = new HashMap<>();
+        List<Long> coldIds = new ArrayList<>(cold.size());
+        for (SeckillVoucher voucher : cold) {
+            coldIds.add(voucher.getVoucherId());
+        }
+        List<VoucherOrder> orders = voucherOrderMapper.selectList(new QueryWrapper<VoucherOrder>()
+                .select("voucher_id", "user_id")
+                .in("voucher_id", coldIds));
+        for (VoucherOrder order : orders) {
+            buyers.computeIfAbsent(order.getVoucherId(), k -> new ArrayList<>()).add(order.getUserId());
+        }
+
+        // 3. 写回库存和下单用户集合
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) {
+                for (SeckillVoucher voucher : cold) {
+                    shardedStockCounter.preheat(operations, voucher.getVoucherId(), Math.max(0, voucher.getStock()),
+                            buyers.getOrDefault(voucher.getVoucherId(), Collections.emptyList()));
+                }
+                return null;
+            }
+        });
+        for (SeckillVoucher voucher : cold) {
+            log.info("优惠券[{}]的秒杀库存已预热，库存: {}，已下单用户: {}", voucher.getVoucherId(), voucher.getStock(),
+                    buyers.getOrDefault(voucher.getVoucherId(), Collections.emptyList()).size());
+        }
+        return cold.size();
+    }
 }
@@ -1,14 +1,17 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.bean.BeanUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.mapper.ShopMapper;
 import com.hmdp.service.IShopService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.BloomFilterRegistry;
 import com.hmdp.utils.CacheClient;
 import com.hmdp.utils.SystemConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.geo.Distance;
 import org.springframework.data.geo.GeoResult;
 import org.springframework.data.geo.GeoResults;
@@ -18,6 +21,7 @@ import org.springframework.data.redis.domain.geo.GeoReference;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -35,15 +39,54 @@ import static com.hmdp.utils.RedisConstants.*;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IShopService {
 
+    private static final int BLOOM_INIT_BATCH_SIZE = 10000;
+
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
     @Resource
     private CacheClient cacheClient;
 
+    @Resource
+    private BloomFilterRegistry bloomFilterRegistry;
+
+    @Value("${hmdp.cache.bloom.shop.expected-insertions:1000000}")
+    private long bloomExpectedInsertions;
+
+    @Value("${hmdp.cache.bloom.shop.fpp:0.01}")
+    private double bloomFpp;
+
+    /**
+     * 启动时根据tb_shop中所有的店铺id构建布隆过滤器，拦截一定不存在的店铺id
+     */
+    @PostConstruct
+    private void initBloomFilter() {
+        bloomFilterRegistry.create(CACHE_SHOP_KEY, bloomExpectedInsertions, bloomFpp);
+        // 按id分批查询，避免一次加载全部数据
+        long lastId = 0;
+        int count = 0;
+        while (true) {
+            List<Shop> shops = query().select("id").gt("id", lastId).orderByAsc("id")
+                    .last("LIMIT " + BLOOM_INIT_BATCH_SIZE).list();
+            if (shops.isEmpty()) {
+                break;
+            }
+            List<Long> ids = new ArrayList<>(shops.size());
+            for (Shop shop : shops) {
+                ids.add(shop.getId());
+            }
+            bloomFilterRegistry.build(CACHE_SHOP_KEY, ids);
+            count += ids.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+        bloomFilterRegistry.publish(CACHE_SHOP_KEY);
+        log.info("店铺布隆过滤器构建完成，店铺数量: {}", count);
+    }
+
     @Override
     public Result queryById(Long id) {
         // 缓存穿透
@@ -76,6 +119,16 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         cacheClient.setWithLogicalExpire(CACHE_SHOP_KEY + id, shop, expireSeconds, TimeUnit.SECONDS);
     }
 
+    @Override
+    public Result saveShop(Shop shop) {
+        // 写入数据库
+        save(shop);
+        // 新增的店铺id加入布隆过滤器
+        bloomFilterRegistry.add(CACHE_SHOP_KEY, shop.getId());
+        // 返回店铺id
+        return Result.ok(shop.getId());
+    }
+
     @Override
     @Transactional
     public Result update(Shop shop) {
@@ -87,6 +140,8 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         updateById(shop);
         //删除缓存
         stringRedisTemplate.delete(CACHE_SHOP_KEY+id);
+        //清除所有节点的本地缓存
+        cacheClient.invalidateLocal(CACHE_SHOP_KEY+id);
         return Result.ok(shop);
 
     }
@@ -135,11 +190,15 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
             distanceMap.put(shopIdStr, distance);
         });
 
-        // 5. 根据id查询Shop
-        String idStr = StrUtil.join(",", ids);
-        List<Shop> shops = query().in("id", ids).last("ORDER BY FIELD(id," + idStr + ")").list();
-        for (Shop shop : shops) {
+        // 5. 根据id批量查询Shop，一次MGET，未命中的一次IN查询数据库，结果按ids的顺序排列
+        List<Shop> cachedShops = cacheClient.queryBatchWithLogicalExpire(
+                CACHE_SHOP_KEY, ids, Shop.class, this::listByIds, Shop::getId, 20L, TimeUnit.SECONDS);
+        List<Shop> shops = new ArrayList<>(cachedShops.size());
+        for (Shop cachedShop : cachedShops) {
+            // 缓存中的对象是共享的，复制后再设置距离
+            Shop shop = BeanUtil.copyProperties(cachedShop, Shop.class);
             shop.setDistance(distanceMap.get(shop.getId().toString()).getValue());
+            shops.add(shop);
         }
         // 6. 返回
         return Result.ok(shops);
@@ -1,18 +1,19 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
 import com.hmdp.service.IShopTypeService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import com.hmdp.utils.RedisCache;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 import java.util.List;
 
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_KEY;
+
 /**
  * <p>
  *  服务实现类
@@ -24,35 +25,25 @@ import java.util.List;
 @Service
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
 
+    @Lazy
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
-
-    private static final String CACHE_SHOP_TYPE_KEY = "cache:shoptype:list";
+    private IShopTypeService proxyShopTypeService; // 通过自身代理调用，缓存注解才会生效
 
     @Override
     public Result queryTypeList() {
-        // 1. 从Redis查询店铺类型缓存
-        String shopTypeJson = stringRedisTemplate.opsForValue().get(CACHE_SHOP_TYPE_KEY);
-        
-        // 2. 判断是否存在
-        if (StrUtil.isNotBlank(shopTypeJson)) {
-            // 3. 存在,直接返回
-            List<ShopType> typeList = JSONUtil.toList(shopTypeJson, ShopType.class);
-            return Result.ok(typeList);
-        }
-        
-        // 4. 不存在,从数据库查询
-        List<ShopType> typeList = query().orderByAsc("sort").list();
-        
-        // 5. 判断数据库中是否存在
-        if (typeList == null || typeList.isEmpty()) {
+        // 查询店铺类型，结果由@RedisCache缓存
+        List<ShopType> typeList = proxyShopTypeService.listTypes();
+        if (typeList == null) {
             return Result.fail("店铺类型不存在");
         }
-        
-        // 6. 存在,写入Redis缓存
-        stringRedisTemplate.opsForValue().set(CACHE_SHOP_TYPE_KEY, JSONUtil.toJsonStr(typeList));
-        
-        // 7. 返回
         return Result.ok(typeList);
     }
+
+    @Override
+    @RedisCache(prefix = CACHE_SHOP_TYPE_KEY)
+    public List<ShopType> listTypes() {
+        List<ShopType> typeList = query().orderByAsc("sort").list();
+        // 数据库中没有数据时返回null，由缓存空值处理
+        return typeList == null || typeList.isEmpty() ? null : typeList;
+    }
 }
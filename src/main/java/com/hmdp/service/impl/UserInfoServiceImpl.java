@@ -4,8 +4,11 @@ import com.hmdp.entity.UserInfo;
 import com.hmdp.mapper.UserInfoMapper;
 import com.hmdp.service.IUserInfoService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.RedisCache;
 import org.springframework.stereotype.Service;
 
+import static com.hmdp.utils.RedisConstants.CACHE_USER_INFO_KEY;
+
 /**
  * <p>
  *  服务实现类
@@ -17,4 +20,15 @@ import org.springframework.stereotype.Service;
 @Service
 public class UserInfoServiceImpl extends ServiceImpl<UserInfoMapper, UserInfo> implements IUserInfoService {
 
+    @Override
+    @RedisCache(prefix = CACHE_USER_INFO_KEY, key = "#userId")
+    public UserInfo queryUserInfo(Long userId) {
+        UserInfo info = getById(userId);
+        if (info == null) {
+            return null;
+        }
+        info.setCreateTime(null);
+        info.setUpdateTime(null);
+        return info;
+    }
 }
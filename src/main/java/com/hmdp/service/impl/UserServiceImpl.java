@@ -10,6 +10,7 @@ import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 import com.hmdp.mapper.UserMapper;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.CachePolicyRegistry;
 import com.hmdp.utils.RegexUtils;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
@@ -44,6 +45,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private CachePolicyRegistry cachePolicyRegistry;
+
     @Override
     public Result sendCode(String phone, HttpSession session) {
         //1. 校验手机号
@@ -109,8 +113,9 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         String tokenKey = LOGIN_USER_KEY + token;
         stringRedisTemplate.opsForHash().putAll(tokenKey, userMap);
         
-        // 5.4 设置token有效期30分钟
-        stringRedisTemplate.expire(tokenKey, LOGIN_USER_TTL, TimeUnit.MINUTES);
+        // 5.4 设置token有效期，随机抖动避免同一时段登录的token同时过期
+        stringRedisTemplate.expire(tokenKey,
+                cachePolicyRegistry.ttlMillis(tokenKey, LOGIN_USER_TTL, TimeUnit.MINUTES), TimeUnit.MILLISECONDS);
         
         //6. 返回token
         return Result.ok(token);
@@ -1,5 +1,6 @@
 package com.hmdp.service.impl;
 
+import com.hmdp.dto.OrderStatusDTO;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.entity.VoucherOrder;
@@ -7,15 +8,25 @@ import com.hmdp.mapper.VoucherOrderMapper;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherOrderService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.OrderStatusStore;
+import com.hmdp.utils.IdWorker;
+import com.hmdp.utils.SeckillAdmissionBatcher;
+import com.hmdp.utils.ShardedStockCounter;
 import com.hmdp.utils.SimpleRedisLock;
+import com.hmdp.utils.SoldOutMarker;
+import com.hmdp.utils.StockLeaser;
+import com.hmdp.utils.StreamBacklogMonitor;
+import com.hmdp.utils.StreamDeadLetterQueue;
+import com.hmdp.utils.StreamConsumerRegistry;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
-import org.redisson.api.RLock;
-import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands;
 import org.springframework.data.redis.connection.stream.*;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
@@ -23,16 +34,33 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_GROUP;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
 
 /**
  * <p>
@@ -49,11 +77,9 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     @Resource
     private ISeckillVoucherService seckillVoucherService;
     @Autowired
-    private RedisIdWorker redisIdWorker;
+    private IdWorker idWorker;
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
-    @Autowired
-    private RedissonClient redissonClient;
 
     @Lazy
     @Resource
@@ -64,8 +90,86 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     // 阻塞队列 - 用于暂存订单信息
     private BlockingQueue<VoucherOrder> orderTasks = new ArrayBlockingQueue<>(1024 * 1024);
     
+    // 消费者数量，每个消费者一个线程，在消费者组中使用不同的消费者名称
+    @Value("${hmdp.seckill.consumer.threads:4}")
+    private int consumerThreads;
+
+    // 每次从Stream中读取的最大消息数，一批消息在一个事务中落库
+    @Value("${hmdp.seckill.consumer.batch-size:50}")
+    private int batchSize;
+
+    // 没有消息时阻塞等待的时间
+    @Value("${hmdp.seckill.consumer.block-ms:2000}")
+    private long blockMillis;
+
+    // pending消息空闲超过该时间仍未确认，说明原消费者已下线，由存活的消费者认领
+    @Value("${hmdp.seckill.consumer.claim-idle-ms:30000}")
+    private long claimIdleMillis;
+
+    // 每个消费者检查一次可认领消息的间隔
+    @Value("${hmdp.seckill.consumer.claim-interval-ms:5000}")
+    private long claimIntervalMillis;
+
+    // 消息最多投递的次数，仍然失败时转移到死信队列
+    @Value("${hmdp.seckill.consumer.max-attempts:5}")
+    private int maxAttempts;
+
+    // 重试的退避时间，第n次重试前至少等待 retry-backoff-ms * 2^(n-1)，不超过retry-backoff-max-ms
+    @Value("${hmdp.seckill.consumer.retry-backoff-ms:1000}")
+    private long retryBackoffMillis;
+
+    @Value("${hmdp.seckill.consumer.retry-backoff-max-ms:16000}")
+    private long retryBackoffMaxMillis;
+
+    // 每个消费者检查一次待重试消息的间隔
+    @Value("${hmdp.seckill.consumer.retry-interval-ms:1000}")
+    private long retryIntervalMillis;
+
+    @Resource
+    private StreamConsumerRegistry streamConsumerRegistry;
+
+    @Resource
+    private StreamDeadLetterQueue deadLetterQueue;
+
+    @Resource
+    private OrderStatusStore orderStatusStore;
+
+    @Resource
+    private ShardedStockCounter shardedStockCounter;
+
+    @Resource
+    private SoldOutMarker soldOutMarker;
+
+    @Resource
+    private StockLeaser stockLeaser;
+
+    @Resource
+    private SeckillAdmissionBatcher admissionBatcher;
+
+    @Resource
+    private StreamBacklogMonitor backlogMonitor;
+
+    // 订单通道数量，按用户id哈希分配，每个通道一个线程顺序落库
+    @Value("${hmdp.seckill.consumer.lanes:8}")
+    private int laneCount;
+
+    // 每个通道最多排队的订单数，排满时读取消息的线程阻塞等待
+    @Value("${hmdp.seckill.consumer.lane-capacity:1024}")
+    private int laneCapacity;
+
+    // 等待一批订单落库的最长时间，超时的消息不确认，留在pending-list中重试
+    @Value("${hmdp.seckill.consumer.lane-timeout-ms:30000}")
+    private long laneTimeoutMillis;
+
     // 线程池 - 用于异步处理订单
-    private static final ExecutorService SECKILL_ORDER_EXECUTOR = Executors.newSingleThreadExecutor();
+    private ExecutorService seckillOrderExecutor;
+
+    // 线程池 - 订单通道
+    private ExecutorService orderLaneExecutor;
+
+    private OrderLane[] lanes;
+
+    private volatile boolean running = true;
     
     // Lua脚本 - 用于原子性判断和扣减库存
     private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
@@ -74,36 +178,94 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
         SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
         SECKILL_SCRIPT.setResultType(Long.class);
     }
+
+    // Lua脚本 - 租约模式下库存已在本地扣减，只做一人一单判断和发送订单消息
+    private static final DefaultRedisScript<Long> SECKILL_LEASE_SCRIPT;
+    static {
+        SECKILL_LEASE_SCRIPT = new DefaultRedisScript<>();
+        SECKILL_LEASE_SCRIPT.setLocation(new ClassPathResource("seckill_lease.lua"));
+        SECKILL_LEASE_SCRIPT.setResultType(Long.class);
+    }
     
     // 项目启动后立即执行，初始化异步订单处理线程
     @PostConstruct
     private void init() {
         // 创建Redis Stream消费者组（如果不存在）
         try {
-            stringRedisTemplate.opsForStream().createGroup("stream.orders", "g1");
+            stringRedisTemplate.opsForStream().createGroup(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP);
             log.info("Redis Stream消费者组创建成功");
         } catch (Exception e) {
             log.info("消费者组已存在或创建失败: {}", e.getMessage());
         }
         
-        // 启动异步订单处理线程
-        SECKILL_ORDER_EXECUTOR.submit(new VoucherOrderHandler());
-        log.info("异步订单处理线程启动成功");
+        // 启动订单通道，同一用户的订单总是进入同一个通道
+        startLanes();
+
+        // 启动异步订单处理线程，每个线程是消费者组中的一个消费者
+        AtomicInteger threadIndex = new AtomicInteger();
+        seckillOrderExecutor = Executors.newFixedThreadPool(consumerThreads, r -> {
+            Thread t = new Thread(r, "seckill-order-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        for (int i = 1; i <= consumerThreads; i++) {
+            // 消费者名称在所有实例中唯一，并定时写入心跳
+            Consumer consumer = streamConsumerRegistry.register(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP);
+            seckillOrderExecutor.submit(new VoucherOrderHandler(consumer));
+        }
+        log.info("异步订单处理线程启动成功，消费者数量: {}，订单通道数量: {}，批量大小: {}", consumerThreads, laneCount, batchSize);
+    }
+
+    // 启动订单通道，每个通道一个线程
+    void startLanes() {
+        AtomicInteger laneIndex = new AtomicInteger();
+        orderLaneExecutor = Executors.newFixedThreadPool(laneCount, r -> {
+            Thread t = new Thread(r, "seckill-lane-" + laneIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        lanes = new OrderLane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new OrderLane();
+            orderLaneExecutor.submit(lanes[i]);
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        running = false;
+        seckillOrderExecutor.shutdownNow();
+        orderLaneExecutor.shutdownNow();
+        for (OrderLane lane : lanes) {
+            lane.failQueued();
+        }
     }
     
-    // 异步订单处理器
-    private class VoucherOrderHandler implements Runnable {
-        String queueName = "stream.orders";
+    // 异步订单处理器，批量读取、批量落库、批量确认
+    class VoucherOrderHandler implements Runnable {
+        private final Consumer consumer;
+
+        private long nextClaimAt;
+
+        private long nextRetryAt;
+
+        VoucherOrderHandler(Consumer consumer) {
+            this.consumer = consumer;
+        }
         
         @Override
         public void run() {
-            while (true) {
+            while (running) {
                 try {
-                    // 1. 从Redis Stream消息队列中获取订单信息 XREADGROUP GROUP g1 c1 COUNT 1 BLOCK 2000 STREAMS stream.orders >
+                    // 0. 定期认领下线消费者遗留的pending消息 XAUTOCLAIM，重试自己pending-list中到期的消息
+                    claimIdleMessages();
+                    retryPendingMessages();
+
+                    // 1. 从Redis Stream消息队列中批量获取订单信息 XREADGROUP GROUP g1 <consumer> COUNT n BLOCK 2000 STREAMS stream.orders >
                     List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", "c1"),
-                            StreamReadOptions.empty().count(1).block(Duration.ofSeconds(2)),
-                            StreamOffset.create(queueName, ReadOffset.lastConsumed())
+                            consumer,
+                            StreamReadOptions.empty().count(batchSize).block(Duration.ofMillis(blockMillis)),
+                            StreamOffset.create(SECKILL_ORDER_STREAM, ReadOffset.lastConsumed())
                     );
                     
                     // 2. 判断消息是否获取成功
@@ -112,126 +274,495 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
                         continue;
                     }
                     
-                    // 3. 解析消息中的订单信息
-                    MapRecord<String, Object, Object> record = list.get(0);
-                    Map<Object, Object> values = record.getValue();
-                    VoucherOrder voucherOrder = new VoucherOrder();
-                    voucherOrder.setId(Long.valueOf((String) values.get("id")));
-                    voucherOrder.setUserId(Long.valueOf((String) values.get("userId")));
-                    voucherOrder.setVoucherId(Long.valueOf((String) values.get("voucherId")));
-                    
-                    // 4. 执行数据库操作（创建订单）
-                    handleVoucherOrder(voucherOrder);
-                    
-                    // 5. ACK确认 SACK stream.orders g1 id
-                    stringRedisTemplate.opsForStream().acknowledge(queueName, "g1", record.getId());
+                    // 3. 创建整批订单，再用一次XACK确认落库成功的消息
+                    handleBatch(list);
                     
                 } catch (Exception e) {
+                    if (!running) {
+                        break;
+                    }
+                    // 读取或确认消息失败(如Redis不可用)，等待后再继续，失败的消息留在pending-list中重试
                     log.error("处理订单异常", e);
-                    // 处理pending-list中的消息
-                    handlePendingList();
+                    try {
+                        Thread.sleep(retryBackoffMillis);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
                 }
             }
         }
         
-        // 处理pending-list中未确认的消息
-        private void handlePendingList() {
-            while (true) {
+        // 认领空闲超时的pending消息，认领后进入当前消费者的pending-list，处理失败时由retryPendingMessages重试
+        private void claimIdleMessages() {
+            long now = System.currentTimeMillis();
+            if (now < nextClaimAt) {
+                return;
+            }
+            nextClaimAt = now + claimIntervalMillis;
+            List<MapRecord<String, Object, Object>> claimed = streamConsumerRegistry.claim(
+                    SECKILL_ORDER_STREAM, consumer, claimIdleMillis, batchSize);
+            if (!claimed.isEmpty()) {
+                log.info("消费者{}认领了{}条超时未确认的订单消息", consumer.getName(), claimed.size());
+                handleBatch(claimed);
+            }
+        }
+
+        // 重试pending-list中的消息：按XPENDING中的投递次数计算退避时间，超过最大次数的消息转移到死信队列
+        // 每次只处理一批到期的消息，不会因为个别消息一直失败而阻塞新消息的消费
+        void retryPendingMessages() {
+            long now = System.currentTimeMillis();
+            if (now < nextRetryAt) {
+                return;
+            }
+            nextRetryAt = now + retryIntervalMillis;
+            // 1. 查询pending-list XPENDING stream.orders g1 - + n <consumer>
+            PendingMessages pending = stringRedisTemplate.opsForStream().pending(
+                    SECKILL_ORDER_STREAM, consumer, Range.unbounded(), batchSize);
+            if (pending == null || pending.isEmpty()) {
+                return;
+            }
+            List<RecordId> due = new ArrayList<>();
+            for (PendingMessage message : pending) {
+                long attempts = message.getTotalDeliveryCount();
+                if (attempts >= maxAttempts) {
+                    // 2. 超过最大投递次数，转移到死信队列，失败原因取自订单状态中最近一次记录的原因
+                    Map<String, String> values = deadLetterQueue.moveToDeadLetter(SECKILL_ORDER_STREAM,
+                            SECKILL_ORDER_GROUP, message.getId(), attempts, VoucherOrderServiceImpl.this::lastFailureReason);
+                    markDeadLetter(values);
+                } else if (message.getElapsedTimeSinceLastDelivery().toMillis() >= backoffMillis(attempts)) {
+                    due.add(message.getId());
+                }
+            }
+            if (due.isEmpty()) {
+                return;
+            }
+            // 3. 退避时间已到的消息重新投递给自己 XCLAIM，投递次数加1
+            List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().claim(
+                    SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP, consumer.getName(),
+                    RedisStreamCommands.XClaimOptions.minIdle(Duration.ZERO).ids(due));
+            List<RecordId> missing = new ArrayList<>(due);
+            if (records != null) {
+                for (MapRecord<String, Object, Object> record : records) {
+                    missing.remove(record.getId());
+                }
+            }
+            if (!missing.isEmpty()) {
+                // 原消息已被删除，无法重试，直接确认
+                stringRedisTemplate.opsForStream().acknowledge(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP,
+                        missing.toArray(new RecordId[0]));
+            }
+            if (records != null && !records.isEmpty()) {
+                log.info("消费者{}重试{}条pending订单消息", consumer.getName(), records.size());
+                handleBatch(records);
+            }
+        }
+    }
+
+    // 第attempts次投递失败后，下一次重试前的等待时间
+    long backoffMillis(long attempts) {
+        long shift = Math.min(Math.max(attempts - 1, 0), 20);
+        return Math.min(retryBackoffMaxMillis, retryBackoffMillis << shift);
+    }
+
+    // 解析一批消息，按用户分发到订单通道，落库成功的消息用一次XACK确认
+    // 落库失败的消息留在pending-list中，由retryPendingMessages按退避时间重试
+    void handleBatch(List<MapRecord<String, Object, Object>> records) {
+        List<RecordId> submitted = new ArrayList<>(records.size());
+        List<VoucherOrder> orders = new ArrayList<>(records.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            VoucherOrder voucherOrder = toVoucherOrder(record);
+            if (voucherOrder == null) {
+                // 格式错误的消息无法重试成功，直接转移到死信队列
+                deadLetterQueue.moveToDeadLetter(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP, record.getId(), 1, "订单消息格式错误");
+                continue;
+            }
+            submitted.add(record.getId());
+            orders.add(voucherOrder);
+            futures.add(laneOf(voucherOrder.getUserId()).submit(voucherOrder));
+        }
+        // 等待各通道落库完成，超时的消息不确认，由retryPendingMessages重试，重复落库由唯一索引拦截
+        List<RecordId> ids = new ArrayList<>(submitted.size());
+        long deadline = System.currentTimeMillis() + laneTimeoutMillis;
+        for (int i = 0; i < futures.size(); i++) {
+            String reason;
+            try {
+                futures.get(i).get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                ids.add(submitted.get(i));
+                continue;
+            } catch (ExecutionException e) {
+                reason = String.valueOf(e.getCause());
+            } catch (TimeoutException e) {
+                reason = "等待订单落库超时";
+            } catch (InterruptedException e) {
+                // 停机中，剩余的消息留在pending-list中
+                Thread.currentThread().interrupt();
+                break;
+            }
+            VoucherOrder order = orders.get(i);
+            orderStatusStore.mark(order.getId(), order.getUserId(), order.getVoucherId(), OrderStatusDTO.RETRYING, reason);
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        // ACK确认 XACK stream.orders g1 id1 id2 ...
+        stringRedisTemplate.opsForStream().acknowledge(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP, ids.toArray(new RecordId[0]));
+    }
+
+    OrderLane laneOf(Long userId) {
+        return lanes[Math.floorMod(Long.hashCode(userId), lanes.length)];
+    }
+
+    // 订单通道：一个线程顺序落库，同一用户的订单不会被并发处理，不再需要分布式锁
+    // 多个消费者分发到同一通道的订单会合并到一个事务中
+    class OrderLane implements Runnable {
+        private final BlockingQueue<PendingOrder> queue = new ArrayBlockingQueue<>(laneCapacity);
+
+        CompletableFuture<Void> submit(VoucherOrder voucherOrder) {
+            PendingOrder pending = new PendingOrder(voucherOrder);
+            try {
+                queue.put(pending);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("订单通道已停止", e);
+            }
+            return pending.done;
+        }
+
+        @Override
+        public void run() {
+            List<PendingOrder> batch = new ArrayList<>(batchSize);
+            while (running) {
                 try {
-                    // 1. 获取pending-list中的订单信息 XREADGROUP GROUP g1 c1 COUNT 1 STREAMS stream.orders 0
-                    List<MapRecord<String, Object, Object>> list = stringRedisTemplate.opsForStream().read(
-                            Consumer.from("g1", "c1"),
-                            StreamReadOptions.empty().count(1),
-                            StreamOffset.create(queueName, ReadOffset.from("0"))
-                    );
-                    
-                    // 2. 判断消息是否获取成功
-                    if (list == null || list.isEmpty()) {
-                        // 如果获取失败，说明pending-list没有消息，结束循环
-                        break;
+                    PendingOrder first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
                     }
-                    
-                    // 3. 解析消息中的订单信息
-                    MapRecord<String, Object, Object> record = list.get(0);
-                    Map<Object, Object> values = record.getValue();
-                    VoucherOrder voucherOrder = new VoucherOrder();
-                    voucherOrder.setId(Long.valueOf((String) values.get("id")));
-                    voucherOrder.setUserId(Long.valueOf((String) values.get("userId")));
-                    voucherOrder.setVoucherId(Long.valueOf((String) values.get("voucherId")));
-                    
-                    // 4. 执行数据库操作（创建订单）
-                    handleVoucherOrder(voucherOrder);
-                    
-                    // 5. ACK确认
-                    stringRedisTemplate.opsForStream().acknowledge(queueName, "g1", record.getId());
-                    
-                } catch (Exception e) {
-                    log.error("处理pending-list订单异常", e);
-                    try {
-                        Thread.sleep(20);
-                    } catch (InterruptedException ex) {
-                        ex.printStackTrace();
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    saveOrders(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Throwable e) {
+                    // 任何异常都不能让通道线程退出，否则该通道的订单永远不会完成
+                    log.error("订单通道处理异常，数量: {}", batch.size(), e);
+                    for (PendingOrder pending : batch) {
+                        pending.done.completeExceptionally(e);
                     }
+                } finally {
+                    batch.clear();
                 }
             }
         }
+
+        // 停机时还没有落库的订单直接失败，消息留在pending-list中由其他实例认领
+        void failQueued() {
+            List<PendingOrder> left = new ArrayList<>();
+            queue.drainTo(left);
+            IllegalStateException e = new IllegalStateException("订单通道已停止");
+            for (PendingOrder pending : left) {
+                pending.done.completeExceptionally(e);
+            }
+        }
     }
-    
-    // 处理订单创建的具体业务逻辑
-    private void handleVoucherOrder(VoucherOrder voucherOrder) {
-        // 1. 获取用户id
-        Long userId = voucherOrder.getUserId();
-        
-        // 2. 创建分布式锁对象
-        RLock lock = redissonClient.getLock("lock:order:" + userId);
-        
-        // 3. 尝试获取锁
-        boolean isLock = lock.tryLock();
-        
-        // 4. 判断是否获取锁成功
-        if (!isLock) {
-            // 获取锁失败
-            log.error("不允许重复下单！");
+
+    private static class PendingOrder {
+        final VoucherOrder order;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        PendingOrder(VoucherOrder order) {
+            this.order = order;
+        }
+    }
+
+    // 落库一批订单并通知等待的消费者
+    private void saveOrders(List<PendingOrder> batch) {
+        if (batch.size() > 1) {
+            List<VoucherOrder> orders = new ArrayList<>(batch.size());
+            for (PendingOrder pending : batch) {
+                orders.add(pending.order);
+            }
+            try {
+                // 通过代理对象调用，确保@Transactional注解生效
+                List<VoucherOrder> saved = proxyVoucherOrderService.createVoucherOrders(orders);
+                markResult(orders, saved);
+                for (PendingOrder pending : batch) {
+                    pending.done.complete(null);
+                }
+                return;
+            } catch (RuntimeException e) {
+                // 整批事务已回滚：唯一索引拒绝了重复订单(用户已购买或消息重复投递)，或者个别订单无法落库
+                // 逐个重新落库，失败只影响对应的订单
+                log.warn("批量创建订单失败，逐个重试，数量: {}，原因: {}", batch.size(), e.toString());
+            }
+        }
+        for (PendingOrder pending : batch) {
+            saveOrder(pending);
+        }
+    }
+
+    private void saveOrder(PendingOrder pending) {
+        VoucherOrder order = pending.order;
+        try {
+            List<VoucherOrder> saved = proxyVoucherOrderService.createVoucherOrders(Collections.singletonList(order));
+            markResult(Collections.singletonList(order), saved);
+            pending.done.complete(null);
+        } catch (RuntimeException e) {
+            try {
+                if (e instanceof DuplicateKeyException) {
+                    onDuplicate(order);
+                    pending.done.complete(null);
+                    return;
+                }
+            } catch (RuntimeException ex) {
+                // 查询订单失败，按落库失败处理
+                e = ex;
+            }
+            log.error("订单落库失败，消息将重新处理！orderId: {}", order.getId(), e);
+            pending.done.completeExceptionally(e);
+        }
+    }
+
+    // 唯一索引拒绝了订单：订单已经落库说明消息重复投递，否则是用户重复下单
+    private void onDuplicate(VoucherOrder order) {
+        if (getById(order.getId()) != null) {
+            // 消息重复投递，订单已经落库
+            orderStatusStore.markSuccess(Collections.singletonList(order));
+        } else {
+            // 用户已经购买过了，消息不需要重试
+            log.error("用户已经购买过一次！userId: {}, voucherId: {}", order.getUserId(), order.getVoucherId());
+            orderStatusStore.mark(order.getId(), order.getUserId(), order.getVoucherId(), OrderStatusDTO.FAILED, "不能重复下单！");
+        }
+    }
+
+    // 事务提交后写入订单状态：落库的订单成功，批内重复的订单和库存不足被丢弃的订单失败
+    private void markResult(List<VoucherOrder> orders, List<VoucherOrder> saved) {
+        orderStatusStore.markSuccess(saved);
+        if (saved.size() == orders.size()) {
             return;
         }
-        
+        Set<Long> savedIds = new HashSet<>(saved.size() * 2);
+        Set<String> savedPairs = new HashSet<>(saved.size() * 2);
+        for (VoucherOrder order : saved) {
+            savedIds.add(order.getId());
+            savedPairs.add(order.getUserId() + ":" + order.getVoucherId());
+        }
+        for (VoucherOrder order : orders) {
+            if (savedIds.contains(order.getId())) {
+                continue;
+            }
+            String reason = savedPairs.contains(order.getUserId() + ":" + order.getVoucherId()) ? "不能重复下单！" : "库存不足！";
+            orderStatusStore.mark(order.getId(), order.getUserId(), order.getVoucherId(), OrderStatusDTO.FAILED, reason);
+        }
+    }
+
+    // 最近一次落库失败的原因，随RETRYING状态保存在订单状态中，其他消费者认领消息后同样可以读到
+    private String lastFailureReason(Map<String, String> values) {
+        String reason = null;
+        try {
+            reason = orderStatusStore.getReason(Long.valueOf(values.get("id")));
+        } catch (NumberFormatException e) {
+            log.error("死信消息缺少订单id: {}", values);
+        }
+        return reason == null ? "超过最大投递次数" : reason;
+    }
+
+    // 转移到死信队列的订单标记为失败
+    private void markDeadLetter(Map<String, String> values) {
+        if (values == null) {
+            return;
+        }
+        try {
+            orderStatusStore.mark(Long.valueOf(values.get("id")), Long.valueOf(values.get("userId")),
+                    Long.valueOf(values.get("voucherId")), OrderStatusDTO.FAILED, values.get(StreamDeadLetterQueue.FIELD_REASON));
+        } catch (RuntimeException e) {
+            log.error("死信订单状态写入失败: {}", values);
+        }
+    }
+
+    // 解析消息中的订单信息，格式错误时返回null
+    private VoucherOrder toVoucherOrder(MapRecord<String, Object, Object> record) {
+        Map<Object, Object> values = record.getValue();
         try {
-            // 通过代理对象调用，确保@Transactional注解生效
-            proxyVoucherOrderService.createVoucherOrder(voucherOrder);
-        } finally {
-            // 释放锁
-            lock.unlock();
+            VoucherOrder voucherOrder = new VoucherOrder();
+            voucherOrder.setId(Long.valueOf((String) values.get("id")));
+            voucherOrder.setUserId(Long.valueOf((String) values.get("userId")));
+            voucherOrder.setVoucherId(Long.valueOf((String) values.get("voucherId")));
+            return voucherOrder;
+        } catch (RuntimeException e) {
+            log.error("订单消息格式错误: {} {}", record.getId(), values);
+            return null;
         }
     }
 
     // ============ 异步秒杀优化版本 ============
     @Override
     public Result seckillVoucher(Long voucherId) {
-        // 获取用户id
-        Long userId = UserHolder.getUser().getId();
-        
-        // 获取订单id
-        long orderId = redisIdWorker.nextId("order");
+        // 订单消息积压过多时快速拒绝，避免Stream无限增长
+        if (backlogMonitor.shouldShed()) {
+            return Result.fail("系统繁忙，请稍后重试！");
+        }
+
+        // 判断秒杀时间，秒杀券由预热任务提前写入缓存，不访问数据库
+        SeckillVoucher voucher = seckillVoucherService.queryCached(voucherId);
+        if (voucher == null) {
+            return Result.fail("秒杀券不存在！");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (voucher.getBeginTime().isAfter(now)) {
+            return Result.fail("秒杀尚未开始！");
+        }
+        if (voucher.getEndTime().isBefore(now)) {
+            return Result.fail("秒杀已经结束！");
+        }
+
+        // 本节点还持有租约库存时直接在本地扣减，其他节点广播的售罄标记不影响本地剩余库存
+        boolean leased = stockLeaser.isEnabled() && stockLeaser.takeLocal(voucherId);
+
+        // 已售罄时直接拒绝，不再生成订单id和执行Lua脚本
+        if (!leased && soldOutMarker.isSoldOut(voucherId)) {
+            return Result.fail("库存不足！");
+        }
+
+        // 获取用户id和订单id，失败时归还已从租约中扣减的库存
+        Long userId;
+        long orderId;
+        int shards;
+        try {
+            userId = UserHolder.getUser().getId();
+            orderId = idWorker.nextId("order");
+            shards = shardedStockCounter.shardsOf(voucherId);
+        } catch (RuntimeException e) {
+            if (leased) {
+                stockLeaser.giveBack(voucherId);
+            }
+            throw e;
+        }
+
+        // 库存拆分到多个分片时，按用户路由到分片扣减库存
+        if (shards > 1) {
+            return seckillWithShards(voucherId, userId, orderId, shards);
+        }
+
+        // 租约模式：库存在本地扣减，Redis只判断一人一单
+        if (stockLeaser.isEnabled()) {
+            return seckillWithLease(voucherId, userId, orderId, leased);
+        }
         
         // 1. 执行Lua脚本，进行库存判断、用户重复判断、扣减库存、将订单信息发送到Stream消息队列
-        Long result = stringRedisTemplate.execute(
-                SECKILL_SCRIPT,
-                Collections.emptyList(),
-                voucherId.toString(),
-                userId.toString(),
-                String.valueOf(orderId)
-        );
+        //    开启请求合并时与其他并发请求一起在一次Lua调用中执行
+        Long result = admissionBatcher.isEnabled()
+                ? admissionBatcher.admit(voucherId, userId, orderId)
+                : stringRedisTemplate.execute(
+                        SECKILL_SCRIPT,
+                        Collections.emptyList(),
+                        voucherId.toString(),
+                        userId.toString(),
+                        String.valueOf(orderId)
+                );
         
         // 2. 判断结果是否为0
         int r = result.intValue();
         if (r != 0) {
-            // 2.1 不为0，代表没有购买资格
+            // 2.1 不为0，代表没有购买资格，库存不足时标记售罄
+            if (r == 1) {
+                soldOutMarker.markSoldOut(voucherId);
+            }
             return Result.fail(r == 1 ? "库存不足！" : "不能重复下单！");
         }
+        soldOutMarker.onStockAvailable(voucherId);
+        orderStatusStore.markProcessing(orderId, userId, voucherId);
         
         // 3. 返回订单id（订单已加入Stream队列，异步处理中）
         return Result.ok(orderId);
     }
+
+    // 租约库存秒杀：本地租约用完时才访问库存key，一人一单判断和订单消息在一个脚本中完成
+    private Result seckillWithLease(Long voucherId, Long userId, long orderId, boolean leased) {
+        // 1. 本地没有剩余库存时续租一批
+        if (!leased && !stockLeaser.renewAndTake(voucherId)) {
+            soldOutMarker.markSoldOut(voucherId);
+            return Result.fail("库存不足！");
+        }
+
+        // 2. 判断是否重复下单并发送订单消息，失败时归还已扣减的库存
+        Long result;
+        try {
+            result = stringRedisTemplate.execute(
+                    SECKILL_LEASE_SCRIPT,
+                    Arrays.asList(SECKILL_ORDER_KEY + voucherId, SECKILL_ORDER_STREAM),
+                    userId.toString(),
+                    voucherId.toString(),
+                    String.valueOf(orderId)
+            );
+        } catch (RuntimeException e) {
+            stockLeaser.giveBack(voucherId);
+            throw e;
+        }
+        if (result == null || result.intValue() != 0) {
+            stockLeaser.giveBack(voucherId);
+            return Result.fail("不能重复下单！");
+        }
+        soldOutMarker.onStockAvailable(voucherId);
+        orderStatusStore.markProcessing(orderId, userId, voucherId);
+
+        // 3. 返回订单id（订单已加入Stream队列，异步处理中）
+        return Result.ok(orderId);
+    }
+
+    // 分片库存秒杀：脚本只访问同一个slot的分片key，扣减成功后再把订单消息写入Stream
+    private Result seckillWithShards(Long voucherId, Long userId, long orderId, int shards) {
+        // 1. 扣减分片库存，同时占用下单资格
+        int shard = shardedStockCounter.acquire(voucherId, userId, shards);
+        if (shard == ShardedStockCounter.NO_STOCK) {
+            // 所有分片都已尝试过，标记售罄
+            soldOutMarker.markSoldOut(voucherId);
+            return Result.fail("库存不足！");
+        }
+        if (shard == ShardedStockCounter.DUPLICATE) {
+            return Result.fail("不能重复下单！");
+        }
+
+        // 2. 发送订单消息，失败时归还库存和下单资格
+        Map<String, String> message = new HashMap<>(4);
+        message.put("userId", userId.toString());
+        message.put("voucherId", voucherId.toString());
+        message.put("id", String.valueOf(orderId));
+        try {
+            stringRedisTemplate.opsForStream().add(StreamRecords.newRecord().in(SECKILL_ORDER_STREAM).ofMap(message));
+        } catch (RuntimeException e) {
+            shardedStockCounter.release(voucherId, userId, shards, shard);
+            throw e;
+        }
+        soldOutMarker.onStockAvailable(voucherId);
+        orderStatusStore.markProcessing(orderId, userId, voucherId);
+
+        // 3. 返回订单id（订单已加入Stream队列，异步处理中）
+        return Result.ok(orderId);
+    }
+    
+    @Override
+    public Result queryOrderStatus(Long orderId) {
+        Long userId = UserHolder.getUser().getId();
+        // 1. 查询消费者写入的状态记录
+        OrderStatusDTO status = orderStatusStore.get(orderId, userId);
+        if (status != null) {
+            return Result.ok(status);
+        }
+        // 2. 没有状态记录(已过期)，按主键查询订单
+        //    下单成功时已经写入PROCESSING，记录和订单都不存在说明订单id无效或状态已过期且没有落库
+        VoucherOrder order = getById(orderId);
+        if (order == null || !userId.equals(order.getUserId())) {
+            return Result.fail("订单不存在！");
+        }
+        status = new OrderStatusDTO();
+        status.setOrderId(orderId);
+        status.setVoucherId(order.getVoucherId());
+        status.setStatus(OrderStatusDTO.SUCCESS);
+        return Result.ok(status);
+    }
     
     // ============ 同步秒杀版本（已弃用） ============
     // @Override
@@ -277,35 +808,62 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     // ============ 创建订单（异步调用）============
     @Transactional
     public void createVoucherOrder(VoucherOrder voucherOrder) {
-        // 1. 一人一单（双重校验）
-        Long userId = voucherOrder.getUserId();
-        Long voucherId = voucherOrder.getVoucherId();
-        
-        // 1.1 查询订单
-        long count = query().eq("user_id", userId).eq("voucher_id", voucherId).count();
-        // 1.2 判断是否存在
-        if (count > 0) {
-            // 用户已经购买过了
-            log.error("用户已经购买过一次！");
-            return;
+        createVoucherOrders(Collections.singletonList(voucherOrder));
+    }
+
+    @Override
+    @Transactional
+    public List<VoucherOrder> createVoucherOrders(List<VoucherOrder> voucherOrders) {
+        // 1. 一人一单（双重校验）：批内去重，与已有订单的重复由唯一索引uk_user_voucher保证
+        Map<String, VoucherOrder> pending = new LinkedHashMap<>(voucherOrders.size());
+        for (VoucherOrder order : voucherOrders) {
+            if (pending.putIfAbsent(order.getUserId() + ":" + order.getVoucherId(), order) != null) {
+                log.error("用户已经购买过一次！userId: {}, voucherId: {}", order.getUserId(), order.getVoucherId());
+            }
+        }
+
+        // 2. 扣减数据库库存（双重校验），每种优惠券只执行一次聚合扣减
+        Map<Long, List<VoucherOrder>> byVoucher = pending.values().stream()
+                .collect(Collectors.groupingBy(VoucherOrder::getVoucherId, LinkedHashMap::new, Collectors.toList()));
+        List<VoucherOrder> toSave = new ArrayList<>(pending.size());
+        for (Map.Entry<Long, List<VoucherOrder>> entry : byVoucher.entrySet()) {
+            toSave.addAll(deductStock(entry.getKey(), entry.getValue()));
+        }
+        if (toSave.isEmpty()) {
+            return toSave;
         }
 
-        // 2. 扣减数据库库存（双重校验）
+        // 3. 一条多行INSERT保存整批订单
+        getBaseMapper().insertBatch(toSave);
+
+        log.info("批量创建订单成功，数量: {}", toSave.size());
+        return toSave;
+    }
+
+    // 按订单数量扣减库存，库存不足以满足整批时只保留能扣减成功的部分订单
+    private List<VoucherOrder> deductStock(Long voucherId, List<VoucherOrder> orders) {
+        int count = orders.size();
         boolean success = seckillVoucherService.update()
-                .setSql("stock = stock - 1")
+                .setSql("stock = stock - " + count)
                 .eq("voucher_id", voucherId)
-                .gt("stock", 0)
+                .ge("stock", count)
                 .update();
-
-        if (!success) {
-            log.error("库存扣减失败！");
-            return;
+        if (success) {
+            return orders;
         }
-        
-        // 3. 创建订单并保存到数据库
-        save(voucherOrder);
-        
-        log.info("订单创建成功，订单ID: {}", voucherOrder.getId());
+        // Redis中的库存校验正常时不会走到这里，说明数据库库存与Redis不一致
+        SeckillVoucher voucher = seckillVoucherService.getById(voucherId);
+        int stock = voucher == null || voucher.getStock() == null ? 0 : voucher.getStock();
+        if (stock <= 0 || !seckillVoucherService.update()
+                .setSql("stock = stock - " + stock)
+                .eq("voucher_id", voucherId)
+                .ge("stock", stock)
+                .update()) {
+            log.error("库存扣减失败！voucherId: {}, 丢弃订单数: {}", voucherId, count);
+            return Collections.emptyList();
+        }
+        log.error("库存不足！voucherId: {}, 丢弃订单数: {}", voucherId, count - stock);
+        return orders.subList(0, stock);
     }
     
     // ============ 创建订单（同步版本 - 已弃用）============
@@ -7,14 +7,18 @@ import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import com.hmdp.utils.RedisCache;
+import com.hmdp.utils.RedisCacheEvict;
+import com.hmdp.utils.ShardedStockCounter;
+import com.hmdp.utils.SoldOutMarker;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
 import java.util.List;
 
-import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_VOUCHER_KEY;
 
 /**
  * <p>
@@ -31,18 +35,38 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     private ISeckillVoucherService seckillVoucherService;
     
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private ShardedStockCounter shardedStockCounter;
+
+    @Resource
+    private SoldOutMarker soldOutMarker;
+
+    @Lazy
+    @Resource
+    private IVoucherService proxyVoucherService; // 通过自身代理调用，缓存注解才会生效
 
     @Override
     public Result queryVoucherOfShop(Long shopId) {
         // 查询优惠券信息
-        List<Voucher> vouchers = getBaseMapper().queryVoucherOfShop(shopId);
+        List<Voucher> vouchers = proxyVoucherService.listVoucherOfShop(shopId);
         // 返回结果
         return Result.ok(vouchers);
     }
 
+    @Override
+    @RedisCache(prefix = CACHE_SHOP_VOUCHER_KEY, key = "#shopId", ttl = 5)
+    public List<Voucher> listVoucherOfShop(Long shopId) {
+        return getBaseMapper().queryVoucherOfShop(shopId);
+    }
+
+    @Override
+    @RedisCacheEvict(prefix = CACHE_SHOP_VOUCHER_KEY, key = "#voucher.shopId")
+    public void addVoucher(Voucher voucher) {
+        save(voucher);
+    }
+
     @Override
     @Transactional
+    @RedisCacheEvict(prefix = CACHE_SHOP_VOUCHER_KEY, key = "#voucher.shopId")
     public void addSeckillVoucher(Voucher voucher) {
         // 保存优惠券
         save(voucher);
@@ -54,7 +78,25 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherService.save(seckillVoucher);
         
-        // 【异步秒杀优化】保存秒杀库存到Redis中
-        stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY + voucher.getId(), voucher.getStock().toString());
+        // 【异步秒杀优化】保存秒杀库存到Redis中，开启分片时拆分到多个子计数器
+        shardedStockCounter.preload(voucher.getId(), voucher.getStock());
+    }
+
+    @Override
+    @Transactional
+    public boolean replenishSeckillStock(Long voucherId, int amount) {
+        // 1. 数据库库存增加
+        boolean success = seckillVoucherService.update()
+                .setSql("stock = stock + " + amount)
+                .eq("voucher_id", voucherId)
+                .update();
+        if (!success) {
+            return false;
+        }
+        // 2. Redis库存增加，开启分片时平均加到各个分片
+        shardedStockCounter.replenish(voucherId, amount);
+        // 3. 清除各节点的售罄标记
+        soldOutMarker.reset(voucherId);
+        return true;
     }
 }
@@ -0,0 +1,42 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 运维接口权限拦截器
+ * 只允许配置的管理员用户访问 /admin/** 下的接口，未配置管理员时所有运维接口都不可访问
+ */
+@Slf4j
+public class AdminInterceptor implements HandlerInterceptor {
+
+    private final Set<Long> adminUserIds;
+
+    public AdminInterceptor(Collection<Long> adminUserIds) {
+        this.adminUserIds = adminUserIds == null ? new HashSet<>() : new HashSet<>(adminUserIds);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        UserDTO user = UserHolder.getUser();
+        if (user == null) {
+            // 未登录
+            response.setStatus(401);
+            return false;
+        }
+        if (!adminUserIds.contains(user.getId())) {
+            // 不是管理员
+            log.warn("非管理员用户访问运维接口，userId: {}, uri: {}", user.getId(), request.getRequestURI());
+            response.setStatus(403);
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,175 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.BLOOM_ADD_CHANNEL;
+import static com.hmdp.utils.RedisConstants.BLOOM_FILTER_KEY;
+
+/**
+ * 布隆过滤器注册中心，按缓存key前缀管理布隆过滤器，负责本地副本与Redis bitmap之间的同步
+ * 1. 新增元素：写本地位数组，同时用管道执行SETBIT并广播给其他节点
+ * 2. 批量构建：本地构建完成后通过BITOP OR合并到Redis，不会覆盖其他节点写入的位
+ * 3. 定时同步：定期读取Redis bitmap合并到本地，弥补丢失的广播消息
+ */
+@Slf4j
+@Component
+public class BloomFilterRegistry implements MessageListener {
+
+    private final Map<String, RedisBloomFilter> filters = new ConcurrentHashMap<>();
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @PostConstruct
+    private void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(BLOOM_ADD_CHANNEL));
+    }
+
+    /**
+     * 创建并注册布隆过滤器
+     *
+     * @param name               过滤器名称，一般为缓存key前缀
+     * @param expectedInsertions 预计插入的元素数量
+     * @param fpp                期望的误判率
+     */
+    public RedisBloomFilter create(String name, long expectedInsertions, double fpp) {
+        RedisBloomFilter filter = new RedisBloomFilter(name, expectedInsertions, fpp);
+        filters.put(name, filter);
+        log.info("布隆过滤器[{}]创建成功，位数: {}，哈希函数个数: {}", name, filter.getNumBits(), filter.getNumHashFunctions());
+        return filter;
+    }
+
+    public RedisBloomFilter get(String name) {
+        return filters.get(name);
+    }
+
+    public Collection<RedisBloomFilter> all() {
+        return filters.values();
+    }
+
+    /**
+     * 判断元素是否可能存在，没有注册过滤器时总是返回true
+     */
+    public boolean mightContain(String name, Object id) {
+        RedisBloomFilter filter = filters.get(name);
+        return filter == null || filter.mightContain(id);
+    }
+
+    /**
+     * 记录一次误判
+     */
+    public void recordFalsePositive(String name) {
+        RedisBloomFilter filter = filters.get(name);
+        if (filter != null) {
+            filter.recordFalsePositive();
+        }
+    }
+
+    /**
+     * 新增元素：写入本地，SETBIT写入Redis并广播给其他节点，一次管道往返
+     */
+    public void add(String name, Object id) {
+        RedisBloomFilter filter = filters.get(name);
+        if (filter == null) {
+            return;
+        }
+        long[] offsets = filter.putLocal(id);
+        byte[] key = bitmapKey(name);
+        byte[] channel = BLOOM_ADD_CHANNEL.getBytes(StandardCharsets.UTF_8);
+        // 消息格式：节点标识|过滤器名称|元素
+        byte[] message = (CacheClient.NODE_ID + "|" + name + "|" + id).getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (long offset : offsets) {
+                connection.stringCommands().setBit(key, offset, true);
+            }
+            connection.publish(channel, message);
+            return null;
+        });
+    }
+
+    /**
+     * 批量构建：ids只写入本地位数组，全部写入后调用 {@link #publish(String)} 合并到Redis
+     */
+    public void build(String name, Iterable<?> ids) {
+        RedisBloomFilter filter = filters.get(name);
+        if (filter == null) {
+            return;
+        }
+        for (Object id : ids) {
+            filter.putLocal(id);
+        }
+    }
+
+    /**
+     * 将本地位数组合并到Redis：写入临时key后BITOP OR到正式key，再把合并结果读回本地
+     */
+    public void publish(String name) {
+        RedisBloomFilter filter = filters.get(name);
+        if (filter == null) {
+            return;
+        }
+        byte[] key = bitmapKey(name);
+        byte[] tmpKey = (BLOOM_FILTER_KEY + name + ":tmp:" + CacheClient.NODE_ID).getBytes(StandardCharsets.UTF_8);
+        byte[] local = filter.toRedisBitmap();
+        byte[] merged = stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> {
+            connection.stringCommands().set(tmpKey, local);
+            connection.stringCommands().bitOp(RedisStringCommands.BitOperation.OR, key, key, tmpKey);
+            connection.keyCommands().del(tmpKey);
+            return connection.stringCommands().get(key);
+        });
+        filter.mergeRedisBitmap(merged);
+    }
+
+    /**
+     * 定时把Redis中的bitmap合并到本地，弥补丢失的新增广播
+     */
+    @Scheduled(fixedDelayString = "${hmdp.cache.bloom.sync-interval-ms:60000}")
+    public void sync() {
+        for (RedisBloomFilter filter : filters.values()) {
+            try {
+                byte[] key = bitmapKey(filter.getName());
+                byte[] bitmap = stringRedisTemplate.execute(
+                        (RedisCallback<byte[]>) connection -> connection.stringCommands().get(key));
+                filter.mergeRedisBitmap(bitmap);
+            } catch (Exception e) {
+                log.error("布隆过滤器[{}]同步失败", filter.getName(), e);
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 3);
+        if (parts.length != 3 || CacheClient.NODE_ID.equals(parts[0])) {
+            return;
+        }
+        RedisBloomFilter filter = filters.get(parts[1]);
+        if (filter != null) {
+            filter.putLocal(parts[2]);
+        }
+    }
+
+    private byte[] bitmapKey(String name) {
+        return (BLOOM_FILTER_KEY + name).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,18 +1,32 @@
 package com.hmdp.utils;
 
+import cn.hutool.core.convert.BasicType;
+import cn.hutool.core.lang.UUID;
 import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import cn.hutool.core.util.TypeUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.hmdp.utils.RedisConstants.*;
 
@@ -23,21 +37,79 @@ import static com.hmdp.utils.RedisConstants.*;
  * 2. 缓存空值解决缓存穿透
  * 3. 互斥锁解决缓存击穿
  * 4. 逻辑过期解决缓存击穿
+ * 5. 进程内本地缓存(L1) + Redis(L2) 两级缓存，数据更新时通过Redis发布订阅广播失效消息
+ * 6. 布隆过滤器拦截一定不存在的id，不访问Redis和数据库
+ * 7. 缓存值的序列化方式由 {@link CacheCodecRegistry} 按key前缀选择，空字符串表示缓存的空值
+ * 8. 逻辑过期数据记录重建耗时，过期前按 {@link EarlyRefreshPolicy} 概率提前刷新，避免同时写入的key集中重建
+ * 9. 所有TTL(包括逻辑过期时间和空值的TTL)都经过 {@link CachePolicyRegistry} 随机抖动，避免同一批写入的key同时过期
+ * 10. 读取时由 {@link HotKeyCache} 统计访问，热点key自动固定到独立的短TTL本地缓存
+ * 11. 缓存重建统一交给 {@link RefreshAheadScheduler}，最近访问过的逻辑过期key在过期前由后台提前重建
+ * 12. 方法上的 {@link RedisCache} 注解通过带泛型类型的重载方法复用以上策略，重建用的互斥锁按完整key区分
  */
 @Slf4j
 @Component
 public class CacheClient {
 
+    /**
+     * 当前节点标识，用于在失效广播中忽略自己发出的消息
+     */
+    public static final String NODE_ID = UUID.randomUUID().toString(true);
+
     private final StringRedisTemplate stringRedisTemplate;
 
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    private final LocalCache localCache;
+
+    private final boolean localCacheEnabled;
+
+    private final long localTtlMillis;
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    private final BloomFilterRegistry bloomFilterRegistry;
+
+    private final CacheCodecRegistry codecRegistry;
+
+    private final EarlyRefreshPolicy earlyRefreshPolicy;
+
+    private final CachePolicyRegistry cachePolicyRegistry;
 
-    public CacheClient(StringRedisTemplate stringRedisTemplate) {
+    private final HotKeyCache hotKeyCache;
+
+    private final RefreshAheadScheduler refreshAheadScheduler;
+
+    private final AtomicLong earlyRefreshCount = new AtomicLong();
+
+    /**
+     * 缓存空值在Redis中保存为空字符串
+     */
+    private static final byte[] NULL_MARKER = new byte[0];
+
+
+    public CacheClient(StringRedisTemplate stringRedisTemplate,
+                       BloomFilterRegistry bloomFilterRegistry,
+                       CacheCodecRegistry codecRegistry,
+                       CachePolicyRegistry cachePolicyRegistry,
+                       HotKeyCache hotKeyCache,
+                       RefreshAheadScheduler refreshAheadScheduler,
+                       @Value("${hmdp.cache.local.enabled:true}") boolean localCacheEnabled,
+                       @Value("${hmdp.cache.local.max-size:10000}") int localMaxSize,
+                       @Value("${hmdp.cache.local.ttl-seconds:5}") long localTtlSeconds,
+                       @Value("${hmdp.cache.xfetch.beta:1.0}") double earlyRefreshBeta,
+                       @Value("${hmdp.cache.xfetch.min-delta-ms:500}") long earlyRefreshMinDeltaMillis) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.bloomFilterRegistry = bloomFilterRegistry;
+        this.codecRegistry = codecRegistry;
+        this.cachePolicyRegistry = cachePolicyRegistry;
+        this.hotKeyCache = hotKeyCache;
+        this.refreshAheadScheduler = refreshAheadScheduler;
+        this.localCacheEnabled = localCacheEnabled;
+        this.localCache = new LocalCache(localMaxSize);
+        this.localTtlMillis = TimeUnit.SECONDS.toMillis(localTtlSeconds);
+        this.earlyRefreshPolicy = new EarlyRefreshPolicy(earlyRefreshBeta, earlyRefreshMinDeltaMillis);
     }
 
     /**
-     * 方法1：将任意Java对象序列化为json并存储在string类型的key中，并且可以设置TTL过期时间
+     * 方法1：将任意Java对象序列化后存储在string类型的key中，并且可以设置TTL过期时间
      *
      * @param key   键
      * @param value 值
@@ -45,11 +117,13 @@ public class CacheClient {
      * @param unit  时间单位
      */
     public void set(String key, Object value, Long time, TimeUnit unit) {
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), time, unit);
+        long ttlMillis = cachePolicyRegistry.ttlMillis(key, time, unit);
+        setRaw(key, codecRegistry.codecFor(key).encode(value), ttlMillis);
+        putLocal(key, value, ttlMillis);
     }
 
     /**
-     * 方法2：将任意Java对象序列化为json并存储在string类型的key中，并且可以设置逻辑过期时间，用于处理缓存击穿问题
+     * 方法2：将任意Java对象序列化后存储在string类型的key中，并且可以设置逻辑过期时间，用于处理缓存击穿问题
      *
      * @param key   键
      * @param value 值
@@ -57,12 +131,27 @@ public class CacheClient {
      * @param unit  时间单位
      */
     public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit) {
-        // 设置逻辑过期
+        setLogical(key, value, time, unit, 0, false);
+    }
+
+    /**
+     * 写入逻辑过期数据
+     *
+     * @param deltaMillis 本次重建的耗时(毫秒)，用于概率提前刷新
+     * @param withTtl     是否同时设置Redis的过期时间(逻辑过期时间的2倍)，长时间没有访问的key会被Redis清理
+     * @see CachePolicyRegistry#ttlMillis(String, long, TimeUnit)
+     */
+    private void setLogical(String key, Object value, Long time, TimeUnit unit, long deltaMillis, boolean withTtl) {
+        // 设置逻辑过期，逻辑过期时间同样随机抖动
+        long ttlMillis = cachePolicyRegistry.ttlMillis(key, time, unit);
         RedisData redisData = new RedisData();
         redisData.setData(value);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
+        redisData.setExpireTime(LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(ttlMillis)));
+        redisData.setDelta(deltaMillis);
         // 写入Redis
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        setRaw(key, codecRegistry.codecFor(key).encodeLogical(redisData), withTtl ? ttlMillis * 2 : 0);
+        putLocalLogical(key, redisData);
+        refreshAheadScheduler.onWrite(key, toEpochMilli(redisData.getExpireTime()));
     }
 
     /**
@@ -80,20 +169,41 @@ public class CacheClient {
      */
     public <R, ID> R queryWithPassThrough(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return queryWithPassThrough(keyPrefix, id, (Type) type, dbFallback, time, unit);
+    }
+
+    /**
+     * 同 {@link #queryWithPassThrough(String, Object, Class, Function, Long, TimeUnit)}，返回值类型可以带泛型，供 {@link RedisCacheAspect} 使用
+     */
+    <R, ID> R queryWithPassThrough(
+            String keyPrefix, ID id, Type type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        // 布隆过滤器判断id一定不存在时直接返回
+        if (!bloomFilterRegistry.mightContain(keyPrefix, id)) {
+            return null;
+        }
         String key = keyPrefix + id;
+
+        // 0. 先查本地缓存
+        Object local = getLocal(key);
+        if (local != null) {
+            return local == LocalCache.NULL_VALUE ? null : cast(local);
+        }
         
         // 1. 从redis查询缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
+        byte[] bytes = getRaw(key);
         
-        // 2. 判断是否存在
-        if (StrUtil.isNotBlank(json)) {
-            // 3. 存在，直接返回
-            return JSONUtil.toBean(json, type);
+        // 2. 判断是否存在，解码失败按未命中处理
+        R cached = decode(key, bytes, type);
+        if (cached != null) {
+            // 3. 存在，写入本地缓存后返回
+            putLocal(key, cached, localTtlMillis);
+            return cached;
         }
         
         // 判断命中的是否是空值
-        if (json != null) {
+        if (isNullMarker(bytes)) {
             // 返回一个错误信息
+            putLocal(key, null, TimeUnit.MINUTES.toMillis(CACHE_NULL_TTL));
             return null;
         }
         
@@ -102,8 +212,10 @@ public class CacheClient {
         
         // 5. 不存在，返回错误
         if (r == null) {
+            // 布隆过滤器误判
+            bloomFilterRegistry.recordFalsePositive(keyPrefix);
             // 将空值写入redis
-            stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+            setNull(key);
             // 返回错误信息
             return null;
         }
@@ -129,54 +241,322 @@ public class CacheClient {
      */
     public <R, ID> R queryWithLogicalExpire(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return queryWithLogicalExpire(keyPrefix, id, (Type) type, dbFallback, time, unit);
+    }
+
+    /**
+     * 同 {@link #queryWithLogicalExpire(String, Object, Class, Function, Long, TimeUnit)}，返回值类型可以带泛型，供 {@link RedisCacheAspect} 使用
+     */
+    <R, ID> R queryWithLogicalExpire(
+            String keyPrefix, ID id, Type type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        // 布隆过滤器判断id一定不存在时直接返回
+        if (!bloomFilterRegistry.mightContain(keyPrefix, id)) {
+            return null;
+        }
         String key = keyPrefix + id;
+
+        // 0. 先查本地缓存，本地缓存在提前刷新窗口之前失效，命中即未过期且不需要提前刷新
+        // 重建时发现数据已被删除会缓存空值
+        Object local = getLocal(key);
+        if (local != null) {
+            refreshAheadScheduler.touch(key);
+            return local == LocalCache.NULL_VALUE ? null : cast(local);
+        }
         
         // 1. 从redis查询缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
+        byte[] bytes = getRaw(key);
         
-        // 2. 判断是否存在
-        if (StrUtil.isBlank(json)) {
+        // 2. 命中，一次解码同时得到逻辑过期时间和对象
+        RedisData redisData = decodeLogical(key, bytes, type);
+        if (redisData == null) {
             // 3. 不存在，直接返回null
             return null;
         }
         
-        // 4. 命中，需要先把json反序列化为对象
-        RedisData redisData = JSONUtil.toBean(json, RedisData.class);
-        R r = JSONUtil.toBean((JSONObject) redisData.getData(), type);
+        // 4. 取出对象和逻辑过期时间
+        R r = cast(redisData.getData());
         LocalDateTime expireTime = redisData.getExpireTime();
+        Supplier<R> loader = () -> dbFallback.apply(id);
+        // 记录访问，由后台在过期前提前重建
+        trackLogical(key, lockKey(key), type, expireTime, loader, time, unit);
         
         // 5. 判断是否过期
         if (expireTime.isAfter(LocalDateTime.now())) {
-            // 5.1. 未过期，直接返回店铺信息
+            // 5.1. 未过期，按概率提前刷新，写入本地缓存后直接返回店铺信息
+            if (earlyRefreshPolicy.shouldRefresh(redisData)) {
+                earlyRefreshCount.incrementAndGet();
+                rebuildAsync(key, lockKey(key), type, expireTime, loader, time, unit, false);
+            }
+            putLocalLogical(key, redisData);
             return r;
         }
         
         // 5.2. 已过期，需要缓存重建
         // 6. 缓存重建
-        // 6.1. 获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        boolean isLock = tryLock(lockKey);
+        rebuildAsync(key, lockKey(key), type, expireTime, loader, time, unit, false);
         
-        // 6.2. 判断是否获取锁成功
-        if (isLock) {
-            // 6.3. 成功，开启独立线程，实现缓存重建
-            CACHE_REBUILD_EXECUTOR.submit(() -> {
-                try {
-                    // 查询数据库
-                    R newR = dbFallback.apply(id);
-                    // 重建缓存
-                    this.setWithLogicalExpire(key, newR, time, unit);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                } finally {
-                    // 释放锁
-                    unlock(lockKey);
+        // 6.4. 返回过期的商铺信息
+        return r;
+    }
+
+    /**
+     * 根据指定的key查询缓存，过期前按概率提前在后台刷新(XFetch)
+     * 与逻辑过期不同，不需要预热：未命中时同步查询数据库并记录查询耗时，数据不存在时缓存空值
+     * Redis中的数据同时设置逻辑过期时间2倍的TTL，长时间没有访问的key会被清理
+     *
+     * @param keyPrefix  key前缀
+     * @param id         id
+     * @param type       返回值类型
+     * @param dbFallback 查询数据库的函数
+     * @param time       逻辑过期时间
+     * @param unit       时间单位
+     * @param <R>        返回值类型
+     * @param <ID>       id类型
+     * @return 查询结果
+     */
+    public <R, ID> R queryWithEarlyRefresh(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return queryWithEarlyRefresh(keyPrefix, id, (Type) type, dbFallback, time, unit);
+    }
+
+    /**
+     * 同 {@link #queryWithEarlyRefresh(String, Object, Class, Function, Long, TimeUnit)}，返回值类型可以带泛型，供 {@link RedisCacheAspect} 使用
+     */
+    <R, ID> R queryWithEarlyRefresh(
+            String keyPrefix, ID id, Type type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        // 布隆过滤器判断id一定不存在时直接返回
+        if (!bloomFilterRegistry.mightContain(keyPrefix, id)) {
+            return null;
+        }
+        String key = keyPrefix + id;
+
+        // 1. 先查本地缓存，本地缓存在提前刷新窗口之前失效
+        Object local = getLocal(key);
+        if (local != null) {
+            return local == LocalCache.NULL_VALUE ? null : cast(local);
+        }
+
+        // 2. 查询Redis，命中空值直接返回
+        byte[] bytes = getRaw(key);
+        if (isNullMarker(bytes)) {
+            putLocal(key, null, TimeUnit.MINUTES.toMillis(CACHE_NULL_TTL));
+            return null;
+        }
+
+        // 3. 命中，已过期或按概率需要提前刷新时在后台重建，当前请求直接返回缓存数据
+        RedisData redisData = decodeLogical(key, bytes, type);
+        if (redisData != null) {
+            R r = cast(redisData.getData());
+            boolean expired = !redisData.getExpireTime().isAfter(LocalDateTime.now());
+            if (!expired) {
+                putLocalLogical(key, redisData);
+            }
+            if (expired || earlyRefreshPolicy.shouldRefresh(redisData)) {
+                if (!expired) {
+                    earlyRefreshCount.incrementAndGet();
+                }
+                rebuildAsync(key, lockKey(key), type, redisData.getExpireTime(),
+                        () -> dbFallback.apply(id), time, unit, true);
+            }
+            return r;
+        }
+
+        // 4. 未命中，同一节点的并发请求合并为一次数据库查询
+        return singleFlight.execute(key, () -> {
+            long begin = System.currentTimeMillis();
+            R r = dbFallback.apply(id);
+            if (r == null) {
+                // 布隆过滤器误判
+                bloomFilterRegistry.recordFalsePositive(keyPrefix);
+                setNull(key);
+                return null;
+            }
+            setLogical(key, r, time, unit, System.currentTimeMillis() - begin, true);
+            return r;
+        });
+    }
+
+    /**
+     * 批量查询，缓存空值解决缓存穿透
+     * 先查本地缓存，再用一次MGET查询Redis，未命中的id用一次IN查询数据库，最后用管道批量写回Redis
+     *
+     * @param keyPrefix  key前缀
+     * @param ids        id集合
+     * @param type       返回值类型
+     * @param dbFallback 批量查询数据库的函数，如 listByIds
+     * @param idGetter   从查询结果中取出id的函数
+     * @param time       缓存过期时间
+     * @param unit       时间单位
+     * @param <R>        返回值类型
+     * @param <ID>       id类型
+     * @return 按ids顺序排列的查询结果，不存在的id会被跳过
+     */
+    public <R, ID> List<R> queryBatchWithPassThrough(
+            String keyPrefix, Collection<ID> ids, Class<R> type, Function<Collection<ID>, List<R>> dbFallback,
+            Function<R, ID> idGetter, Long time, TimeUnit unit) {
+        Map<ID, R> found = new HashMap<>(ids.size());
+        List<ID> redisIds = new ArrayList<>(ids.size());
+
+        // 1. 布隆过滤器拦截一定不存在的id，再查本地缓存
+        for (ID id : ids) {
+            if (!bloomFilterRegistry.mightContain(keyPrefix, id)) {
+                continue;
+            }
+            Object local = getLocal(keyPrefix + id);
+            if (local == null) {
+                redisIds.add(id);
+            } else if (local != LocalCache.NULL_VALUE) {
+                found.put(id, type.cast(local));
+            }
+        }
+
+        // 2. MGET查询Redis
+        List<ID> missIds = new ArrayList<>(redisIds.size());
+        List<byte[]> values = multiGet(keyPrefix, redisIds);
+        for (int i = 0; i < redisIds.size(); i++) {
+            ID id = redisIds.get(i);
+            byte[] bytes = values.get(i);
+            R r = decode(keyPrefix + id, bytes, type);
+            if (r != null) {
+                putLocal(keyPrefix + id, r, localTtlMillis);
+                found.put(id, r);
+            } else if (isNullMarker(bytes)) {
+                // 命中空值
+                putLocal(keyPrefix + id, null, TimeUnit.MINUTES.toMillis(CACHE_NULL_TTL));
+            } else {
+                missIds.add(id);
+            }
+        }
+
+        // 3. 未命中的id一次性查询数据库，并用管道写回Redis，不存在的id写入空值
+        if (!missIds.isEmpty()) {
+            Map<ID, R> loaded = loadBatch(missIds, dbFallback, idGetter);
+            found.putAll(loaded);
+            for (int i = loaded.size(); i < missIds.size(); i++) {
+                bloomFilterRegistry.recordFalsePositive(keyPrefix);
+            }
+            // 每个key单独计算随机抖动后的TTL
+            Map<ID, Long> ttls = new HashMap<>(missIds.size());
+            for (ID id : missIds) {
+                ttls.put(id, loaded.get(id) == null
+                        ? cachePolicyRegistry.ttlMillis(keyPrefix + id, CACHE_NULL_TTL, TimeUnit.MINUTES)
+                        : cachePolicyRegistry.ttlMillis(keyPrefix + id, time, unit));
+            }
+            CacheCodec codec = codecRegistry.codecFor(keyPrefix);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                RedisStringCommands commands = connection.stringCommands();
+                for (ID id : missIds) {
+                    R r = loaded.get(id);
+                    commands.set(rawKey(keyPrefix + id), r == null ? NULL_MARKER : codec.encode(r),
+                            Expiration.milliseconds(ttls.get(id)), RedisStringCommands.SetOption.upsert());
                 }
+                return null;
             });
+            for (ID id : missIds) {
+                putLocal(keyPrefix + id, loaded.get(id), ttls.get(id));
+            }
         }
-        
-        // 6.4. 返回过期的商铺信息
-        return r;
+
+        // 4. 按调用方的id顺序返回
+        return orderedValues(ids, found);
+    }
+
+    /**
+     * 批量查询，利用逻辑过期解决缓存击穿
+     * 已过期的key返回旧数据并异步重建；Redis中不存在的key用一次IN查询数据库后通过管道写回
+     *
+     * @param keyPrefix  key前缀
+     * @param ids        id集合
+     * @param type       返回值类型
+     * @param dbFallback 批量查询数据库的函数，如 listByIds
+     * @param idGetter   从查询结果中取出id的函数
+     * @param time       逻辑过期时间
+     * @param unit       时间单位
+     * @param <R>        返回值类型
+     * @param <ID>       id类型
+     * @return 按ids顺序排列的查询结果，不存在的id会被跳过
+     */
+    public <R, ID> List<R> queryBatchWithLogicalExpire(
+            String keyPrefix, Collection<ID> ids, Class<R> type, Function<Collection<ID>, List<R>> dbFallback,
+            Function<R, ID> idGetter, Long time, TimeUnit unit) {
+        Map<ID, R> found = new HashMap<>(ids.size());
+        List<ID> redisIds = new ArrayList<>(ids.size());
+
+        // 1. 布隆过滤器拦截一定不存在的id，再查本地缓存，命中即未过期
+        for (ID id : ids) {
+            if (!bloomFilterRegistry.mightContain(keyPrefix, id)) {
+                continue;
+            }
+            Object local = getLocal(keyPrefix + id);
+            if (local == null) {
+                redisIds.add(id);
+            } else if (local != LocalCache.NULL_VALUE) {
+                refreshAheadScheduler.touch(keyPrefix + id);
+                found.put(id, type.cast(local));
+            }
+        }
+
+        // 2. MGET查询Redis
+        List<ID> missIds = new ArrayList<>(redisIds.size());
+        List<byte[]> values = multiGet(keyPrefix, redisIds);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < redisIds.size(); i++) {
+            ID id = redisIds.get(i);
+            RedisData redisData = decodeLogical(keyPrefix + id, values.get(i), type);
+            if (redisData == null) {
+                missIds.add(id);
+                continue;
+            }
+            R r = type.cast(redisData.getData());
+            found.put(id, r);
+            Supplier<R> loader = () -> loadBatch(Collections.singletonList(id), dbFallback, idGetter).get(id);
+            trackLogical(keyPrefix + id, lockKey(keyPrefix + id), type, redisData.getExpireTime(), loader, time, unit);
+            boolean expired = !redisData.getExpireTime().isAfter(now);
+            if (!expired) {
+                putLocalLogical(keyPrefix + id, redisData);
+            }
+            if (expired || earlyRefreshPolicy.shouldRefresh(redisData)) {
+                // 已过期或需要提前刷新，返回当前数据并异步重建
+                if (!expired) {
+                    earlyRefreshCount.incrementAndGet();
+                }
+                rebuildAsync(keyPrefix + id, lockKey(keyPrefix + id), type, redisData.getExpireTime(),
+                        loader, time, unit, false);
+            }
+        }
+
+        // 3. 未命中的id一次性查询数据库，并用管道写回Redis
+        if (!missIds.isEmpty()) {
+            long begin = System.currentTimeMillis();
+            Map<ID, R> loaded = loadBatch(missIds, dbFallback, idGetter);
+            long deltaMillis = System.currentTimeMillis() - begin;
+            found.putAll(loaded);
+            // 每个key单独计算随机抖动后的逻辑过期时间
+            LocalDateTime loadedAt = LocalDateTime.now();
+            Map<ID, RedisData> redisDataMap = new HashMap<>(loaded.size());
+            for (Map.Entry<ID, R> entry : loaded.entrySet()) {
+                long ttlMillis = cachePolicyRegistry.ttlMillis(keyPrefix + entry.getKey(), time, unit);
+                RedisData redisData = new RedisData();
+                redisData.setData(entry.getValue());
+                redisData.setExpireTime(loadedAt.plusNanos(TimeUnit.MILLISECONDS.toNanos(ttlMillis)));
+                redisData.setDelta(deltaMillis);
+                redisDataMap.put(entry.getKey(), redisData);
+            }
+            CacheCodec codec = codecRegistry.codecFor(keyPrefix);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                RedisStringCommands commands = connection.stringCommands();
+                for (Map.Entry<ID, RedisData> entry : redisDataMap.entrySet()) {
+                    commands.set(rawKey(keyPrefix + entry.getKey()), codec.encodeLogical(entry.getValue()));
+                }
+                return null;
+            });
+            for (Map.Entry<ID, RedisData> entry : redisDataMap.entrySet()) {
+                putLocalLogical(keyPrefix + entry.getKey(), entry.getValue());
+            }
+        }
+
+        // 4. 按调用方的id顺序返回
+        return orderedValues(ids, found);
     }
 
     /**
@@ -194,66 +574,413 @@ public class CacheClient {
      */
     public <R, ID> R queryWithMutex(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        return queryWithMutex(keyPrefix, id, (Type) type, dbFallback, time, unit);
+    }
+
+    /**
+     * 同 {@link #queryWithMutex(String, Object, Class, Function, Long, TimeUnit)}，返回值类型可以带泛型，供 {@link RedisCacheAspect} 使用
+     */
+    <R, ID> R queryWithMutex(
+            String keyPrefix, ID id, Type type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        // 布隆过滤器判断id一定不存在时直接返回
+        if (!bloomFilterRegistry.mightContain(keyPrefix, id)) {
+            return null;
+        }
         String key = keyPrefix + id;
+
+        // 0. 先查本地缓存
+        Object local = getLocal(key);
+        if (local != null) {
+            return local == LocalCache.NULL_VALUE ? null : cast(local);
+        }
         
         // 1. 从redis查询缓存
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
+        byte[] bytes = getRaw(key);
         
-        // 2. 判断是否存在
-        if (StrUtil.isNotBlank(shopJson)) {
-            // 3. 存在，直接返回
-            return JSONUtil.toBean(shopJson, type);
+        // 2. 判断是否存在，解码失败按未命中处理
+        R cached = decode(key, bytes, type);
+        if (cached != null) {
+            // 3. 存在，写入本地缓存后返回
+            putLocal(key, cached, localTtlMillis);
+            return cached;
         }
         
         // 判断命中的是否是空值
-        if (shopJson != null) {
+        if (isNullMarker(bytes)) {
             // 返回一个错误信息
+            putLocal(key, null, TimeUnit.MINUTES.toMillis(CACHE_NULL_TTL));
             return null;
         }
         
         // 4. 实现缓存重建
+        // 同一节点上对同一个key的并发请求合并为一次加载，只有一个线程去竞争Redis互斥锁，其余线程等待它的结果
+        return singleFlight.execute(key, () -> loadWithMutex(keyPrefix, id, type, dbFallback, time, unit));
+    }
+
+    /**
+     * 获取互斥锁后查询数据库并重建缓存，获取锁失败时等待持有锁的节点重建完成
+     */
+    private <R, ID> R loadWithMutex(
+            String keyPrefix, ID id, Type type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
         // 4.1. 获取互斥锁
-        String lockKey = LOCK_SHOP_KEY + id;
-        R r = null;
-        try {
+        String lockKey = lockKey(key);
+        while (true) {
             boolean isLock = tryLock(lockKey);
-            
+
             // 4.2. 判断是否获取成功
-            if (!isLock) {
-                // 4.3. 获取锁失败，休眠并重试
+            if (isLock) {
+                try {
+                    return rebuildWithLock(keyPrefix, id, type, dbFallback, time, unit);
+                } finally {
+                    // 7. 释放锁
+                    unlock(lockKey);
+                }
+            }
+
+            // 4.3. 获取锁失败，说明其他节点正在重建，休眠后检查缓存是否已经写入
+            // 锁带有过期时间，持有锁的节点宕机时最多等待LOCK_SHOP_TTL秒
+            try {
                 Thread.sleep(50);
-                return queryWithMutex(keyPrefix, id, type, dbFallback, time, unit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
             }
-            
-            // 4.4. 获取锁成功，根据id查询数据库
-            // DoubleCheck
-            shopJson = stringRedisTemplate.opsForValue().get(key);
-            if (StrUtil.isNotBlank(shopJson)) {
-                return JSONUtil.toBean(shopJson, type);
+            byte[] bytes = getRaw(key);
+            R r = decode(key, bytes, type);
+            if (r != null || isNullMarker(bytes)) {
+                putLocal(key, r, r == null ? TimeUnit.MINUTES.toMillis(CACHE_NULL_TTL) : localTtlMillis);
+                return r;
             }
-            
-            // 查询数据库
-            r = dbFallback.apply(id);
-            
-            // 5. 不存在，返回错误
-            if (r == null) {
-                // 将空值写入redis
-                stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
-                return null;
+        }
+    }
+
+    private <R, ID> R rebuildWithLock(
+            String keyPrefix, ID id, Type type, Function<ID, R> dbFallback, Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        // 4.4. 获取锁成功，根据id查询数据库
+        // DoubleCheck
+        R cached = decode(key, getRaw(key), type);
+        if (cached != null) {
+            putLocal(key, cached, localTtlMillis);
+            return cached;
+        }
+
+        // 查询数据库
+        R r = dbFallback.apply(id);
+
+        // 5. 不存在，返回错误
+        if (r == null) {
+            // 布隆过滤器误判
+            bloomFilterRegistry.recordFalsePositive(keyPrefix);
+            // 将空值写入redis
+            setNull(key);
+            return null;
+        }
+
+        // 6. 存在，写入redis
+        this.set(key, r, time, unit);
+
+        // 8. 返回
+        return r;
+    }
+
+    /**
+     * 清除所有节点上指定key的本地缓存，数据更新后调用
+     * Redis中的数据仍由调用方负责删除
+     *
+     * @param key 键
+     */
+    public void invalidateLocal(String key) {
+        localCache.invalidate(key);
+        hotKeyCache.invalidate(key);
+        // 广播给其他节点，消息格式：节点标识:key
+        stringRedisTemplate.convertAndSend(CACHE_INVALIDATE_CHANNEL, NODE_ID + ":" + key);
+    }
+
+    /**
+     * 处理其他节点广播的失效消息
+     *
+     * @param message 节点标识:key
+     */
+    public void onInvalidateMessage(String message) {
+        int idx = message.indexOf(':');
+        if (idx < 0) {
+            return;
+        }
+        if (NODE_ID.equals(message.substring(0, idx))) {
+            // 自己发出的消息，本地缓存已经清除过了
+            return;
+        }
+        String key = message.substring(idx + 1);
+        localCache.invalidate(key);
+        hotKeyCache.invalidate(key);
+    }
+
+    /**
+     * 删除缓存：删除Redis中的数据，停止提前重建，并清除所有节点的本地缓存
+     *
+     * @param key 键
+     */
+    public void evict(String key) {
+        stringRedisTemplate.delete(key);
+        refreshAheadScheduler.untrack(key);
+        invalidateLocal(key);
+    }
+
+    public LocalCache getLocalCache() {
+        return localCache;
+    }
+
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    public EarlyRefreshPolicy getEarlyRefreshPolicy() {
+        return earlyRefreshPolicy;
+    }
+
+    /**
+     * 未过期就触发的提前刷新次数
+     */
+    public long getEarlyRefreshCount() {
+        return earlyRefreshCount.get();
+    }
+
+    public RefreshAheadScheduler getRefreshAheadScheduler() {
+        return refreshAheadScheduler;
+    }
+
+    /**
+     * 缓存空值，解决缓存穿透
+     */
+    private void setNull(String key) {
+        long ttlMillis = cachePolicyRegistry.ttlMillis(key, CACHE_NULL_TTL, TimeUnit.MINUTES);
+        setRaw(key, NULL_MARKER, ttlMillis);
+        putLocal(key, null, ttlMillis);
+    }
+
+    /**
+     * 查询本地缓存，同时记录一次访问用于热点探测，先查热点key的固定缓存
+     */
+    private Object getLocal(String key) {
+        Object pinned = hotKeyCache.get(key);
+        if (pinned != null) {
+            return pinned;
+        }
+        return localCacheEnabled ? localCache.get(key) : null;
+    }
+
+    /**
+     * 写入本地缓存，存活时间不超过Redis中的TTL，热点key同时固定到热点缓存
+     */
+    private void putLocal(String key, Object value, long ttlMillis) {
+        if (localCacheEnabled) {
+            localCache.put(key, value, Math.min(localTtlMillis, ttlMillis));
+        }
+        hotKeyCache.pin(key, value, ttlMillis);
+    }
+
+    /**
+     * 写入本地缓存，本地缓存在进入提前刷新窗口之前失效，保证本地缓存命中的数据一定未逻辑过期
+     * 本地缓存命中时不做概率判断，窗口内的读取都会落到Redis上，由XFetch决定是否提前刷新
+     */
+    private void putLocalLogical(String key, RedisData redisData) {
+        if (redisData.getData() == null) {
+            return;
+        }
+        long ttlMillis = Duration.between(LocalDateTime.now(), redisData.getExpireTime()).toMillis()
+                - earlyRefreshPolicy.windowMillis(redisData.getDelta());
+        if (ttlMillis > 0) {
+            putLocal(key, redisData.getData(), ttlMillis);
+        }
+    }
+
+    /**
+     * 提交异步重建任务，同一个key同时只会有一个任务
+     *
+     * @param observedExpire 触发重建时读到的逻辑过期时间
+     * @param withTtl        是否同时设置Redis的过期时间
+     */
+    private <R> void rebuildAsync(String key, String lockKey, Type type, LocalDateTime observedExpire,
+                                  Supplier<R> loader, Long time, TimeUnit unit, boolean withTtl) {
+        long observedExpireAt = toEpochMilli(observedExpire);
+        refreshAheadScheduler.submit(key,
+                () -> rebuild(key, lockKey, type, observedExpireAt, loader, time, unit, withTtl));
+    }
+
+    /**
+     * 记录逻辑过期key的访问，由 {@link RefreshAheadScheduler} 在过期前提前重建
+     */
+    private <R> void trackLogical(String key, String lockKey, Type type, LocalDateTime expireTime,
+                                  Supplier<R> loader, Long time, TimeUnit unit) {
+        refreshAheadScheduler.track(key, toEpochMilli(expireTime),
+                observedExpireAt -> rebuild(key, lockKey, type, observedExpireAt, loader, time, unit, false));
+    }
+
+    /**
+     * 获取互斥锁后查询数据库重建逻辑过期缓存，并记录本次重建的耗时
+     *
+     * @param observedExpireAt 触发重建时读到的逻辑过期时间(毫秒时间戳)，Redis中的数据比它新说明已被其他节点重建
+     */
+    private <R> void rebuild(String key, String lockKey, Type type, long observedExpireAt,
+                             Supplier<R> loader, Long time, TimeUnit unit, boolean withTtl) {
+        // 6.1. 获取互斥锁，获取失败说明其他节点正在重建
+        if (!tryLock(lockKey)) {
+            return;
+        }
+        try {
+            // 6.2. DoubleCheck，已被其他节点重建时不再查询数据库
+            RedisData current = decodeLogical(key, getRaw(key), type);
+            if (current != null && toEpochMilli(current.getExpireTime()) > observedExpireAt) {
+                refreshAheadScheduler.onWrite(key, toEpochMilli(current.getExpireTime()));
+                return;
+            }
+            // 6.3. 查询数据库
+            long begin = System.currentTimeMillis();
+            R newR = loader.get();
+            // 6.4. 重建缓存，数据已被删除时写入空值并停止提前重建
+            if (newR == null) {
+                setNull(key);
+                refreshAheadScheduler.untrack(key);
+            } else {
+                setLogical(key, newR, time, unit, System.currentTimeMillis() - begin, withTtl);
             }
-            
-            // 6. 存在，写入redis
-            this.set(key, r, time, unit);
-            
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
         } finally {
-            // 7. 释放锁
+            // 释放锁
             unlock(lockKey);
         }
-        
-        // 8. 返回
-        return r;
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * 一次MGET查询多个key，返回值与ids一一对应，不存在的key对应null
+     */
+    private <ID> List<byte[]> multiGet(String keyPrefix, List<ID> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        byte[][] keys = new byte[ids.size()][];
+        for (int i = 0; i < ids.size(); i++) {
+            keys[i] = rawKey(keyPrefix + ids.get(i));
+        }
+        List<byte[]> values = stringRedisTemplate.execute(
+                (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(keys));
+        return values == null ? Collections.nCopies(ids.size(), null) : values;
+    }
+
+    /**
+     * 读取原始字节，不经过StringRedisTemplate的字符串序列化，二进制编解码器的数据也能原样读出
+     */
+    private byte[] getRaw(String key) {
+        byte[] rawKey = rawKey(key);
+        return stringRedisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(rawKey));
+    }
+
+    /**
+     * 写入原始字节
+     *
+     * @param ttlMillis 过期时间(毫秒)，小于等于0时不设置过期时间
+     */
+    private void setRaw(String key, byte[] value, long ttlMillis) {
+        byte[] rawKey = rawKey(key);
+        stringRedisTemplate.execute((RedisCallback<Object>) connection -> ttlMillis > 0
+                ? connection.stringCommands().set(rawKey, value,
+                        Expiration.milliseconds(ttlMillis), RedisStringCommands.SetOption.upsert())
+                : connection.stringCommands().set(rawKey, value));
+    }
+
+    private static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 重建缓存用的互斥锁，不同前缀下相同id的key互不影响
+     */
+    private static String lockKey(String key) {
+        return LOCK_CACHE_KEY + key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> R cast(Object value) {
+        return (R) value;
+    }
+
+    /**
+     * 取出类型的原始类，如 List&lt;Voucher&gt; 为 List，用于校验解码结果的类型
+     */
+    private static Class<?> rawClass(Type type) {
+        Class<?> clazz = TypeUtil.getClass(type);
+        if (clazz == null) {
+            return Object.class;
+        }
+        return clazz.isPrimitive() ? BasicType.wrap(clazz) : clazz;
+    }
+
+    private static boolean isNullMarker(byte[] bytes) {
+        return bytes != null && bytes.length == 0;
+    }
+
+    /**
+     * 解码普通缓存值，不存在、空值或解码失败时返回null
+     * 解码失败一般是切换了编解码器后读到了旧格式的数据，按未命中处理，重建后会被新格式覆盖
+     */
+    private <R> R decode(String key, byte[] bytes, Type type) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            Object value = codecRegistry.codecFor(key).decode(bytes, type);
+            return rawClass(type).isInstance(value) ? cast(value) : null;
+        } catch (RuntimeException e) {
+            log.warn("缓存[{}]解码失败，按未命中处理: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 解码逻辑过期缓存值，不存在或解码失败时返回null
+     */
+    private RedisData decodeLogical(String key, byte[] bytes, Type type) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            RedisData redisData = codecRegistry.codecFor(key).decodeLogical(bytes, type);
+            if (redisData.getExpireTime() == null || !rawClass(type).isInstance(redisData.getData())) {
+                return null;
+            }
+            return redisData;
+        } catch (RuntimeException e) {
+            log.warn("缓存[{}]解码失败，按未命中处理: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private <R, ID> Map<ID, R> loadBatch(
+            Collection<ID> ids, Function<Collection<ID>, List<R>> dbFallback, Function<R, ID> idGetter) {
+        List<R> list = dbFallback.apply(ids);
+        Map<ID, R> map = new HashMap<>(ids.size());
+        if (list != null) {
+            for (R r : list) {
+                map.put(idGetter.apply(r), r);
+            }
+        }
+        return map;
+    }
+
+    private <R, ID> List<R> orderedValues(Collection<ID> ids, Map<ID, R> found) {
+        List<R> result = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            R r = found.get(id);
+            if (r != null) {
+                result.add(r);
+            }
+        }
+        return result;
     }
 
     /**
@@ -0,0 +1,42 @@
+package com.hmdp.utils;
+
+import java.lang.reflect.Type;
+
+/**
+ * 缓存值的编解码器，CacheClient按key前缀选择使用哪种编解码器
+ * 空字节数组表示缓存的空值，编解码器不会收到空字节数组
+ */
+public interface CacheCodec {
+
+    /**
+     * 编解码器名称，用于配置中按名称选择
+     */
+    String name();
+
+    /**
+     * 序列化普通缓存值
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 反序列化普通缓存值
+     *
+     * @param bytes 序列化后的数据
+     * @param type  目标类型，可以是带泛型的类型
+     */
+    <T> T decode(byte[] bytes, Type type);
+
+    /**
+     * 序列化带逻辑过期时间的缓存值
+     */
+    byte[] encodeLogical(RedisData redisData);
+
+    /**
+     * 反序列化带逻辑过期时间的缓存值，一次解析同时得到过期时间和目标类型的数据
+     *
+     * @param bytes 序列化后的数据
+     * @param type  data的目标类型
+     * @return data已经转换为目标类型的RedisData
+     */
+    RedisData decodeLogical(byte[] bytes, Type type);
+}
@@ -0,0 +1,96 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 缓存编解码器注册中心，按key前缀选择编解码器
+ * 配置格式：hmdp.cache.codec.mapping=cache:shop:=kryo,cache:user:=jackson
+ * 多个前缀都能匹配时使用最长的前缀，没有匹配的key使用默认编解码器
+ * 切换某个前缀的编解码器后，Redis中旧格式的数据会解码失败并按未命中处理，随后被新格式覆盖
+ * {@link RedisCache#codec()} 通过 {@link #bind(String, String)} 在运行时追加前缀，配置文件中的前缀优先
+ */
+@Slf4j
+@Component
+public class CacheCodecRegistry {
+
+    private final Map<String, CacheCodec> codecs = new HashMap<>();
+
+    private final CacheCodec defaultCodec;
+
+    /**
+     * 按前缀长度降序排列，保证先匹配到最长的前缀
+     */
+    private volatile List<Map.Entry<String, CacheCodec>> prefixCodecs = new ArrayList<>();
+
+    public CacheCodecRegistry(@Value("${hmdp.cache.codec.default:json}") String defaultName,
+                              @Value("${hmdp.cache.codec.mapping:}") String mapping) {
+        register(new HutoolJsonCodec());
+        register(new JacksonCodec());
+        register(new KryoCodec());
+        this.defaultCodec = getCodec(defaultName);
+        for (String item : StrUtil.split(mapping, ',', true, true)) {
+            int idx = item.lastIndexOf('=');
+            if (idx <= 0) {
+                throw new IllegalArgumentException("缓存编解码器配置格式错误: " + item);
+            }
+            String prefix = item.substring(0, idx).trim();
+            CacheCodec codec = getCodec(item.substring(idx + 1).trim());
+            prefixCodecs.add(new HashMap.SimpleImmutableEntry<>(prefix, codec));
+            log.info("缓存前缀[{}]使用编解码器: {}", prefix, codec.name());
+        }
+        prefixCodecs.sort((a, b) -> b.getKey().length() - a.getKey().length());
+    }
+
+    /**
+     * 根据key选择编解码器
+     */
+    public CacheCodec codecFor(String key) {
+        for (Map.Entry<String, CacheCodec> entry : prefixCodecs) {
+            if (key.startsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return defaultCodec;
+    }
+
+    /**
+     * 为前缀指定编解码器，前缀已经配置过时保持原配置，便于不改代码切换编解码器
+     *
+     * @return 该前缀实际使用的编解码器
+     */
+    public synchronized CacheCodec bind(String prefix, String name) {
+        CacheCodec codec = getCodec(name);
+        for (Map.Entry<String, CacheCodec> entry : prefixCodecs) {
+            if (entry.getKey().equals(prefix)) {
+                return entry.getValue();
+            }
+        }
+        // 复制后替换，codecFor读取时不需要加锁
+        List<Map.Entry<String, CacheCodec>> copy = new ArrayList<>(prefixCodecs);
+        copy.add(new HashMap.SimpleImmutableEntry<>(prefix, codec));
+        copy.sort((a, b) -> b.getKey().length() - a.getKey().length());
+        prefixCodecs = copy;
+        log.info("缓存前缀[{}]使用编解码器: {}", prefix, codec.name());
+        return codec;
+    }
+
+    public CacheCodec getCodec(String name) {
+        CacheCodec codec = codecs.get(name);
+        if (codec == null) {
+            throw new IllegalArgumentException("未知的缓存编解码器: " + name);
+        }
+        return codec;
+    }
+
+    private void register(CacheCodec codec) {
+        codecs.put(codec.name(), codec);
+    }
+}
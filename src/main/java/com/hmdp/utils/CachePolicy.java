@@ -0,0 +1,74 @@
+package com.hmdp.utils;
+
+import lombok.Getter;
+
+/**
+ * 单个key前缀的过期时间策略
+ * 实际TTL = 调用方给出的TTL(或固定TTL) * (1 + [-jitter, +jitter]之间的随机比例)，再限制在[min, max]之间
+ */
+@Getter
+public class CachePolicy {
+
+    /**
+     * 不限制/不覆盖
+     */
+    public static final long UNSET = -1;
+
+    /**
+     * 随机抖动比例，0.1表示在基础TTL上下10%范围内随机
+     */
+    private final double jitter;
+
+    /**
+     * TTL下限(毫秒)
+     */
+    private final long minTtlMillis;
+
+    /**
+     * TTL上限(毫秒)
+     */
+    private final long maxTtlMillis;
+
+    /**
+     * 固定TTL(毫秒)，设置后忽略调用方给出的TTL，用于运行时调整
+     */
+    private final long fixedTtlMillis;
+
+    public CachePolicy(double jitter, long minTtlMillis, long maxTtlMillis, long fixedTtlMillis) {
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("jitter必须在[0,1)之间");
+        }
+        if (minTtlMillis != UNSET && maxTtlMillis != UNSET && minTtlMillis > maxTtlMillis) {
+            throw new IllegalArgumentException("TTL下限不能大于上限");
+        }
+        this.jitter = jitter;
+        this.minTtlMillis = minTtlMillis;
+        this.maxTtlMillis = maxTtlMillis;
+        this.fixedTtlMillis = fixedTtlMillis;
+    }
+
+    /**
+     * 计算实际TTL
+     *
+     * @param ttlMillis 调用方给出的基础TTL(毫秒)
+     * @param random    [0,1)之间的随机数
+     * @return 实际TTL(毫秒)，至少为1
+     */
+    public long apply(long ttlMillis, double random) {
+        long base = fixedTtlMillis != UNSET ? fixedTtlMillis : ttlMillis;
+        long ttl = Math.round(base * (1 + jitter * (2 * random - 1)));
+        if (minTtlMillis != UNSET) {
+            ttl = Math.max(ttl, minTtlMillis);
+        }
+        if (maxTtlMillis != UNSET) {
+            ttl = Math.min(ttl, maxTtlMillis);
+        }
+        return Math.max(1, ttl);
+    }
+
+    @Override
+    public String toString() {
+        return "jitter=" + jitter + ", minTtlMillis=" + minTtlMillis
+                + ", maxTtlMillis=" + maxTtlMillis + ", fixedTtlMillis=" + fixedTtlMillis;
+    }
+}
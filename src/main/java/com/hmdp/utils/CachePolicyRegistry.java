@@ -0,0 +1,223 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存过期时间策略注册中心，所有带TTL的Redis key都通过这里计算实际TTL
+ * 1. 按key前缀配置随机抖动比例和TTL上下限，同一批写入的key不会在同一秒过期，避免缓存雪崩
+ * 2. 支持运行时覆盖某个前缀的策略(只对当前节点生效)，覆盖优先于配置
+ * 3. 按前缀统计写入的key的预计过期时间分布，用于验证过期时间是否足够分散
+ * 配置格式：hmdp.cache.policy.rules=cache:shop:=0.2/60/3600;login:token:=0.05//
+ * 每条规则依次为 抖动比例/TTL下限(秒)/TTL上限(秒)，上下限可以为空
+ */
+@Slf4j
+@Component
+public class CachePolicyRegistry {
+
+    /**
+     * 没有匹配到任何前缀时使用的策略名称
+     */
+    public static final String DEFAULT_PREFIX = "*";
+
+    /**
+     * 每个前缀的过期时间分布最多保留的时间桶数量
+     */
+    private static final int MAX_BUCKETS = 200;
+
+    private final CachePolicy defaultPolicy;
+
+    private final Map<String, CachePolicy> configured = new ConcurrentHashMap<>();
+
+    private final Map<String, CachePolicy> overrides = new ConcurrentHashMap<>();
+
+    private final Map<String, ExpiryHistogram> histograms = new ConcurrentHashMap<>();
+
+    public CachePolicyRegistry(@Value("${hmdp.cache.policy.default-jitter:0.1}") double defaultJitter,
+                               @Value("${hmdp.cache.policy.rules:}") String rules) {
+        this.defaultPolicy = new CachePolicy(defaultJitter, CachePolicy.UNSET, CachePolicy.UNSET, CachePolicy.UNSET);
+        for (String rule : StrUtil.split(rules, ';', true, true)) {
+            int idx = rule.lastIndexOf('=');
+            if (idx <= 0) {
+                throw new IllegalArgumentException("缓存过期策略配置格式错误: " + rule);
+            }
+            String prefix = rule.substring(0, idx).trim();
+            List<String> parts = StrUtil.split(rule.substring(idx + 1), '/', true, false);
+            CachePolicy policy = new CachePolicy(
+                    parts.isEmpty() || parts.get(0).isEmpty() ? defaultJitter : Double.parseDouble(parts.get(0)),
+                    seconds(parts, 1), seconds(parts, 2), CachePolicy.UNSET);
+            configured.put(prefix, policy);
+            log.info("缓存前缀[{}]过期策略: {}", prefix, policy);
+        }
+    }
+
+    /**
+     * 计算key的实际TTL，并记录到过期时间分布中
+     *
+     * @param key  完整的key
+     * @param time 基础TTL
+     * @param unit 时间单位
+     * @return 实际TTL(毫秒)
+     */
+    public long ttlMillis(String key, long time, TimeUnit unit) {
+        String prefix = matchPrefix(key);
+        long ttl = policyOf(prefix).apply(unit.toMillis(time), ThreadLocalRandom.current().nextDouble());
+        histograms.computeIfAbsent(prefix, p -> new ExpiryHistogram(ttl))
+                .record(System.currentTimeMillis() + ttl);
+        return ttl;
+    }
+
+    /**
+     * 计算续期时的TTL，不记录到过期时间分布中
+     * 用于每次请求都会续期的key(如登录token)，避免分布统计被请求量淹没，热路径上也不需要更新统计
+     *
+     * @param key  完整的key
+     * @param time 基础TTL
+     * @param unit 时间单位
+     * @return 实际TTL(毫秒)
+     */
+    public long renewalTtlMillis(String key, long time, TimeUnit unit) {
+        return policyOf(matchPrefix(key)).apply(unit.toMillis(time), ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * 运行时覆盖某个前缀的策略
+     */
+    public void override(String prefix, CachePolicy policy) {
+        overrides.put(prefix, policy);
+        // 桶宽按新的TTL重新计算
+        histograms.remove(prefix);
+        log.info("缓存前缀[{}]过期策略被覆盖: {}", prefix, policy);
+    }
+
+    /**
+     * 取消运行时覆盖，恢复配置的策略
+     */
+    public void clearOverride(String prefix) {
+        if (overrides.remove(prefix) != null) {
+            histograms.remove(prefix);
+            log.info("缓存前缀[{}]过期策略恢复为配置值", prefix);
+        }
+    }
+
+    /**
+     * 当前生效的全部策略，key为前缀
+     */
+    public Map<String, CachePolicy> policies() {
+        Map<String, CachePolicy> result = new LinkedHashMap<>();
+        result.put(DEFAULT_PREFIX, defaultPolicy);
+        result.putAll(configured);
+        result.putAll(overrides);
+        return result;
+    }
+
+    /**
+     * 各前缀预计过期时间的分布
+     *
+     * @return key为前缀，value包含桶宽、各时间桶的过期数量，以及峰值与均值之比(越接近1越分散)
+     */
+    public Map<String, Object> expiryDistribution() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, ExpiryHistogram> entry : histograms.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot(now));
+        }
+        return result;
+    }
+
+    /**
+     * 按最长前缀匹配，运行时覆盖的前缀也参与匹配
+     */
+    private String matchPrefix(String key) {
+        String matched = DEFAULT_PREFIX;
+        int matchedLength = 0;
+        for (String prefix : configured.keySet()) {
+            if (prefix.length() > matchedLength && key.startsWith(prefix)) {
+                matched = prefix;
+                matchedLength = prefix.length();
+            }
+        }
+        for (String prefix : overrides.keySet()) {
+            if (prefix.length() > matchedLength && key.startsWith(prefix)) {
+                matched = prefix;
+                matchedLength = prefix.length();
+            }
+        }
+        return matched;
+    }
+
+    private CachePolicy policyOf(String prefix) {
+        CachePolicy policy = overrides.get(prefix);
+        if (policy == null) {
+            policy = configured.get(prefix);
+        }
+        return policy == null ? defaultPolicy : policy;
+    }
+
+    private static long seconds(List<String> parts, int index) {
+        if (parts.size() <= index || parts.get(index).isEmpty()) {
+            return CachePolicy.UNSET;
+        }
+        return TimeUnit.SECONDS.toMillis(Long.parseLong(parts.get(index)));
+    }
+
+    /**
+     * 预计过期时间的分布，按固定宽度的时间桶计数
+     * 桶宽为第一次记录时TTL的1/50，已经过去的桶在记录时清除
+     */
+    static class ExpiryHistogram {
+
+        private final long bucketMillis;
+
+        private final NavigableMap<Long, AtomicLong> buckets = new ConcurrentSkipListMap<>();
+
+        ExpiryHistogram(long ttlMillis) {
+            this.bucketMillis = Math.max(1000, ttlMillis / 50);
+        }
+
+        void record(long expireAt) {
+            long bucket = expireAt / bucketMillis;
+            buckets.computeIfAbsent(bucket, b -> new AtomicLong()).incrementAndGet();
+            // 清除已经过期的桶，并限制桶的数量
+            long current = System.currentTimeMillis() / bucketMillis;
+            buckets.headMap(current, false).clear();
+            while (buckets.size() > MAX_BUCKETS) {
+                buckets.pollFirstEntry();
+            }
+        }
+
+        Map<String, Object> snapshot(long now) {
+            List<Map<String, Object>> list = new ArrayList<>();
+            long total = 0;
+            long peak = 0;
+            for (Map.Entry<Long, AtomicLong> entry : buckets.tailMap(now / bucketMillis, true).entrySet()) {
+                long count = entry.getValue().get();
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("expireAt", entry.getKey() * bucketMillis);
+                item.put("count", count);
+                list.add(item);
+                total += count;
+                peak = Math.max(peak, count);
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("bucketMillis", bucketMillis);
+            result.put("total", total);
+            result.put("peakToMean", list.isEmpty() ? 0 : (double) peak * list.size() / total);
+            result.put("buckets", list);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.hmdp.utils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 概率提前刷新(XFetch)策略
+ * 每次读取时按 剩余时间 <= delta * beta * (-ln(random)) 判断是否提前刷新，其中delta为上次重建的耗时
+ * 越接近过期时间、重建越慢，提前刷新的概率越大，同一时刻写入的key会在过期前的不同时间点分别刷新，避免重建集中在同一时刻
+ */
+public class EarlyRefreshPolicy {
+
+    /**
+     * 提前刷新的激进程度，越大越早刷新，0表示关闭提前刷新
+     */
+    private final double beta;
+
+    /**
+     * delta的下限(毫秒)
+     * 数据库查询通常只需要几毫秒，直接使用会导致只在过期前几毫秒才可能刷新，起不到打散的作用
+     */
+    private final long minDeltaMillis;
+
+    /**
+     * 窗口为平均提前量 delta * beta 的倍数
+     */
+    private static final int WINDOW_FACTOR = 3;
+
+    public EarlyRefreshPolicy(double beta, long minDeltaMillis) {
+        if (beta < 0 || minDeltaMillis < 0) {
+            throw new IllegalArgumentException("beta和minDeltaMillis不能为负数");
+        }
+        this.beta = beta;
+        this.minDeltaMillis = minDeltaMillis;
+    }
+
+    /**
+     * 判断逻辑过期数据是否需要提前刷新
+     */
+    public boolean shouldRefresh(RedisData redisData) {
+        long remainingMillis = Duration.between(LocalDateTime.now(), redisData.getExpireTime()).toMillis();
+        return shouldRefresh(remainingMillis, redisData.getDelta(), ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * @param remainingMillis 距离逻辑过期的剩余时间(毫秒)
+     * @param deltaMillis     上次重建的耗时(毫秒)
+     * @param random          (0,1)之间的随机数
+     */
+    public boolean shouldRefresh(long remainingMillis, long deltaMillis, double random) {
+        if (remainingMillis <= 0) {
+            return true;
+        }
+        if (beta == 0) {
+            return false;
+        }
+        // random为0时-ln(random)为无穷大，此时总是刷新
+        double gap = Math.max(deltaMillis, minDeltaMillis) * beta * -Math.log(random);
+        return remainingMillis <= gap;
+    }
+
+    /**
+     * 提前刷新窗口(毫秒)：剩余时间大于窗口时每次读取触发刷新的概率不超过 e^-3 ≈ 5%
+     * 本地缓存在进入窗口前失效，窗口内的读取落到Redis上参与概率判断
+     */
+    public long windowMillis(long deltaMillis) {
+        return (long) (Math.max(deltaMillis, minDeltaMillis) * beta * WINDOW_FACTOR);
+    }
+
+    public double getBeta() {
+        return beta;
+    }
+
+    public long getMinDeltaMillis() {
+        return minDeltaMillis;
+    }
+}
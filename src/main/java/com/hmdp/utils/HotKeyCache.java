@@ -0,0 +1,97 @@
+package com.hmdp.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * 热点key本地缓存
+ * 所有经过CacheClient或直接访问Redis的读路径都在这里记录访问，由 {@link HotKeyDetector} 判断是否为热点
+ * 热点key的值被固定到一个独立的短TTL本地缓存中，不受普通本地缓存LRU淘汰和开关的影响，热点期间不再访问Redis
+ * 数据更新时通过 {@link CacheClient#invalidateLocal(String)} 广播失效
+ */
+@Component
+public class HotKeyCache {
+
+    private final boolean enabled;
+
+    private final long pinnedTtlMillis;
+
+    private final HotKeyDetector detector;
+
+    private final LocalCache pinned;
+
+    public HotKeyCache(@Value("${hmdp.cache.hotkey.enabled:true}") boolean enabled,
+                       @Value("${hmdp.cache.hotkey.window-ms:10000}") long windowMillis,
+                       @Value("${hmdp.cache.hotkey.slices:5}") int slices,
+                       @Value("${hmdp.cache.hotkey.threshold:500}") long threshold,
+                       @Value("${hmdp.cache.hotkey.top-k:20}") int topK,
+                       @Value("${hmdp.cache.hotkey.sample-rate:0.1}") double sampleRate,
+                       @Value("${hmdp.cache.hotkey.pinned-ttl-ms:3000}") long pinnedTtlMillis,
+                       @Value("${hmdp.cache.hotkey.pinned-max-size:1024}") int pinnedMaxSize) {
+        this.enabled = enabled;
+        this.pinnedTtlMillis = pinnedTtlMillis;
+        this.detector = new HotKeyDetector(windowMillis, slices, threshold, topK, sampleRate);
+        this.pinned = new LocalCache(pinnedMaxSize);
+    }
+
+    /**
+     * 记录一次访问，并查询固定的热点值
+     *
+     * @return 固定的值，未固定返回null，固定的空值返回{@link LocalCache#NULL_VALUE}
+     */
+    public Object get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        detector.record(key);
+        return pinned.get(key);
+    }
+
+    /**
+     * key为热点时固定到本地
+     *
+     * @param ttlMillis 数据本身的剩余有效期，固定时间不会超过它
+     */
+    public void pin(String key, Object value, long ttlMillis) {
+        if (enabled && detector.isHot(key)) {
+            pinned.put(key, value, Math.min(pinnedTtlMillis, ttlMillis));
+        }
+    }
+
+    /**
+     * 用于直接访问Redis的读路径：热点key固定在本地时直接返回，否则执行loader，热点key的结果会被固定
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getOrLoad(String key, Supplier<T> loader) {
+        Object value = get(key);
+        if (value != null) {
+            return value == LocalCache.NULL_VALUE ? null : (T) value;
+        }
+        T loaded = loader.get();
+        pin(key, loaded, pinnedTtlMillis);
+        return loaded;
+    }
+
+    /**
+     * 只记录访问，用于无法缓存结果的读路径(如按用户查询的点赞状态)，让热点统计覆盖这部分流量
+     */
+    public void record(String key) {
+        if (enabled) {
+            detector.record(key);
+        }
+    }
+
+    public void invalidate(String key) {
+        pinned.invalidate(key);
+    }
+
+    public HotKeyDetector getDetector() {
+        return detector;
+    }
+
+    public LocalCache getPinned() {
+        return pinned;
+    }
+}
@@ -0,0 +1,217 @@
+package com.hmdp.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 热点key探测器
+ * 1. 按采样率记录访问，计数放大为 1/采样率，访问量大时只有少量请求需要计数
+ * 2. 滑动窗口由多个时间片组成，每个时间片是一个Count-Min Sketch，窗口内的访问量为各时间片估计值之和
+ * 3. 估计访问量达到阈值的key视为热点，同时维护窗口内访问量最大的K个key
+ * Count-Min Sketch只会高估不会低估，宽度越大高估越少
+ */
+public class HotKeyDetector {
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 2048;
+    private static final int[] SEEDS = {0x9747b28c, 0x85ebca6b, 0xc2b2ae35, 0x27d4eb2f};
+
+    private final long sliceMillis;
+    private final long threshold;
+    private final int topK;
+    private final double sampleRate;
+    private final long increment;
+
+    private final Slice[] slices;
+
+    /**
+     * 候选的TopK，key为热点候选，value为记录时的估计访问量，超过2K个时按估计值裁剪
+     */
+    private final Map<String, Long> candidates = new HashMap<>();
+
+    /**
+     * 上次裁剪后候选中的最小估计值，低于该值的key不需要加锁更新候选
+     */
+    private volatile long candidateFloor;
+
+    /**
+     * @param windowMillis 滑动窗口长度(毫秒)
+     * @param sliceCount   窗口划分的时间片数量
+     * @param threshold    窗口内访问量达到该值视为热点
+     * @param topK         保留访问量最大的key的数量
+     * @param sampleRate   采样率，(0,1]
+     */
+    public HotKeyDetector(long windowMillis, int sliceCount, long threshold, int topK, double sampleRate) {
+        if (sliceCount <= 0 || windowMillis < sliceCount || sampleRate <= 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("热点探测参数错误");
+        }
+        this.sliceMillis = windowMillis / sliceCount;
+        this.threshold = threshold;
+        this.topK = topK;
+        this.sampleRate = sampleRate;
+        this.increment = Math.round(1 / sampleRate);
+        this.slices = new Slice[sliceCount];
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new Slice();
+        }
+    }
+
+    /**
+     * 按采样率记录一次访问
+     *
+     * @return key当前是否为热点
+     */
+    public boolean record(String key) {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return isHot(key);
+        }
+        return record(key, System.currentTimeMillis());
+    }
+
+    /**
+     * 记录一次访问(不采样)，计数按采样率放大
+     */
+    public boolean record(String key, long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        Slice slice = slices[(int) (epoch % slices.length)];
+        if (slice.resetIfStale(epoch)) {
+            // 时间片轮转后旧的计数离开窗口，候选的下限随之失效
+            candidateFloor = 0;
+        }
+        int[] indexes = indexes(key);
+        for (int row = 0; row < DEPTH; row++) {
+            slice.counts.addAndGet(row * WIDTH + indexes[row], increment);
+        }
+        long estimate = estimate(indexes, epoch);
+        updateCandidates(key, estimate);
+        return estimate >= threshold;
+    }
+
+    public boolean isHot(String key) {
+        return estimate(key, System.currentTimeMillis()) >= threshold;
+    }
+
+    /**
+     * 窗口内估计的访问量
+     */
+    public long estimate(String key, long nowMillis) {
+        return estimate(indexes(key), nowMillis / sliceMillis);
+    }
+
+    /**
+     * 窗口内访问量最大的K个key，按访问量降序
+     *
+     * @return key -> 估计访问量
+     */
+    public Map<String, Long> topK() {
+        return topK(System.currentTimeMillis());
+    }
+
+    public Map<String, Long> topK(long nowMillis) {
+        List<String> keys;
+        synchronized (candidates) {
+            keys = new ArrayList<>(candidates.keySet());
+        }
+        List<Map.Entry<String, Long>> list = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            long estimate = estimate(key, nowMillis);
+            if (estimate > 0) {
+                list.add(new HashMap.SimpleImmutableEntry<>(key, estimate));
+            }
+        }
+        list.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < Math.min(topK, list.size()); i++) {
+            result.put(list.get(i).getKey(), list.get(i).getValue());
+        }
+        return result;
+    }
+
+    public long getThreshold() {
+        return threshold;
+    }
+
+    private long estimate(int[] indexes, long epoch) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            long sum = 0;
+            for (Slice slice : slices) {
+                // 只统计窗口内的时间片
+                if (epoch - slice.epoch < slices.length) {
+                    sum += slice.counts.get(row * WIDTH + indexes[row]);
+                }
+            }
+            min = Math.min(min, sum);
+        }
+        return min;
+    }
+
+    /**
+     * 估计值不小于当前候选中的最小值时才加入候选，候选超过2K个时只保留估计值最大的K个
+     */
+    private void updateCandidates(String key, long estimate) {
+        if (estimate < candidateFloor) {
+            return;
+        }
+        synchronized (candidates) {
+            if (candidates.size() < topK * 2 || candidates.containsKey(key)) {
+                candidates.put(key, estimate);
+                return;
+            }
+            candidates.put(key, estimate);
+            List<Map.Entry<String, Long>> list = new ArrayList<>(candidates.entrySet());
+            list.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+            for (int i = topK; i < list.size(); i++) {
+                candidates.remove(list.get(i).getKey());
+            }
+            candidateFloor = topK > 0 ? list.get(Math.min(topK, list.size()) - 1).getValue() : Long.MAX_VALUE;
+        }
+    }
+
+    private static int[] indexes(String key) {
+        int h = key.hashCode();
+        int[] indexes = new int[DEPTH];
+        for (int row = 0; row < DEPTH; row++) {
+            int x = h ^ SEEDS[row];
+            x ^= x >>> 16;
+            x *= 0x85ebca6b;
+            x ^= x >>> 13;
+            x *= 0xc2b2ae35;
+            x ^= x >>> 16;
+            indexes[row] = x & (WIDTH - 1);
+        }
+        return indexes;
+    }
+
+    private static class Slice {
+        final AtomicLongArray counts = new AtomicLongArray(DEPTH * WIDTH);
+        volatile long epoch = -1;
+
+        /**
+         * 时间片轮转到新的周期时清零
+         *
+         * @return 是否清零
+         */
+        boolean resetIfStale(long current) {
+            if (epoch == current) {
+                return false;
+            }
+            synchronized (this) {
+                if (epoch == current) {
+                    return false;
+                }
+                for (int i = 0; i < counts.length(); i++) {
+                    counts.set(i, 0);
+                }
+                epoch = current;
+                return true;
+            }
+        }
+    }
+}
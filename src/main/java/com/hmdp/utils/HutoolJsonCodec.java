@@ -0,0 +1,46 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSON;
+import cn.hutool.json.JSONUtil;
+
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 基于Hutool JSON的编解码器，与引入编解码器之前写入Redis的数据格式一致，作为默认编解码器
+ */
+public class HutoolJsonCodec implements CacheCodec {
+
+    public static final String NAME = "json";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSONUtil.toJsonStr(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Type type) {
+        return JSONUtil.toBean(new String(bytes, StandardCharsets.UTF_8), type, false);
+    }
+
+    @Override
+    public byte[] encodeLogical(RedisData redisData) {
+        return encode(redisData);
+    }
+
+    @Override
+    public RedisData decodeLogical(byte[] bytes, Type type) {
+        // 先解析为RedisData，此时data是JSONObject，再转换为目标类型
+        RedisData redisData = JSONUtil.toBean(new String(bytes, StandardCharsets.UTF_8), RedisData.class);
+        Object data = redisData.getData();
+        if (data instanceof JSON) {
+            redisData.setData(JSONUtil.toBean((JSON) data, type, false));
+        }
+        return redisData;
+    }
+}
@@ -0,0 +1,151 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 两级锁：先在本地按 名称+key 哈希到分段锁上排队，抢到分段锁的线程再获取 {@link SimpleRedisLock}
+ * 1. 同一节点对同一个key的并发请求在本地串行，Redis上每个节点同一时间最多一个线程在抢锁，不会因为重试请求把锁打满
+ * 2. 分段锁数量固定，不同key可能落在同一分段上，只影响并发度，不影响正确性
+ * 3. 分布式锁不指定有效期，由看门狗续期；两级锁的等待时间合计不超过wait-ms
+ * 4. 按锁名称统计获取次数、本地竞争次数、超时次数和等待时间
+ */
+@Slf4j
+@Component
+public class HybridLock {
+
+    private final RedisLockManager lockManager;
+
+    private final ReentrantLock[] stripes;
+
+    private final long waitMillis;
+
+    private final Map<String, LockStats> stats = new ConcurrentHashMap<>();
+
+    public HybridLock(RedisLockManager lockManager,
+                      @Value("${hmdp.lock.stripes:256}") int stripes,
+                      @Value("${hmdp.lock.wait-ms:3000}") long waitMillis) {
+        this.lockManager = lockManager;
+        // 分段数取2的幂，用位运算定位分段
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * 持有 name:key 的锁执行action
+     *
+     * @param name   锁的名称，如follow，用于区分业务和统计
+     * @param key    锁的粒度，如用户id
+     * @param onBusy 等待超时时的返回值
+     */
+    public <T> T execute(String name, Object key, Supplier<T> action, Supplier<T> onBusy) {
+        LockStats s = stats.computeIfAbsent(name, k -> new LockStats());
+        String lockName = name + ":" + key;
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        ReentrantLock stripe = stripes[spread(lockName.hashCode()) & (stripes.length - 1)];
+        // 1. 本地分段锁
+        boolean locked = stripe.tryLock();
+        if (!locked) {
+            s.localContended.increment();
+            try {
+                locked = stripe.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!locked) {
+            s.timeouts.increment();
+            return onBusy.get();
+        }
+        try {
+            // 2. 分布式锁
+            long localWait = System.nanoTime() - start;
+            SimpleRedisLock lock = lockManager.getLock(lockName);
+            boolean acquired = false;
+            try {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                acquired = lock.tryLock(Math.max(0, remaining), -1, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long wait = System.nanoTime() - start;
+            s.record(localWait, wait - localWait);
+            if (!acquired) {
+                s.timeouts.increment();
+                return onBusy.get();
+            }
+            try {
+                return action.get();
+            } finally {
+                try {
+                    lock.unlock();
+                } catch (IllegalMonitorStateException e) {
+                    // 看门狗续期失败导致锁已过期，业务已执行完，只记录
+                    log.warn("释放锁[{}]时锁已不属于当前线程", lock.getKey());
+                }
+            }
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * 各锁的统计信息，等待时间单位为毫秒
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new TreeMap<>();
+        stats.forEach((name, s) -> result.put(name, s.toMap()));
+        return result;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static class LockStats {
+        final LongAdder attempts = new LongAdder();
+        final LongAdder localContended = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder localWaitNanos = new LongAdder();
+        final LongAdder remoteWaitNanos = new LongAdder();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+
+        /**
+         * 记录一次进入分布式锁阶段的等待时间，超时的也计入
+         */
+        void record(long localWait, long remoteWait) {
+            attempts.increment();
+            localWaitNanos.add(localWait);
+            remoteWaitNanos.add(remoteWait);
+            maxWaitNanos.accumulateAndGet(localWait + remoteWait, Math::max);
+        }
+
+        Map<String, Object> toMap() {
+            long count = attempts.sum();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("attempts", count);
+            map.put("localContended", localContended.sum());
+            map.put("timeouts", timeouts.sum());
+            map.put("avgLocalWaitMillis", count == 0 ? 0 : localWaitNanos.sum() / count / 1e6);
+            map.put("avgRemoteWaitMillis", count == 0 ? 0 : remoteWaitNanos.sum() / count / 1e6);
+            map.put("maxWaitMillis", maxWaitNanos.get() / 1e6);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.hmdp.utils;
+
+/**
+ * 全局唯一id生成器
+ * 默认实现是 {@link RedisIdWorker}，配置 hmdp.id.type=snowflake 时使用不依赖网络的 {@link SnowflakeIdWorker}
+ */
+public interface IdWorker {
+
+    /**
+     * 生成下一个id
+     *
+     * @param keyPrefix 业务前缀，如order，不同业务的id可以使用独立的序列
+     */
+    long nextId(String keyPrefix);
+}
@@ -0,0 +1,86 @@
+package com.hmdp.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+
+/**
+ * 基于Jackson的编解码器
+ * 逻辑过期数据使用流式解析，一次遍历同时读出过期时间和目标类型的数据，不会生成中间的JSONObject
+ */
+public class JacksonCodec implements CacheCodec {
+
+    public static final String NAME = "jackson";
+
+    private final ObjectMapper objectMapper;
+
+    public JacksonCodec() {
+        this.objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new IllegalStateException("缓存数据序列化失败", e);
+        }
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Type type) {
+        try {
+            return objectMapper.readValue(bytes, objectMapper.constructType(type));
+        } catch (IOException e) {
+            throw new IllegalStateException("缓存数据反序列化失败", e);
+        }
+    }
+
+    @Override
+    public byte[] encodeLogical(RedisData redisData) {
+        return encode(redisData);
+    }
+
+    @Override
+    public RedisData decodeLogical(byte[] bytes, Type type) {
+        JavaType dataType = objectMapper.constructType(type);
+        RedisData redisData = new RedisData();
+        try (JsonParser parser = objectMapper.getFactory().createParser(bytes)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalStateException("逻辑过期缓存数据格式错误");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("expireTime".equals(field)) {
+                    redisData.setExpireTime(objectMapper.readValue(parser, LocalDateTime.class));
+                } else if ("delta".equals(field)) {
+                    redisData.setDelta(parser.getValueAsLong());
+                } else if ("data".equals(field)) {
+                    redisData.setData(objectMapper.readValue(parser, dataType));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return redisData;
+        } catch (IOException e) {
+            throw new IllegalStateException("缓存数据反序列化失败", e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.hmdp.utils;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
+import com.esotericsoftware.kryo.util.DefaultInstantiatorStrategy;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于Kryo的紧凑二进制编解码器
+ * 1. 普通数据：4字节类型指纹 + 按字段顺序写入的数据，不写类名和字段名
+ * 2. 逻辑过期数据：8字节过期时间(UTC毫秒) + 变长重建耗时 + 普通数据，读取过期时间不需要反序列化数据
+ * 类型指纹由类名和全部字段的名称、类型计算得到，实体类增删字段后指纹改变，旧数据解码失败按未命中处理
+ * 解码按查询时的目标类型读取，缓存值的运行时类型必须与查询时的类型一致
+ */
+public class KryoCodec implements CacheCodec {
+
+    public static final String NAME = "kryo";
+
+    private static final int LOGICAL_HEADER_LENGTH = 8;
+
+    /**
+     * Kryo实例不是线程安全的，每个线程一个
+     */
+    private static final ThreadLocal<Kryo> KRYO = ThreadLocal.withInitial(() -> {
+        Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(false);
+        kryo.setDefaultSerializer(FieldSerializer.class);
+        kryo.setInstantiatorStrategy(new DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+        return kryo;
+    });
+
+    private final Map<Class<?>, Integer> fingerprints = new ConcurrentHashMap<>();
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        Output output = new Output(256, -1);
+        write(output, value);
+        return output.toBytes();
+    }
+
+    @Override
+    public <T> T decode(byte[] bytes, Type type) {
+        return read(new Input(bytes), type);
+    }
+
+    @Override
+    public byte[] encodeLogical(RedisData redisData) {
+        Output output = new Output(256, -1);
+        output.writeLong(redisData.getExpireTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+        output.writeVarLong(redisData.getDelta(), true);
+        write(output, redisData.getData());
+        return output.toBytes();
+    }
+
+    @Override
+    public RedisData decodeLogical(byte[] bytes, Type type) {
+        if (bytes.length < LOGICAL_HEADER_LENGTH) {
+            throw new IllegalStateException("逻辑过期缓存数据格式错误");
+        }
+        Input input = new Input(bytes);
+        RedisData redisData = new RedisData();
+        redisData.setExpireTime(LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC)
+                .plusNanos(input.readLong() * 1_000_000L));
+        redisData.setDelta(input.readVarLong(true));
+        redisData.setData(read(input, type));
+        return redisData;
+    }
+
+    private void write(Output output, Object value) {
+        output.writeInt(fingerprint(value.getClass()));
+        KRYO.get().writeObject(output, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T read(Input input, Type type) {
+        if (!(type instanceof Class)) {
+            throw new IllegalArgumentException("kryo编解码器不支持泛型类型: " + type);
+        }
+        Class<T> clazz = (Class<T>) type;
+        if (input.readInt() != fingerprint(clazz)) {
+            throw new IllegalStateException("缓存数据的类型指纹与" + clazz.getName() + "不一致");
+        }
+        return KRYO.get().readObject(input, clazz);
+    }
+
+    /**
+     * 计算类型指纹：类名以及类层次中全部非静态、非transient字段的名称和类型
+     */
+    private int fingerprint(Class<?> clazz) {
+        return fingerprints.computeIfAbsent(clazz, c -> {
+            StringBuilder sb = new StringBuilder(c.getName());
+            for (Class<?> k = c; k != null && k != Object.class; k = k.getSuperclass()) {
+                for (Field field : k.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                        continue;
+                    }
+                    sb.append('|').append(field.getName()).append(':').append(field.getType().getName());
+                }
+            }
+            return sb.toString().hashCode();
+        });
+    }
+}
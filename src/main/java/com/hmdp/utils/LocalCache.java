@@ -0,0 +1,166 @@
+package com.hmdp.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内本地缓存（L1）
+ * 1. 按key的hash分段，每段是一个按访问顺序排列的LinkedHashMap，降低锁竞争
+ * 2. 每段容量超限时淘汰最久未访问的条目（LRU）
+ * 3. 每个条目有独立的过期时间，读取时惰性删除，超出容量时过期条目也会随LRU顺序被淘汰
+ * 注意：缓存的是反序列化后的对象本身，调用方不应修改返回的对象
+ */
+public class LocalCache {
+
+    /**
+     * 空值占位符，用于缓存"数据库中不存在"的结果
+     */
+    public static final Object NULL_VALUE = new Object();
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment[] segments;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public LocalCache(int maxSize) {
+        int segmentSize = Math.max(1, maxSize / SEGMENT_COUNT);
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * 查询本地缓存
+     *
+     * @param key 键
+     * @return 缓存的值，未命中或已过期返回null，缓存的空值返回{@link #NULL_VALUE}
+     */
+    public Object get(String key) {
+        Object value = segmentFor(key).get(key, System.currentTimeMillis());
+        if (value == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    /**
+     * 写入本地缓存
+     *
+     * @param key       键
+     * @param value     值，null会被转换为{@link #NULL_VALUE}
+     * @param ttlMillis 存活时间(毫秒)，小于等于0时不缓存
+     */
+    public void put(String key, Object value, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+        Object v = value == null ? NULL_VALUE : value;
+        segmentFor(key).put(key, v, System.currentTimeMillis() + ttlMillis);
+    }
+
+    /**
+     * 删除指定key
+     */
+    public void invalidate(String key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * 清空全部缓存
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENT_COUNT - 1)];
+    }
+
+    private static class CacheEntry {
+        final Object value;
+        final long expireAt;
+
+        CacheEntry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    private class Segment {
+        private final LinkedHashMap<String, CacheEntry> map;
+
+        Segment(final int maxSize) {
+            // accessOrder=true：get操作会把条目移动到链表尾部，头部即最久未访问的条目
+            this.map = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                    if (size() > maxSize) {
+                        evictionCount.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized Object get(String key, long now) {
+            CacheEntry entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expireAt <= now) {
+                // 惰性删除已过期的条目
+                map.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized void put(String key, Object value, long expireAt) {
+            map.put(key, new CacheEntry(value, expireAt));
+        }
+
+        synchronized void remove(String key) {
+            map.remove(key);
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
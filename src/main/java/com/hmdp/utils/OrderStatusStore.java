@@ -0,0 +1,156 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.OrderStatusDTO;
+import com.hmdp.entity.VoucherOrder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.ORDER_STATUS_KEY;
+import static com.hmdp.utils.RedisConstants.ORDER_STATUS_TTL;
+
+/**
+ * 异步秒杀订单的处理状态，保存在 order:status:orderId 的hash中，ORDER_STATUS_TTL分钟后过期
+ * 1. 字段：userId、voucherId、status、reason、updateTime，userId用于查询时校验订单归属
+ * 2. 秒杀接口下单成功时写入PROCESSING，之后由订单消费者更新为SUCCESS、RETRYING或FAILED
+ * 3. 状态只是查询的捷径，写入失败只记录日志，不影响订单处理；过期后查询回退到数据库
+ */
+@Slf4j
+@Component
+public class OrderStatusStore {
+
+    private static final String FIELD_USER_ID = "userId";
+    private static final String FIELD_VOUCHER_ID = "voucherId";
+    private static final String FIELD_STATUS = "status";
+    private static final String FIELD_REASON = "reason";
+    private static final String FIELD_UPDATE_TIME = "updateTime";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    public OrderStatusStore(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 标记订单已进入队列，只在没有状态记录时写入，不会覆盖消费者已经写入的处理结果
+     */
+    public void markProcessing(Long orderId, Long userId, Long voucherId) {
+        String key = ORDER_STATUS_KEY + orderId;
+        Map<String, String> hash = toHash(userId, voucherId, OrderStatusDTO.PROCESSING, null, System.currentTimeMillis());
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    for (Map.Entry<String, String> entry : hash.entrySet()) {
+                        operations.opsForHash().putIfAbsent(key, entry.getKey(), entry.getValue());
+                    }
+                    operations.expire(key, ORDER_STATUS_TTL, TimeUnit.MINUTES);
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.error("写入订单状态失败，orderId: {}", orderId, e);
+        }
+    }
+
+    /**
+     * 批量标记下单成功，一次pipeline写入
+     */
+    public void markSuccess(Collection<VoucherOrder> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public Object execute(RedisOperations operations) {
+                    for (VoucherOrder order : orders) {
+                        String key = ORDER_STATUS_KEY + order.getId();
+                        operations.opsForHash().putAll(key, toHash(order.getUserId(), order.getVoucherId(),
+                                OrderStatusDTO.SUCCESS, null, now));
+                        operations.expire(key, ORDER_STATUS_TTL, TimeUnit.MINUTES);
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.error("写入订单状态失败，数量: {}", orders.size(), e);
+        }
+    }
+
+    /**
+     * 标记下单失败或等待重试，并记录原因
+     *
+     * @param status {@link OrderStatusDTO#FAILED} 或 {@link OrderStatusDTO#RETRYING}
+     */
+    public void mark(Long orderId, Long userId, Long voucherId, String status, String reason) {
+        String key = ORDER_STATUS_KEY + orderId;
+        try {
+            stringRedisTemplate.opsForHash().putAll(key, toHash(userId, voucherId, status, reason, System.currentTimeMillis()));
+            stringRedisTemplate.expire(key, ORDER_STATUS_TTL, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            log.error("写入订单状态失败，orderId: {}", orderId, e);
+        }
+    }
+
+    /**
+     * 查询订单状态
+     *
+     * @param userId 当前用户，订单不属于该用户时按不存在处理
+     * @return 没有状态记录或不属于该用户时返回null
+     */
+    public OrderStatusDTO get(Long orderId, Long userId) {
+        Map<Object, Object> hash = stringRedisTemplate.opsForHash().entries(ORDER_STATUS_KEY + orderId);
+        if (hash.isEmpty() || !String.valueOf(userId).equals(hash.get(FIELD_USER_ID))) {
+            return null;
+        }
+        OrderStatusDTO dto = new OrderStatusDTO();
+        dto.setOrderId(orderId);
+        dto.setVoucherId(toLong(hash.get(FIELD_VOUCHER_ID)));
+        dto.setStatus((String) hash.get(FIELD_STATUS));
+        String reason = (String) hash.get(FIELD_REASON);
+        dto.setReason(StrUtil.isEmpty(reason) ? null : reason);
+        dto.setUpdateTime(toLong(hash.get(FIELD_UPDATE_TIME)));
+        return dto;
+    }
+
+    /**
+     * 查询订单最近一次记录的失败原因，消费者转移死信时使用，不校验订单归属
+     *
+     * @return 没有状态记录、没有失败原因或查询失败时返回null
+     */
+    public String getReason(Long orderId) {
+        try {
+            String reason = (String) stringRedisTemplate.opsForHash().get(ORDER_STATUS_KEY + orderId, FIELD_REASON);
+            return StrUtil.isEmpty(reason) ? null : reason;
+        } catch (Exception e) {
+            log.error("查询订单失败原因失败，orderId: {}", orderId, e);
+            return null;
+        }
+    }
+
+    private static Map<String, String> toHash(Long userId, Long voucherId, String status, String reason, long now) {
+        Map<String, String> hash = new HashMap<>(8);
+        hash.put(FIELD_USER_ID, String.valueOf(userId));
+        hash.put(FIELD_VOUCHER_ID, String.valueOf(voucherId));
+        hash.put(FIELD_STATUS, status);
+        hash.put(FIELD_REASON, reason == null ? "" : reason);
+        hash.put(FIELD_UPDATE_TIME, String.valueOf(now));
+        return hash;
+    }
+
+    private static Long toLong(Object value) {
+        return value == null ? null : Long.valueOf((String) value);
+    }
+}
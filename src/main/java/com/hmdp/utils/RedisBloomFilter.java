@@ -0,0 +1,193 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 布隆过滤器
+ * 位数组在Redis中以bitmap的形式保存（key为 bloom:前缀），本地保留一份副本用于判断，判断时不需要访问Redis
+ * 本类只负责本地位数组的计算，与Redis的同步由 {@link BloomFilterRegistry} 完成
+ * 本地位的编号与Redis bitmap的offset一致：offset为o的位保存在第o/8个字节的从高到低第o%8位
+ */
+public class RedisBloomFilter {
+
+    /**
+     * Redis中bitmap的offset上限为2^32
+     */
+    private static final long MAX_BITS = 1L << 32;
+
+    private final String name;
+    private final long numBits;
+    private final int numHashFunctions;
+    private final AtomicLongArray bits;
+
+    private final AtomicLong queryCount = new AtomicLong();
+    private final AtomicLong rejectCount = new AtomicLong();
+    private final AtomicLong falsePositiveCount = new AtomicLong();
+
+    /**
+     * @param name               过滤器名称，一般为缓存key前缀
+     * @param expectedInsertions 预计插入的元素数量
+     * @param fpp                期望的误判率
+     */
+    public RedisBloomFilter(String name, long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("expectedInsertions必须大于0，fpp必须在(0,1)之间");
+        }
+        this.name = name;
+        // m = -n*ln(p)/(ln2)^2，k = m/n*ln2
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.numBits = Math.min(MAX_BITS, Math.max(64, m));
+        this.numHashFunctions = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((numBits + 63) >>> 6));
+    }
+
+    /**
+     * 计算元素对应的所有位的offset
+     */
+    public long[] offsets(Object id) {
+        long[] hash = MurmurHash.hash128(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+        long h1 = hash[0];
+        long h2 = hash[1];
+        long[] offsets = new long[numHashFunctions];
+        // 双重哈希：第i个哈希值为 h1 + i*h2
+        long combined = h1;
+        for (int i = 0; i < numHashFunctions; i++) {
+            offsets[i] = (combined & Long.MAX_VALUE) % numBits;
+            combined += h2;
+        }
+        return offsets;
+    }
+
+    /**
+     * 只写入本地位数组
+     *
+     * @return 写入的offset，用于同步到Redis
+     */
+    public long[] putLocal(Object id) {
+        long[] offsets = offsets(id);
+        for (long offset : offsets) {
+            setBit(offset);
+        }
+        return offsets;
+    }
+
+    /**
+     * 判断元素是否可能存在，返回false时一定不存在
+     */
+    public boolean mightContain(Object id) {
+        queryCount.incrementAndGet();
+        for (long offset : offsets(id)) {
+            if (!getBit(offset)) {
+                rejectCount.incrementAndGet();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 记录一次误判：过滤器判断可能存在，但数据库中查不到
+     */
+    public void recordFalsePositive() {
+        falsePositiveCount.incrementAndGet();
+    }
+
+    public void setBit(long offset) {
+        int index = (int) (offset >>> 6);
+        long mask = 1L << (offset & 63);
+        bits.getAndAccumulate(index, mask, (prev, m) -> prev | m);
+    }
+
+    public boolean getBit(long offset) {
+        return (bits.get((int) (offset >>> 6)) & (1L << (offset & 63))) != 0;
+    }
+
+    /**
+     * 将本地位数组转换为Redis bitmap的字节格式
+     */
+    public byte[] toRedisBitmap() {
+        byte[] bytes = new byte[(int) ((numBits + 7) >>> 3)];
+        for (int i = 0; i < bits.length(); i++) {
+            long word = bits.get(i);
+            while (word != 0) {
+                int bit = Long.numberOfTrailingZeros(word);
+                long offset = ((long) i << 6) + bit;
+                bytes[(int) (offset >>> 3)] |= (byte) (0x80 >>> (offset & 7));
+                word &= word - 1;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 将Redis bitmap合并到本地位数组（按位或），用于同步其他节点写入的元素
+     */
+    public void mergeRedisBitmap(byte[] bytes) {
+        if (bytes == null) {
+            return;
+        }
+        long maxByte = Math.min(bytes.length, (numBits + 7) >>> 3);
+        for (int i = 0; i < maxByte; i++) {
+            int b = bytes[i] & 0xFF;
+            if (b == 0) {
+                continue;
+            }
+            for (int j = 0; j < 8; j++) {
+                if ((b & (0x80 >>> j)) != 0) {
+                    long offset = ((long) i << 3) + j;
+                    if (offset < numBits) {
+                        setBit(offset);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 根据当前置位比例估算误判率：(置位数/总位数)^k
+     */
+    public double estimatedFpp() {
+        long setBits = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            setBits += Long.bitCount(bits.get(i));
+        }
+        return Math.pow((double) setBits / numBits, numHashFunctions);
+    }
+
+    /**
+     * 实际观测到的误判率：误判次数 / (拦截次数 + 误判次数)
+     */
+    public double observedFpp() {
+        long falsePositives = falsePositiveCount.get();
+        long negatives = rejectCount.get() + falsePositives;
+        return negatives == 0 ? 0 : (double) falsePositives / negatives;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    public long getQueryCount() {
+        return queryCount.get();
+    }
+
+    public long getRejectCount() {
+        return rejectCount.get();
+    }
+
+    public long getFalsePositiveCount() {
+        return falsePositiveCount.get();
+    }
+}
@@ -0,0 +1,68 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 方法级缓存注解，由 {@link RedisCacheAspect} 调用 {@link CacheClient} 的对应策略实现
+ * 1. 缓存key为 prefix + key表达式的值，表达式的值为null时不走缓存
+ * 2. 缓存值的类型取方法的泛型返回类型，可以直接缓存 List&lt;Voucher&gt; 这样的集合
+ * 3. 只有通过Spring代理调用才会生效，类内部调用需要通过注入的自身代理
+ * 4. 逻辑过期类策略会在后台线程重新调用方法重建缓存，方法不能依赖 {@link UserHolder} 等请求上下文
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RedisCache {
+
+    /**
+     * key前缀，如 cache:blog:
+     */
+    String prefix();
+
+    /**
+     * SpEL表达式，通过参数名(如 #id)或位置(如 #p0)引用方法参数，为空时key就是前缀本身
+     */
+    String key() default "";
+
+    /**
+     * 缓存策略
+     */
+    Strategy strategy() default Strategy.PASS_THROUGH;
+
+    /**
+     * 缓存过期时间，逻辑过期类策略为逻辑过期时间
+     */
+    long ttl() default 30;
+
+    TimeUnit unit() default TimeUnit.MINUTES;
+
+    /**
+     * 编解码器名称，为空时按 {@link CacheCodecRegistry} 的前缀配置选择
+     * 配置文件中已经为该前缀指定了编解码器时以配置为准
+     */
+    String codec() default "";
+
+    enum Strategy {
+        /**
+         * 缓存空值解决缓存穿透
+         */
+        PASS_THROUGH,
+        /**
+         * 互斥锁重建解决缓存击穿
+         */
+        MUTEX,
+        /**
+         * 逻辑过期，需要提前预热，未预热的key直接返回null
+         */
+        LOGICAL_EXPIRE,
+        /**
+         * 逻辑过期 + 概率提前刷新，不需要预热
+         */
+        EARLY_REFRESH
+    }
+}
@@ -0,0 +1,146 @@
+package com.hmdp.utils;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.Ordered;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.Order;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * {@link RedisCache} 和 {@link RedisCacheEvict} 的切面实现
+ * 1. 每个方法第一次调用时解析key表达式和泛型返回类型并缓存，绑定注解指定的编解码器
+ * 2. 缓存读写全部委托给 {@link CacheClient}，与手写的缓存代码共享本地缓存、布隆过滤器、TTL抖动和热点探测
+ * 3. 切面优先级高于事务，缓存的写入和删除都发生在事务提交之后
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class RedisCacheAspect {
+
+    private final ExpressionParser parser = new SpelExpressionParser();
+
+    private final ParameterNameDiscoverer nameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    private final Map<Method, CacheOperation> cacheOperations = new ConcurrentHashMap<>();
+
+    private final Map<Method, CacheOperation> evictOperations = new ConcurrentHashMap<>();
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheCodecRegistry codecRegistry;
+
+    @Around("@annotation(redisCache)")
+    public Object cache(ProceedingJoinPoint pjp, RedisCache redisCache) throws Throwable {
+        CacheOperation operation = operationOf(cacheOperations, pjp, redisCache.key(), redisCache);
+        Object id = operation.keyOf(pjp.getArgs());
+        if (id == null) {
+            // key表达式的值为null时不走缓存
+            return pjp.proceed();
+        }
+        // 缓存未命中或需要重建时重新调用方法，逻辑过期类策略会在后台线程调用
+        Function<Object, Object> loader = ignored -> proceed(pjp);
+        String prefix = redisCache.prefix();
+        Type type = operation.returnType;
+        switch (redisCache.strategy()) {
+            case MUTEX:
+                return cacheClient.queryWithMutex(prefix, id, type, loader, redisCache.ttl(), redisCache.unit());
+            case LOGICAL_EXPIRE:
+                return cacheClient.queryWithLogicalExpire(prefix, id, type, loader, redisCache.ttl(), redisCache.unit());
+            case EARLY_REFRESH:
+                return cacheClient.queryWithEarlyRefresh(prefix, id, type, loader, redisCache.ttl(), redisCache.unit());
+            default:
+                return cacheClient.queryWithPassThrough(prefix, id, type, loader, redisCache.ttl(), redisCache.unit());
+        }
+    }
+
+    @Around("@annotation(evict)")
+    public Object evict(ProceedingJoinPoint pjp, RedisCacheEvict evict) throws Throwable {
+        CacheOperation operation = operationOf(evictOperations, pjp, evict.key(), null);
+        if (evict.beforeInvocation()) {
+            evict(evict.prefix(), operation.keyOf(pjp.getArgs()));
+            return pjp.proceed();
+        }
+        Object result = pjp.proceed();
+        // 参数中的字段可能在方法中被回填(如新增后的id)，执行后再求值
+        evict(evict.prefix(), operation.keyOf(pjp.getArgs()));
+        return result;
+    }
+
+    private void evict(String prefix, Object id) {
+        if (id == null) {
+            return;
+        }
+        cacheClient.evict(prefix + id);
+    }
+
+    private CacheOperation operationOf(Map<Method, CacheOperation> operations, ProceedingJoinPoint pjp,
+                                       String key, RedisCache redisCache) {
+        Method method = ((MethodSignature) pjp.getSignature()).getMethod();
+        return operations.computeIfAbsent(method, m -> {
+            // 接口方法上取不到参数名，解析到目标类上的实现方法
+            Method target = AopUtils.getMostSpecificMethod(m, AopUtils.getTargetClass(pjp.getTarget()));
+            if (redisCache != null) {
+                Class<?> returnType = target.getReturnType();
+                if (returnType.isPrimitive()) {
+                    throw new IllegalStateException("@RedisCache不支持基本类型或void返回值: " + target);
+                }
+                if (!redisCache.codec().isEmpty()) {
+                    codecRegistry.bind(redisCache.prefix(), redisCache.codec());
+                }
+            }
+            Expression expression = key.isEmpty() ? null : parser.parseExpression(key);
+            return new CacheOperation(target, target.getGenericReturnType(), expression);
+        });
+    }
+
+    private static Object proceed(ProceedingJoinPoint pjp) {
+        try {
+            return pjp.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    private class CacheOperation {
+        final Method method;
+        final Type returnType;
+        /**
+         * key表达式，为null时key就是前缀本身
+         */
+        final Expression key;
+
+        CacheOperation(Method method, Type returnType, Expression key) {
+            this.method = method;
+            this.returnType = returnType;
+            this.key = key;
+        }
+
+        Object keyOf(Object[] args) {
+            if (key == null) {
+                return "";
+            }
+            return key.getValue(new MethodBasedEvaluationContext(null, method, args, nameDiscoverer));
+        }
+    }
+}
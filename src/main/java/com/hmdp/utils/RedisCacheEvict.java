@@ -0,0 +1,32 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 方法执行成功后删除 {@link RedisCache} 写入的缓存，包括Redis中的数据和所有节点的本地缓存
+ * 删除在事务提交之后执行，避免其他请求在提交前把旧数据重新写回缓存
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RedisCacheEvict {
+
+    /**
+     * key前缀，与 {@link RedisCache#prefix()} 一致
+     */
+    String prefix();
+
+    /**
+     * SpEL表达式，在方法执行后求值，可以引用方法中回填的参数字段，如新增后的 #blog.id
+     */
+    String key() default "";
+
+    /**
+     * 是否在方法执行前删除，为true时方法抛出异常也会删除
+     */
+    boolean beforeInvocation() default false;
+}
@@ -11,10 +11,37 @@ public class RedisConstants {
     public static final Long CACHE_SHOP_TTL = 30L;
     public static final String CACHE_SHOP_KEY = "cache:shop:";
 
+    public static final Long CACHE_USER_TTL = 30L;
+    public static final String CACHE_USER_KEY = "cache:user:";
+
+    public static final String CACHE_USER_INFO_KEY = "cache:userinfo:";
+    public static final String CACHE_BLOG_KEY = "cache:blog:";
+    public static final String CACHE_SHOP_VOUCHER_KEY = "cache:voucher:shop:";
+    public static final String CACHE_SHOP_TYPE_KEY = "cache:shoptype:list";
+    public static final String CACHE_SECKILL_VOUCHER_KEY = "cache:seckill:voucher:";
+    public static final Long CACHE_SECKILL_VOUCHER_TTL = 30L;
+
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+
+    public static final String BLOOM_FILTER_KEY = "bloom:";
+    public static final String BLOOM_ADD_CHANNEL = "bloom:add";
+
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
+    public static final String LOCK_CACHE_KEY = "lock:";
+    public static final String LOCK_RELEASE_CHANNEL = "lock:release";
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    public static final String SECKILL_SHARDS_KEY = "seckill:shards:";
+    public static final String SECKILL_SOLD_OUT_CHANNEL = "seckill:soldout";
+    public static final String SECKILL_ORDER_STREAM = "stream.orders";
+    public static final String SECKILL_ORDER_GROUP = "g1";
+    public static final String STREAM_CONSUMER_KEY = "stream:consumers:";
+    public static final String ORDER_STATUS_KEY = "order:status:";
+    public static final String ID_WORKER_KEY = "id:worker:";
+    public static final String ID_WORKER_TS_KEY = "id:worker:ts";
+    public static final Long ORDER_STATUS_TTL = 30L;
     public static final String BLOG_LIKED_KEY = "blog:liked:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
@@ -8,4 +8,8 @@ import java.time.LocalDateTime;
 public class RedisData {
     private LocalDateTime expireTime;
     private Object data;
+    /**
+     * 上次重建的耗时(毫秒)，用于概率提前刷新
+     */
+    private long delta;
 }
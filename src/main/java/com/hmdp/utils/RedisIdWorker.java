@@ -2,35 +2,207 @@ package com.hmdp.utils;
 
 
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 
+/**
+ * 全局唯一id生成器：高32位为秒级时间戳(相对BEGIN_TIMESTAMP)，低32位为当天的序列号
+ * 序列号来自Redis的 icr:keyPrefix:yyyy:MM:dd，每天一个key，创建时设置过期时间
+ * 号段模式下每个节点用INCRBY一次预留segment-size个序列号，在本地原子递增发放，
+ * 当前号段用到prefetch-ratio时异步预取下一个号段，大部分请求不访问Redis
+ */
+@Slf4j
 @Component
-public class RedisIdWorker {
+public class RedisIdWorker implements IdWorker {
     @Resource
     private StringRedisTemplate stringRedisTemplate;
     private static final long BEGIN_TIMESTAMP =1640995200;
 
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy:MM:dd");
+
+    private static final long SECONDS_PER_DAY = 86400;
+
+    private final boolean segmentEnabled;
+
+    private final long segmentSize;
+
+    private final double prefetchRatio;
+
+    private final long keyTtlDays;
+
+    /**
+     * 缓存当天的日期字符串，避免每次调用都格式化
+     */
+    private volatile DateKey dateKey;
+
+    /**
+     * keyPrefix -> 号段缓冲
+     */
+    private final Map<String, SegmentBuffer> buffers = new ConcurrentHashMap<>();
+
+    private final ExecutorService prefetchExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "id-segment-prefetch");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RedisIdWorker(@Value("${hmdp.id.segment.enabled:false}") boolean segmentEnabled,
+                         @Value("${hmdp.id.segment.size:1000}") long segmentSize,
+                         @Value("${hmdp.id.segment.prefetch-ratio:0.8}") double prefetchRatio,
+                         @Value("${hmdp.id.key-ttl-days:2}") long keyTtlDays) {
+        this.segmentEnabled = segmentEnabled;
+        this.segmentSize = Math.max(1, segmentSize);
+        this.prefetchRatio = Math.min(1, Math.max(0, prefetchRatio));
+        this.keyTtlDays = keyTtlDays;
+    }
+
+    @Override
     public long nextId(String keyPrefix)
     {
         //1.生成时间戳
-        LocalDateTime now = LocalDateTime.now();
-        long nowSecond = now.toEpochSecond(ZoneOffset.UTC);
+        long nowSecond = LocalDateTime.now().toEpochSecond(ZoneOffset.UTC);
         long timestamp = nowSecond -BEGIN_TIMESTAMP;
         //2.生成序列号
-        String date = now.format(DateTimeFormatter.ofPattern("yyyy:MM:dd"));
-        Long count = stringRedisTemplate.opsForValue().increment("icr:"+keyPrefix+":"+date);
+        long day = nowSecond / SECONDS_PER_DAY;
+        long count = segmentEnabled ? nextSequence(keyPrefix, day) : reserve(keyPrefix, day, 1);
         //3.拼接并返回
         return timestamp<<32|count;
 
     }
 
+    /**
+     * 从本地号段中取一个序列号，号段用完时切换到预取的号段，没有预取好时同步获取
+     */
+    private long nextSequence(String keyPrefix, long day) {
+        SegmentBuffer buffer = buffers.computeIfAbsent(keyPrefix, k -> new SegmentBuffer());
+        while (true) {
+            Segment segment = buffer.current;
+            if (segment != null && segment.day == day) {
+                long value = segment.cursor.getAndIncrement();
+                if (value <= segment.end) {
+                    if (value == segment.prefetchAt) {
+                        prefetch(buffer, keyPrefix, day);
+                    }
+                    return value;
+                }
+            }
+            // 号段已用完或已跨天，只有一个线程负责切换，其他线程切换完成后重新获取
+            synchronized (buffer) {
+                if (buffer.current == segment) {
+                    buffer.current = takeNext(buffer, keyPrefix, day);
+                }
+            }
+        }
+    }
+
+    private void prefetch(SegmentBuffer buffer, String keyPrefix, long day) {
+        synchronized (buffer) {
+            if (buffer.next == null) {
+                buffer.nextDay = day;
+                buffer.next = CompletableFuture.supplyAsync(() -> newSegment(keyPrefix, day), prefetchExecutor);
+            }
+        }
+    }
+
+    /**
+     * 取出预取的号段，预取失败或日期不同时同步获取，调用时持有buffer的锁
+     */
+    private Segment takeNext(SegmentBuffer buffer, String keyPrefix, long day) {
+        CompletableFuture<Segment> next = buffer.next;
+        buffer.next = null;
+        if (next != null && buffer.nextDay == day) {
+            try {
+                return next.join();
+            } catch (Exception e) {
+                log.error("预取id号段失败，同步获取: {}", keyPrefix, e);
+            }
+        }
+        return newSegment(keyPrefix, day);
+    }
+
+    private Segment newSegment(String keyPrefix, long day) {
+        long end = reserve(keyPrefix, day, segmentSize);
+        long start = end - segmentSize + 1;
+        long prefetchAt = start + (long) Math.floor(segmentSize * prefetchRatio);
+        return new Segment(day, start, end, Math.min(prefetchAt, end));
+    }
+
+    /**
+     * 在Redis中预留delta个序列号，key第一次创建时设置过期时间
+     *
+     * @return 预留的最后一个序列号
+     */
+    long reserve(String keyPrefix, long day, long delta) {
+        String key = "icr:" + keyPrefix + ":" + dateOf(day);
+        Long end = stringRedisTemplate.opsForValue().increment(key, delta);
+        if (end != null && end == delta && keyTtlDays > 0) {
+            stringRedisTemplate.expire(key, keyTtlDays, TimeUnit.DAYS);
+        }
+        return end;
+    }
+
+    private String dateOf(long day) {
+        DateKey key = dateKey;
+        if (key == null || key.day != day) {
+            key = new DateKey(day, LocalDateTime.ofEpochSecond(day * SECONDS_PER_DAY, 0, ZoneOffset.UTC).format(DATE_FORMATTER));
+            dateKey = key;
+        }
+        return key.date;
+    }
+
+    @PreDestroy
+    private void destroy() {
+        prefetchExecutor.shutdownNow();
+    }
+
+    private static class DateKey {
+        final long day;
+        final String date;
+
+        DateKey(long day, String date) {
+            this.day = day;
+            this.date = date;
+        }
+    }
+
+    /**
+     * 一个号段：[start, end]，发放到prefetchAt时开始预取下一个号段
+     */
+    private static class Segment {
+        final long day;
+        final long end;
+        final long prefetchAt;
+        final AtomicLong cursor;
+
+        Segment(long day, long start, long end, long prefetchAt) {
+            this.day = day;
+            this.end = end;
+            this.prefetchAt = prefetchAt;
+            this.cursor = new AtomicLong(start);
+        }
+    }
+
+    private static class SegmentBuffer {
+        volatile Segment current;
+        CompletableFuture<Segment> next;
+        long nextDay;
+    }
+
 }
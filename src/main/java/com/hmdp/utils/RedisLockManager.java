@@ -0,0 +1,200 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOCK_RELEASE_CHANNEL;
+
+/**
+ * 分布式锁管理器，创建 {@link SimpleRedisLock} 并提供两项节点级的服务：
+ * 1. 释放通知：锁释放时unlock.lua向 lock:release 频道发布锁的key，本节点等待该锁的线程被唤醒后重新抢锁，不需要轮询
+ * 2. 看门狗：没有指定有效期的锁先按watchdog-lease-ms加锁，每隔1/3有效期续期一次，直到最后一次unlock；节点宕机后锁自然过期
+ */
+@Slf4j
+@Component
+public class RedisLockManager implements MessageListener {
+
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT;
+
+    static {
+        RENEW_SCRIPT = new DefaultRedisScript<>();
+        RENEW_SCRIPT.setLocation(new ClassPathResource("lock_renew.lua"));
+        RENEW_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    private final long watchdogLeaseMillis;
+
+    /**
+     * 锁的key -> 本节点在该锁上等待的线程
+     */
+    private final Map<String, Waiters> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * 锁的key + 持有者 -> 看门狗续期任务
+     */
+    private final Map<String, Renewal> renewals = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "redis-lock-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public RedisLockManager(StringRedisTemplate stringRedisTemplate,
+                            RedisMessageListenerContainer redisMessageListenerContainer,
+                            @Value("${hmdp.lock.watchdog-lease-ms:30000}") long watchdogLeaseMillis) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.watchdogLeaseMillis = watchdogLeaseMillis;
+    }
+
+    @PostConstruct
+    private void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(LOCK_RELEASE_CHANNEL));
+    }
+
+    @PreDestroy
+    private void destroy() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * 获取锁对象，锁的key为 lock:name
+     */
+    public SimpleRedisLock getLock(String name) {
+        return new SimpleRedisLock(name, stringRedisTemplate, this);
+    }
+
+    public long getWatchdogLeaseMillis() {
+        return watchdogLeaseMillis;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        onRelease(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 锁被释放，唤醒本节点的一个等待线程，其余线程等下一次释放或等到锁过期
+     */
+    void onRelease(String lockKey) {
+        Waiters w = waiters.get(lockKey);
+        if (w != null) {
+            w.semaphore.release();
+        }
+    }
+
+    /**
+     * 登记等待，需要在抢锁之前登记，避免错过两次抢锁之间的释放通知
+     */
+    Waiters subscribe(String lockKey) {
+        return waiters.compute(lockKey, (k, w) -> {
+            if (w == null) {
+                w = new Waiters();
+            }
+            w.count++;
+            return w;
+        });
+    }
+
+    void unsubscribe(String lockKey, Waiters w) {
+        waiters.computeIfPresent(lockKey, (k, current) -> {
+            if (current != w) {
+                return current;
+            }
+            return --current.count == 0 ? null : current;
+        });
+    }
+
+    /**
+     * 加锁成功后登记看门狗，同一持有者重入时只增加计数
+     *
+     * @param watchdogRequested 本次加锁是否需要看门狗，不需要时只在已有看门狗的情况下计数
+     */
+    void onAcquired(String lockKey, String owner, boolean watchdogRequested) {
+        renewals.compute(lockKey + "|" + owner, (k, r) -> {
+            if (r != null) {
+                r.holds++;
+                return r;
+            }
+            if (!watchdogRequested) {
+                return null;
+            }
+            Renewal renewal = new Renewal();
+            long period = Math.max(1, watchdogLeaseMillis / 3);
+            renewal.future = watchdog.scheduleAtFixedRate(() -> renew(k, lockKey, owner), period, period, TimeUnit.MILLISECONDS);
+            return renewal;
+        });
+    }
+
+    /**
+     * 解锁后更新看门狗，锁已完全释放或已不属于该持有者时停止续期
+     */
+    void onReleased(String lockKey, String owner, boolean released) {
+        renewals.computeIfPresent(lockKey + "|" + owner, (k, r) -> {
+            if (released || --r.holds == 0) {
+                r.future.cancel(false);
+                return null;
+            }
+            return r;
+        });
+    }
+
+    private void renew(String renewalKey, String lockKey, String owner) {
+        try {
+            Long result = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(lockKey),
+                    owner, String.valueOf(watchdogLeaseMillis));
+            if (result == null || result == 0) {
+                log.warn("锁[{}]已不属于{}，停止续期", lockKey, owner);
+                Renewal r = renewals.remove(renewalKey);
+                if (r != null) {
+                    r.future.cancel(false);
+                }
+            }
+        } catch (Exception e) {
+            // 续期失败时下一周期重试，有效期内恢复不影响锁的持有
+            log.error("锁[{}]续期失败", lockKey, e);
+        }
+    }
+
+    /**
+     * 同一个锁的本节点等待线程共用一个信号量，每次释放通知唤醒一个
+     */
+    static class Waiters {
+        final Semaphore semaphore = new Semaphore(0);
+        int count;
+
+        boolean await(long millis) throws InterruptedException {
+            return semaphore.tryAcquire(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static class Renewal {
+        ScheduledFuture<?> future;
+        int holds = 1;
+    }
+}
@@ -0,0 +1,243 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * 缓存重建调度器
+ * 1. 重建任务进入有界队列，同一个key同时只会有一个任务排队或执行，队列满时丢弃并计数
+ * 2. 跟踪最近访问过的逻辑过期key，定时扫描，在过期前lead-ms内提前重建，请求几乎不会读到过期数据
+ * 3. 提前重建按令牌桶限速，避免大量key同时到期时压垮数据库；请求触发的重建(数据已过期)不限速
+ * 4. 长时间没有访问的key不再跟踪，冷数据不会被反复重建
+ */
+@Slf4j
+@Component
+public class RefreshAheadScheduler {
+
+    private final long leadMillis;
+
+    private final long idleMillis;
+
+    private final int maxTracked;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 正在排队或执行的key，用于去重
+     */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, Tracked> tracked = new ConcurrentHashMap<>();
+
+    /**
+     * 令牌桶：每秒补充permitsPerSecond个令牌，最多积累permitsPerSecond个
+     */
+    private final double permitsPerSecond;
+    private double permits;
+    private long lastRefillNanos = System.nanoTime();
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong dedupCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong aheadCount = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    public RefreshAheadScheduler(@Value("${hmdp.cache.refresh-ahead.threads:4}") int threads,
+                                 @Value("${hmdp.cache.refresh-ahead.queue-capacity:1000}") int queueCapacity,
+                                 @Value("${hmdp.cache.refresh-ahead.lead-ms:3000}") long leadMillis,
+                                 @Value("${hmdp.cache.refresh-ahead.idle-ms:60000}") long idleMillis,
+                                 @Value("${hmdp.cache.refresh-ahead.max-tracked:10000}") int maxTracked,
+                                 @Value("${hmdp.cache.refresh-ahead.permits-per-second:200}") double permitsPerSecond) {
+        this.leadMillis = leadMillis;
+        this.idleMillis = idleMillis;
+        this.maxTracked = maxTracked;
+        this.permitsPerSecond = permitsPerSecond;
+        this.permits = permitsPerSecond;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "cache-rebuild-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 提交重建任务，同一个key已有任务在排队或执行时忽略
+     *
+     * @return 是否提交成功
+     */
+    public boolean submit(String key, Runnable task) {
+        if (!pending.add(key)) {
+            dedupCount.incrementAndGet();
+            return false;
+        }
+        try {
+            executor.execute(() -> run(key, task));
+            submittedCount.incrementAndGet();
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            rejectedCount.incrementAndGet();
+            log.warn("缓存重建队列已满，丢弃key: {}", key);
+            return false;
+        }
+    }
+
+    /**
+     * 记录一次逻辑过期key的访问
+     *
+     * @param key       键
+     * @param expireAt  当前数据的逻辑过期时间(毫秒时间戳)
+     * @param refresher 提前重建时执行的任务，参数为调度器记录的过期时间，用于判断数据是否已被其他节点重建
+     */
+    public void track(String key, long expireAt, LongConsumer refresher) {
+        Tracked t = tracked.get(key);
+        if (t == null) {
+            if (tracked.size() >= maxTracked) {
+                return;
+            }
+            t = tracked.computeIfAbsent(key, k -> new Tracked());
+        }
+        t.refresher = refresher;
+        t.expireAt = expireAt;
+        t.lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * 记录一次访问(本地缓存命中时不知道过期时间)
+     */
+    public void touch(String key) {
+        Tracked t = tracked.get(key);
+        if (t != null) {
+            t.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 缓存重建写入新数据后更新跟踪的过期时间
+     */
+    public void onWrite(String key, long expireAt) {
+        Tracked t = tracked.get(key);
+        if (t != null) {
+            t.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 停止跟踪，数据已被删除时调用
+     */
+    public void untrack(String key) {
+        tracked.remove(key);
+    }
+
+    /**
+     * 定时扫描跟踪的key，即将过期的key提交提前重建
+     */
+    @Scheduled(fixedDelayString = "${hmdp.cache.refresh-ahead.scan-interval-ms:1000}")
+    public void scan() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Tracked>> it = tracked.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Tracked> entry = it.next();
+            Tracked t = entry.getValue();
+            if (now - t.lastAccess > idleMillis) {
+                // 长时间没有访问，不再跟踪
+                it.remove();
+                continue;
+            }
+            if (t.expireAt - now > leadMillis || pending.contains(entry.getKey())) {
+                continue;
+            }
+            if (!tryAcquire()) {
+                // 本轮令牌用完，剩余的key下一轮再处理
+                rateLimitedCount.incrementAndGet();
+                return;
+            }
+            long expireAt = t.expireAt;
+            LongConsumer refresher = t.refresher;
+            if (submit(entry.getKey(), () -> refresher.accept(expireAt))) {
+                aheadCount.incrementAndGet();
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long completed = completedCount.get() + failedCount.get();
+        stats.put("trackedKeys", tracked.size());
+        stats.put("queueDepth", executor.getQueue().size());
+        stats.put("activeThreads", executor.getActiveCount());
+        stats.put("pending", pending.size());
+        stats.put("submitted", submittedCount.get());
+        stats.put("refreshAhead", aheadCount.get());
+        stats.put("deduplicated", dedupCount.get());
+        stats.put("rejected", rejectedCount.get());
+        stats.put("rateLimited", rateLimitedCount.get());
+        stats.put("completed", completedCount.get());
+        stats.put("failed", failedCount.get());
+        stats.put("avgLatencyMillis", completed == 0 ? 0 : totalLatencyMillis.get() / completed);
+        stats.put("maxLatencyMillis", maxLatencyMillis.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(String key, Runnable task) {
+        long begin = System.currentTimeMillis();
+        try {
+            task.run();
+            completedCount.incrementAndGet();
+        } catch (Exception e) {
+            failedCount.incrementAndGet();
+            log.error("缓存重建失败，key: {}", key, e);
+        } finally {
+            pending.remove(key);
+            long latency = System.currentTimeMillis() - begin;
+            totalLatencyMillis.addAndGet(latency);
+            maxLatencyMillis.accumulateAndGet(latency, Math::max);
+        }
+    }
+
+    private synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        permits = Math.min(permitsPerSecond, permits + (now - lastRefillNanos) / 1e9 * permitsPerSecond);
+        lastRefillNanos = now;
+        if (permits < 1) {
+            return false;
+        }
+        permits -= 1;
+        return true;
+    }
+
+    private static class Tracked {
+        volatile LongConsumer refresher;
+        volatile long expireAt;
+        volatile long lastAccess;
+    }
+}
@@ -22,9 +22,12 @@ import static com.hmdp.utils.RedisConstants.LOGIN_USER_TTL;
 public class RefreshTokenInterceptor implements HandlerInterceptor {
     
     private StringRedisTemplate stringRedisTemplate;
+
+    private CachePolicyRegistry cachePolicyRegistry;
     
-    public RefreshTokenInterceptor(StringRedisTemplate stringRedisTemplate) {
+    public RefreshTokenInterceptor(StringRedisTemplate stringRedisTemplate, CachePolicyRegistry cachePolicyRegistry) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.cachePolicyRegistry = cachePolicyRegistry;
     }
 
     @Override
@@ -52,8 +55,9 @@ public class RefreshTokenInterceptor implements HandlerInterceptor {
         //5. 保存用户信息到ThreadLocal
         UserHolder.saveUser(userDTO);
         
-        //6. 刷新token有效期
-        stringRedisTemplate.expire(tokenKey, LOGIN_USER_TTL, TimeUnit.MINUTES);
+        //6. 刷新token有效期，续期不计入过期时间分布
+        stringRedisTemplate.expire(tokenKey,
+                cachePolicyRegistry.renewalTtlMillis(tokenKey, LOGIN_USER_TTL, TimeUnit.MINUTES), TimeUnit.MILLISECONDS);
         
         //7. 放行
         return true;
@@ -0,0 +1,253 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 秒杀请求合并器，把并发的抢购请求合并为一次Lua调用，高峰期Redis命令数降低为原来的 1/批量大小
+ * 1. 请求线程把请求放入队列后等待结果，由一个分发线程收集请求
+ * 2. 收到第一个请求后最多再等待max-wait-micros或凑满max-size个请求，然后执行一次seckill_batch.lua
+ * 3. 脚本按请求顺序返回每个请求的结果，分发线程再分别唤醒对应的请求线程
+ * 4. 一批请求在Redis中仍然按顺序逐个判断，库存和一人一单的结果与逐个执行seckill.lua相同
+ * 5. 请求线程最多等待 max-wait-micros + Redis命令超时，超时后请求失败，不会无限期阻塞Tomcat线程
+ */
+@Slf4j
+@Component
+public class SeckillAdmissionBatcher {
+
+    private static final DefaultRedisScript<List> BATCH_SCRIPT;
+
+    static {
+        BATCH_SCRIPT = new DefaultRedisScript<>();
+        BATCH_SCRIPT.setLocation(new ClassPathResource("seckill_batch.lua"));
+        BATCH_SCRIPT.setResultType(List.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final boolean enabled;
+
+    private final int maxSize;
+
+    private final long maxWaitNanos;
+
+    private final long timeoutNanos;
+
+    private final BlockingQueue<Attempt> queue = new LinkedBlockingQueue<>();
+
+    private final AtomicLong batchCount = new AtomicLong();
+
+    private final AtomicLong attemptCount = new AtomicLong();
+
+    private volatile boolean running;
+
+    private Thread dispatcher;
+
+    public SeckillAdmissionBatcher(StringRedisTemplate stringRedisTemplate,
+                                   @Value("${hmdp.seckill.batch.enabled:false}") boolean enabled,
+                                   @Value("${hmdp.seckill.batch.max-size:64}") int maxSize,
+                                   @Value("${hmdp.seckill.batch.max-wait-micros:1000}") long maxWaitMicros,
+                                   @Value("${spring.redis.timeout:3s}") Duration redisTimeout) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.enabled = enabled;
+        this.maxSize = Math.max(1, maxSize);
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        this.timeoutNanos = maxWaitNanos + redisTimeout.toNanos();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        dispatcher = new Thread(this::dispatchLoop, "seckill-admission");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+        log.info("秒杀请求合并已开启，批量大小: {}，最长等待: {}us", maxSize, TimeUnit.NANOSECONDS.toMicros(maxWaitNanos));
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        // 还没有执行的请求直接失败
+        List<Attempt> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (Attempt attempt : left) {
+            attempt.future.completeExceptionally(new IllegalStateException("秒杀请求合并器已停止"));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 提交一个抢购请求并等待所在批次执行完成
+     *
+     * @return 0 成功；1 库存不足；2 重复下单
+     */
+    public Long admit(Long voucherId, Long userId, long orderId) {
+        if (!running) {
+            throw new IllegalStateException("秒杀请求合并器未启动");
+        }
+        Attempt attempt = new Attempt(voucherId.toString(), userId.toString(), String.valueOf(orderId));
+        queue.add(attempt);
+        if (!running && queue.remove(attempt)) {
+            // 入队期间合并器已停止，分发线程不会再处理这个请求
+            throw new IllegalStateException("秒杀请求合并器已停止");
+        }
+        try {
+            return attempt.future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            // 还在队列中说明没有执行过；否则脚本可能已经执行，订单以异步落库的结果为准
+            boolean executed = !queue.remove(attempt);
+            log.warn("秒杀请求等待超时，voucherId: {}, userId: {}, orderId: {}, 是否已提交Redis: {}",
+                    voucherId, userId, orderId, executed);
+            throw new IllegalStateException("秒杀请求超时", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queue.remove(attempt);
+            throw new IllegalStateException("秒杀请求被中断", e);
+        }
+    }
+
+    /**
+     * 平均每次Lua调用合并的请求数
+     */
+    public double getAverageBatchSize() {
+        long batches = batchCount.get();
+        return batches == 0 ? 0 : (double) attemptCount.get() / batches;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                Attempt first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                dispatch(collect(first));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("秒杀请求合并异常", e);
+            }
+        }
+    }
+
+    /**
+     * 从第一个请求开始收集一批请求：先取走队列中已有的请求，不足一批时在剩余等待时间内继续等待
+     * 上一批在Redis中执行期间到达的请求会直接进入下一批，负载越高批量越大
+     */
+    List<Attempt> collect(Attempt first) {
+        List<Attempt> batch = new ArrayList<>(maxSize);
+        batch.add(first);
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (batch.size() < maxSize) {
+            queue.drainTo(batch, maxSize - batch.size());
+            if (batch.size() >= maxSize) {
+                break;
+            }
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                break;
+            }
+            Attempt next;
+            try {
+                next = queue.poll(left, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                // 停机时已经收集的请求仍然执行，保证每个请求都有结果
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    /**
+     * 执行一批请求并把结果分发给各个请求，执行失败时整批请求都失败
+     */
+    void dispatch(List<Attempt> batch) {
+        List<Long> results;
+        try {
+            results = execute(batch);
+            if (results.size() != batch.size()) {
+                throw new IllegalStateException("批量秒杀脚本返回结果数量错误: " + results.size() + "/" + batch.size());
+            }
+        } catch (RuntimeException e) {
+            for (Attempt attempt : batch) {
+                attempt.future.completeExceptionally(e);
+            }
+            return;
+        }
+        batchCount.incrementAndGet();
+        attemptCount.addAndGet(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(results.get(i));
+        }
+    }
+
+    List<Long> execute(List<Attempt> batch) {
+        String[] args = new String[batch.size() * 3];
+        for (int i = 0; i < batch.size(); i++) {
+            Attempt attempt = batch.get(i);
+            args[i * 3] = attempt.voucherId;
+            args[i * 3 + 1] = attempt.userId;
+            args[i * 3 + 2] = attempt.orderId;
+        }
+        List<?> reply = stringRedisTemplate.execute(BATCH_SCRIPT, Collections.emptyList(), (Object[]) args);
+        if (reply == null) {
+            return Collections.emptyList();
+        }
+        List<Long> results = new ArrayList<>(reply.size());
+        for (Object item : reply) {
+            results.add(((Number) item).longValue());
+        }
+        return results;
+    }
+
+    static class Attempt {
+        final String voucherId;
+        final String userId;
+        final String orderId;
+        final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        Attempt(String voucherId, String userId, String orderId) {
+            this.voucherId = voucherId;
+            this.userId = userId;
+            this.orderId = orderId;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_SHARDS_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+
+/**
+ * 秒杀库存分片计数器，把一个优惠券的库存拆分到N个子计数器上，避免所有请求集中在一个热点key
+ * 1. 分片i的库存key为 seckill:stock:{voucherId:i}，下单用户集合为 seckill:order:{voucherId:i}
+ *    同一分片的两个key带有相同的hash tag，位于同一个slot，不同分片可以分布在不同的Redis节点上
+ * 2. 用户按id哈希路由到主分片，一人一单只在主分片的用户集合中判断，主分片库存不足时依次尝试相邻分片
+ * 3. 每个脚本只访问同一个slot的key，订单消息由调用方在扣减成功后写入Stream
+ * 4. 分片数量在预热时写入 seckill:shards:voucherId，各节点读取一次后缓存在本地；没有分片数量的优惠券使用单个库存key
+ */
+@Slf4j
+@Component
+public class ShardedStockCounter {
+
+    /**
+     * 库存不足
+     */
+    public static final int NO_STOCK = -1;
+
+    /**
+     * 重复下单
+     */
+    public static final int DUPLICATE = -2;
+
+    private static final long HOME_ACQUIRED = 0;
+    private static final long HOME_DUPLICATE = 2;
+
+    private static final DefaultRedisScript<Long> SHARD_SCRIPT;
+    private static final DefaultRedisScript<Long> TAKE_SCRIPT;
+
+    static {
+        SHARD_SCRIPT = new DefaultRedisScript<>();
+        SHARD_SCRIPT.setLocation(new ClassPathResource("seckill_shard.lua"));
+        SHARD_SCRIPT.setResultType(Long.class);
+        TAKE_SCRIPT = new DefaultRedisScript<>();
+        TAKE_SCRIPT.setLocation(new ClassPathResource("stock_take.lua"));
+        TAKE_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final int defaultShards;
+
+    /**
+     * 优惠券的分片数量，预热后不会改变，缓存在本地避免每次请求都读取
+     */
+    private final Map<Long, Integer> shardCounts = new ConcurrentHashMap<>();
+
+    public ShardedStockCounter(StringRedisTemplate stringRedisTemplate,
+                               @Value("${hmdp.seckill.stock-shards:1}") int defaultShards) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.defaultShards = Math.max(1, defaultShards);
+    }
+
+    /**
+     * 预热库存：分片数量大于1时把库存平均拆分到各个分片，余数分给前几个分片
+     */
+    public void preload(Long voucherId, int stock) {
+        int shards = defaultShards;
+        if (shards <= 1) {
+            stringRedisTemplate.opsForValue().set(SECKILL_STOCK_KEY + voucherId, String.valueOf(stock));
+            shardCounts.put(voucherId, 1);
+            return;
+        }
+        for (int i = 0; i < shards; i++) {
+            int shardStock = stock / shards + (i < stock % shards ? 1 : 0);
+            stringRedisTemplate.opsForValue().set(stockKey(voucherId, i), String.valueOf(shardStock));
+        }
+        stringRedisTemplate.opsForValue().set(SECKILL_SHARDS_KEY + voucherId, String.valueOf(shards));
+        shardCounts.put(voucherId, shards);
+        log.info("优惠券[{}]库存{}已拆分到{}个分片", voucherId, stock, shards);
+    }
+
+    /**
+     * 在调用方的pipeline中恢复库存和下单用户集合，用于Redis数据丢失后重新预热
+     * 库存key已存在时不覆盖(SETNX)，分片数量与preload相同，已下单的用户写入各自主分片的用户集合
+     *
+     * @param stock  数据库中的剩余库存
+     * @param buyers 已下单的用户id
+     */
+    public void preheat(RedisOperations<String, String> operations, Long voucherId, int stock, Collection<Long> buyers) {
+        int shards = defaultShards;
+        if (shards <= 1) {
+            operations.opsForValue().setIfAbsent(SECKILL_STOCK_KEY + voucherId, String.valueOf(stock));
+            if (!buyers.isEmpty()) {
+                operations.opsForSet().add(SECKILL_ORDER_KEY + voucherId, toStrings(buyers));
+            }
+            shardCounts.put(voucherId, 1);
+            return;
+        }
+        List<List<String>> shardBuyers = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            shardBuyers.add(new ArrayList<>());
+        }
+        for (Long userId : buyers) {
+            shardBuyers.get(homeShard(userId, shards)).add(userId.toString());
+        }
+        for (int i = 0; i < shards; i++) {
+            int shardStock = stock / shards + (i < stock % shards ? 1 : 0);
+            operations.opsForValue().setIfAbsent(stockKey(voucherId, i), String.valueOf(shardStock));
+            if (!shardBuyers.get(i).isEmpty()) {
+                operations.opsForSet().add(orderKey(voucherId, i), shardBuyers.get(i).toArray(new String[0]));
+            }
+        }
+        operations.opsForValue().set(SECKILL_SHARDS_KEY + voucherId, String.valueOf(shards));
+        shardCounts.put(voucherId, shards);
+    }
+
+    /**
+     * 预热后必须存在的key：未分片时为单个库存key，分片时为各分片的库存key和分片数量key
+     * 其中任意一个丢失都需要重新预热，已存在的分片库存不会被{@link #preheat}覆盖
+     */
+    public List<String> preheatKeys(Long voucherId) {
+        int shards = defaultShards;
+        if (shards <= 1) {
+            return Collections.singletonList(SECKILL_STOCK_KEY + voucherId);
+        }
+        List<String> keys = new ArrayList<>(shards + 1);
+        for (int i = 0; i < shards; i++) {
+            keys.add(stockKey(voucherId, i));
+        }
+        keys.add(SECKILL_SHARDS_KEY + voucherId);
+        return keys;
+    }
+
+    /**
+     * 补充库存：按预热时的分片数量平均加到各个分片上
+     */
+    public void replenish(Long voucherId, int amount) {
+        int shards = shardsOf(voucherId);
+        if (shards <= 1) {
+            stringRedisTemplate.opsForValue().increment(SECKILL_STOCK_KEY + voucherId, amount);
+            return;
+        }
+        for (int i = 0; i < shards; i++) {
+            int shardAmount = amount / shards + (i < amount % shards ? 1 : 0);
+            if (shardAmount > 0) {
+                stringRedisTemplate.opsForValue().increment(stockKey(voucherId, i), shardAmount);
+            }
+        }
+    }
+
+    /**
+     * 查询优惠券的分片数量，没有分片时返回1
+     */
+    public int shardsOf(Long voucherId) {
+        return shardCounts.computeIfAbsent(voucherId, id -> {
+            String value = stringRedisTemplate.opsForValue().get(SECKILL_SHARDS_KEY + id);
+            return value == null ? 1 : Integer.parseInt(value);
+        });
+    }
+
+    /**
+     * 扣减一个库存并占用用户的下单资格
+     *
+     * @return 扣减成功的分片序号；{@link #NO_STOCK} 所有分片库存不足；{@link #DUPLICATE} 重复下单
+     */
+    public int acquire(Long voucherId, Long userId, int shards) {
+        int home = homeShard(userId, shards);
+        Long result = stringRedisTemplate.execute(SHARD_SCRIPT,
+                Arrays.asList(stockKey(voucherId, home), orderKey(voucherId, home)), userId.toString());
+        if (result == null) {
+            return NO_STOCK;
+        }
+        if (result == HOME_ACQUIRED) {
+            return home;
+        }
+        if (result == HOME_DUPLICATE) {
+            return DUPLICATE;
+        }
+        // 主分片库存不足，依次尝试相邻分片，下单资格已经在主分片占用
+        for (int k = 1; k < shards; k++) {
+            int shard = (home + k) % shards;
+            Long taken = stringRedisTemplate.execute(TAKE_SCRIPT, Collections.singletonList(stockKey(voucherId, shard)));
+            if (taken != null && taken == 1) {
+                return shard;
+            }
+        }
+        // 所有分片都没有库存，释放下单资格
+        stringRedisTemplate.opsForSet().remove(orderKey(voucherId, home), userId.toString());
+        return NO_STOCK;
+    }
+
+    /**
+     * 撤销一次扣减：归还分片库存并释放用户的下单资格，订单消息写入失败时调用
+     *
+     * @param shard {@link #acquire} 返回的分片序号
+     */
+    public void release(Long voucherId, Long userId, int shards, int shard) {
+        stringRedisTemplate.opsForValue().increment(stockKey(voucherId, shard));
+        stringRedisTemplate.opsForSet().remove(orderKey(voucherId, homeShard(userId, shards)), userId.toString());
+    }
+
+    /**
+     * 用户的主分片
+     */
+    public static int homeShard(Long userId, int shards) {
+        return Math.floorMod(Long.hashCode(userId), shards);
+    }
+
+    public static String stockKey(Long voucherId, int shard) {
+        return SECKILL_STOCK_KEY + "{" + voucherId + ":" + shard + "}";
+    }
+
+    public static String orderKey(Long voucherId, int shard) {
+        return SECKILL_ORDER_KEY + "{" + voucherId + ":" + shard + "}";
+    }
+
+    private static String[] toStrings(Collection<Long> ids) {
+        String[] values = new String[ids.size()];
+        int i = 0;
+        for (Long id : ids) {
+            values[i++] = id.toString();
+        }
+        return values;
+    }
+}
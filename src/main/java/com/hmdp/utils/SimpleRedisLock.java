@@ -1,52 +1,175 @@
 package com.hmdp.utils;
 
 import cn.hutool.core.lang.UUID;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 
+import static com.hmdp.utils.RedisConstants.LOCK_RELEASE_CHANNEL;
+
 /**
- * Redis分布式锁实现
+ * Redis分布式锁实现，可重入，锁保存为 lock:name 的hash，field为持有者标识(节点UUID-线程id)，value为重入次数
+ * 1. 加锁(lock.lua)和解锁(unlock.lua)都在Lua脚本中完成，判断持有者和修改锁是原子的，不会误删其他线程的锁
+ * 2. 通过 {@link RedisLockManager#getLock} 创建的锁支持阻塞等待和看门狗：
+ *    等待时在锁释放通知或锁的剩余有效期到达时重新抢锁；没有指定有效期时由看门狗续期，直到最后一次unlock
+ * 3. 直接new出来的锁没有释放通知和看门狗，等待时按锁的剩余有效期轮询，必须指定有效期
  */
 public class SimpleRedisLock {
 
-    private String name;
-    private StringRedisTemplate stringRedisTemplate;
+    private static final String KEY_PREFIX = "lock:";
+    private static final String ID_PREFIX = UUID.randomUUID().toString(true) + "-";
+
+    /**
+     * 没有释放通知时两次抢锁的最长间隔
+     */
+    private static final long MAX_POLL_MILLIS = 100;
+
+    private static final DefaultRedisScript<Long> LOCK_SCRIPT;
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT;
+
+    static {
+        LOCK_SCRIPT = new DefaultRedisScript<>();
+        LOCK_SCRIPT.setLocation(new ClassPathResource("lock.lua"));
+        LOCK_SCRIPT.setResultType(Long.class);
+        UNLOCK_SCRIPT = new DefaultRedisScript<>();
+        UNLOCK_SCRIPT.setLocation(new ClassPathResource("unlock.lua"));
+        UNLOCK_SCRIPT.setResultType(Long.class);
+    }
+
+    private final String key;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisLockManager manager;
 
     public SimpleRedisLock(String name, StringRedisTemplate stringRedisTemplate) {
-        this.name = name;
-        this.stringRedisTemplate = stringRedisTemplate;
+        this(name, stringRedisTemplate, null);
     }
 
-    private static final String KEY_PREFIX = "lock:";
-    private static final String ID_PREFIX = UUID.randomUUID().toString(true) + "-";
+    SimpleRedisLock(String name, StringRedisTemplate stringRedisTemplate, RedisLockManager manager) {
+        this.key = KEY_PREFIX + name;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.manager = manager;
+    }
 
     /**
-     * 尝试获取锁
+     * 尝试获取锁，不等待
      * @param timeoutSec 锁的超时时间，过期自动释放
      * @return true表示获取锁成功，false表示获取锁失败
      */
     public boolean tryLock(long timeoutSec) {
-        // 获取线程标识
-        String threadId = ID_PREFIX + Thread.currentThread().getId();
-        // 获取锁
-        Boolean success = stringRedisTemplate.opsForValue()
-                .setIfAbsent(KEY_PREFIX + name, threadId, timeoutSec, TimeUnit.SECONDS);
-        return Boolean.TRUE.equals(success);
+        return tryAcquire(TimeUnit.SECONDS.toMillis(timeoutSec), false) == null;
+    }
+
+    /**
+     * 尝试获取锁，最多等待waitTime
+     * @param leaseTime 锁的有效期，小于等于0表示由看门狗续期
+     * @return true表示获取锁成功，false表示等待超时
+     */
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        return acquire(unit.toMillis(waitTime), leaseTime > 0 ? unit.toMillis(leaseTime) : -1);
     }
 
     /**
-     * 释放锁
+     * 获取锁，一直等待到获取成功，由看门狗续期
+     */
+    public void lock() throws InterruptedException {
+        acquire(Long.MAX_VALUE, -1);
+    }
+
+    /**
+     * 释放锁，重入时只减少一次计数
+     * @throws IllegalMonitorStateException 锁不属于当前线程(已过期或被其他线程持有)
      */
     public void unlock() {
-        // 获取线程标识
-        String threadId = ID_PREFIX + Thread.currentThread().getId();
-        // 获取锁中的标识
-        String id = stringRedisTemplate.opsForValue().get(KEY_PREFIX + name);
-        // 判断标识是否一致
-        if(threadId.equals(id)) {
-            // 释放锁
-            stringRedisTemplate.delete(KEY_PREFIX + name);
+        String owner = ownerId();
+        Long result = release(owner);
+        if (manager != null) {
+            manager.onReleased(key, owner, result == null || result != 0);
+        }
+        if (result == null || result < 0) {
+            throw new IllegalMonitorStateException("锁[" + key + "]不属于当前线程: " + owner);
         }
     }
+
+    /**
+     * 锁是否由当前线程持有
+     */
+    public boolean isHeldByCurrentThread() {
+        return stringRedisTemplate.opsForHash().hasKey(key, ownerId());
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    private boolean acquire(long waitMillis, long leaseMillis) throws InterruptedException {
+        boolean watchdog = leaseMillis <= 0;
+        if (watchdog && manager == null) {
+            throw new IllegalStateException("看门狗需要通过RedisLockManager创建锁: " + key);
+        }
+        long lease = watchdog ? manager.getWatchdogLeaseMillis() : leaseMillis;
+        Long ttl = tryAcquire(lease, watchdog);
+        if (ttl == null) {
+            return true;
+        }
+        long deadline = waitMillis == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + waitMillis;
+        if (waitMillis <= 0) {
+            return false;
+        }
+        RedisLockManager.Waiters waiters = manager == null ? null : manager.subscribe(key);
+        try {
+            while (true) {
+                // 登记等待之后再抢一次，不会错过中间的释放通知
+                ttl = tryAcquire(lease, watchdog);
+                if (ttl == null) {
+                    return true;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                // 最多等到锁过期，防止释放通知丢失时一直等待
+                long wait = ttl > 0 ? Math.min(ttl, remaining) : Math.min(MAX_POLL_MILLIS, remaining);
+                if (waiters != null) {
+                    waiters.await(wait);
+                } else {
+                    Thread.sleep(Math.min(wait, MAX_POLL_MILLIS));
+                }
+            }
+        } finally {
+            if (waiters != null) {
+                manager.unsubscribe(key, waiters);
+            }
+        }
+    }
+
+    /**
+     * @return null表示获取成功，否则为锁的剩余有效期(毫秒)
+     */
+    private Long tryAcquire(long leaseMillis, boolean watchdog) {
+        String owner = ownerId();
+        Long ttl = acquireOnce(owner, leaseMillis);
+        if (ttl == null && manager != null) {
+            manager.onAcquired(key, owner, watchdog);
+        }
+        return ttl;
+    }
+
+    Long acquireOnce(String owner, long leaseMillis) {
+        return stringRedisTemplate.execute(LOCK_SCRIPT, Collections.singletonList(key), owner, String.valueOf(leaseMillis));
+    }
+
+    /**
+     * @return -1 锁不属于该持有者；0 锁仍被持有；1 锁已释放
+     */
+    Long release(String owner) {
+        return stringRedisTemplate.execute(UNLOCK_SCRIPT, Arrays.asList(key, LOCK_RELEASE_CHANNEL), owner);
+    }
+
+    private static String ownerId() {
+        return ID_PREFIX + Thread.currentThread().getId();
+    }
 }
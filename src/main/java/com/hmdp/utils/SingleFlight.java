@@ -0,0 +1,77 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 请求合并（single-flight）
+ * 同一时刻对同一个key的多次加载只会真正执行一次，其余调用方共享同一个结果，
+ * 避免缓存未命中时大量线程同时去竞争锁、查询数据库
+ */
+public class SingleFlight {
+
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong sharedCount = new AtomicLong();
+
+    /**
+     * 执行加载，如果已有相同key的加载正在进行，则等待并返回它的结果
+     *
+     * @param key    键
+     * @param loader 加载函数
+     * @param <T>    返回值类型
+     * @return 加载结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> loader) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            // 已有线程在加载，等待它的结果
+            sharedCount.incrementAndGet();
+            return (T) await(existing);
+        }
+        try {
+            T value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 当前正在加载的key数量
+     */
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * 共享了其他线程加载结果的调用次数
+     */
+    public long getSharedCount() {
+        return sharedCount.get();
+    }
+
+    private Object await(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hmdp.utils.RedisConstants.ID_WORKER_KEY;
+import static com.hmdp.utils.RedisConstants.ID_WORKER_TS_KEY;
+
+/**
+ * Snowflake id生成器，生成id时不访问网络，配置 hmdp.id.type=snowflake 时替代 {@link RedisIdWorker}
+ * 1. id结构：1位符号 | 41位毫秒时间戳(相对2022-01-01) | 10位worker id | 12位序列号，所有业务共用一个序列
+ * 2. worker id从Redis租用：SET id:worker:n NX PX，后台定时续期，续期失败超过租约有效期后停止发放id，避免两个节点使用同一个worker id
+ * 3. 续期和停机时把最后发放的时间戳保存到 id:worker:ts，下一个租到该worker id的节点从这个时间戳之后开始发放
+ * 4. 时钟回拨不超过max-backward-ms时继续使用上一次的时间戳递增序列号(逻辑时钟)，超过时拒绝生成id
+ * 5. 时间戳和序列号打包在一个AtomicLong中用CAS更新，不加锁；同一毫秒序列号用完时借用下一毫秒
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(name = "hmdp.id.type", havingValue = "snowflake")
+public class SnowflakeIdWorker implements IdWorker {
+
+    /**
+     * 时间戳起点：2022-01-01 00:00:00 UTC，与RedisIdWorker相同
+     */
+    public static final long EPOCH_MILLIS = 1640995200000L;
+
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = WORKER_BITS + SEQUENCE_BITS;
+
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT;
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT;
+
+    static {
+        RENEW_SCRIPT = new DefaultRedisScript<>();
+        RENEW_SCRIPT.setLocation(new ClassPathResource("id_worker_renew.lua"));
+        RENEW_SCRIPT.setResultType(Long.class);
+        RELEASE_SCRIPT = new DefaultRedisScript<>();
+        RELEASE_SCRIPT.setLocation(new ClassPathResource("id_worker_release.lua"));
+        RELEASE_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final long leaseMillis;
+
+    private final long maxBackwardMillis;
+
+    /**
+     * 高位为相对EPOCH的时间戳，低SEQUENCE_BITS位为序列号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    private volatile long workerId = -1;
+
+    /**
+     * 租约有效期截止时间，超过后不再发放id
+     */
+    private volatile long leaseValidUntil;
+
+    @Autowired
+    public SnowflakeIdWorker(StringRedisTemplate stringRedisTemplate,
+                             @Value("${hmdp.id.snowflake.lease-ms:30000}") long leaseMillis,
+                             @Value("${hmdp.id.snowflake.max-backward-ms:5000}") long maxBackwardMillis) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.leaseMillis = leaseMillis;
+        this.maxBackwardMillis = maxBackwardMillis;
+    }
+
+    /**
+     * 使用固定的worker id，不访问Redis，用于测试和基准测试
+     */
+    public SnowflakeIdWorker(long workerId, long maxBackwardMillis) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("worker id超出范围: " + workerId);
+        }
+        this.stringRedisTemplate = null;
+        this.leaseMillis = 0;
+        this.maxBackwardMillis = maxBackwardMillis;
+        this.workerId = workerId;
+        this.leaseValidUntil = Long.MAX_VALUE;
+    }
+
+    @PostConstruct
+    private void init() {
+        acquire();
+    }
+
+    @Override
+    public long nextId(String keyPrefix) {
+        long worker = workerId;
+        if (worker < 0 || System.currentTimeMillis() > leaseValidUntil) {
+            throw new IllegalStateException("没有有效的worker id租约，暂停生成id");
+        }
+        while (true) {
+            long now = currentMillis() - EPOCH_MILLIS;
+            long prev = state.get();
+            long lastTimestamp = prev >>> SEQUENCE_BITS;
+            long next;
+            if (now > lastTimestamp) {
+                next = now << SEQUENCE_BITS;
+            } else {
+                // 同一毫秒内或时钟回拨，继续使用上一次的时间戳
+                if (lastTimestamp - now > maxBackwardMillis) {
+                    throw new IllegalStateException("时钟回拨" + (lastTimestamp - now) + "ms，超过允许的" + maxBackwardMillis + "ms");
+                }
+                // 序列号用完时借用下一毫秒
+                next = (prev & SEQUENCE_MASK) < SEQUENCE_MASK ? prev + 1 : (lastTimestamp + 1) << SEQUENCE_BITS;
+            }
+            if (state.compareAndSet(prev, next)) {
+                return (next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT | worker << SEQUENCE_BITS | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * 解析id中的worker id
+     */
+    public static long workerIdOf(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_WORKER_ID;
+    }
+
+    /**
+     * 解析id中的毫秒时间戳
+     */
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH_MILLIS;
+    }
+
+    public long getWorkerId() {
+        return workerId;
+    }
+
+    long currentMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * 定时续期租约，续期失败时重新租用一个worker id
+     */
+    @Scheduled(fixedDelayString = "${hmdp.id.snowflake.renew-ms:10000}")
+    public void renew() {
+        if (stringRedisTemplate == null) {
+            return;
+        }
+        long worker = workerId;
+        if (worker < 0) {
+            acquire();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            Long result = stringRedisTemplate.execute(RENEW_SCRIPT, Arrays.asList(ID_WORKER_KEY + worker, ID_WORKER_TS_KEY),
+                    CacheClient.NODE_ID, String.valueOf(leaseMillis), String.valueOf(worker), String.valueOf(lastTimestamp()));
+            if (result != null && result == 1) {
+                leaseValidUntil = now + leaseMillis;
+                return;
+            }
+            log.warn("worker id[{}]租约已失效，重新租用", worker);
+            workerId = -1;
+            acquire();
+        } catch (Exception e) {
+            // Redis不可用时继续使用当前租约，直到有效期结束
+            log.error("worker id[{}]续期失败", worker, e);
+        }
+    }
+
+    /**
+     * 停机时释放租约，保存最后发放的时间戳
+     */
+    @PreDestroy
+    public void release() {
+        long worker = workerId;
+        if (stringRedisTemplate == null || worker < 0) {
+            return;
+        }
+        try {
+            stringRedisTemplate.execute(RELEASE_SCRIPT, Arrays.asList(ID_WORKER_KEY + worker, ID_WORKER_TS_KEY),
+                    CacheClient.NODE_ID, String.valueOf(worker), String.valueOf(lastTimestamp()));
+        } catch (Exception e) {
+            log.error("释放worker id[{}]失败", worker, e);
+        }
+        workerId = -1;
+    }
+
+    /**
+     * 从随机位置开始依次尝试租用一个空闲的worker id
+     */
+    private synchronized void acquire() {
+        if (workerId >= 0) {
+            return;
+        }
+        long start = ThreadLocalRandom.current().nextLong(MAX_WORKER_ID + 1);
+        for (long i = 0; i <= MAX_WORKER_ID; i++) {
+            long candidate = (start + i) & MAX_WORKER_ID;
+            long now = System.currentTimeMillis();
+            Boolean ok = stringRedisTemplate.opsForValue().setIfAbsent(
+                    ID_WORKER_KEY + candidate, CacheClient.NODE_ID, leaseMillis, TimeUnit.MILLISECONDS);
+            if (!Boolean.TRUE.equals(ok)) {
+                continue;
+            }
+            // 从上一个持有者最后发放的时间戳之后开始，防止节点之间的时钟差导致重复
+            Object saved = stringRedisTemplate.opsForHash().get(ID_WORKER_TS_KEY, String.valueOf(candidate));
+            if (saved != null) {
+                long savedTimestamp = Long.parseLong((String) saved);
+                state.accumulateAndGet((savedTimestamp + 1) << SEQUENCE_BITS, Math::max);
+            }
+            leaseValidUntil = now + leaseMillis;
+            workerId = candidate;
+            log.info("租用worker id成功: {}", candidate);
+            return;
+        }
+        throw new IllegalStateException("没有空闲的worker id");
+    }
+
+    private long lastTimestamp() {
+        return state.get() >>> SEQUENCE_BITS;
+    }
+}
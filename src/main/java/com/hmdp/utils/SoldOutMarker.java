@@ -0,0 +1,145 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_SOLD_OUT_CHANNEL;
+
+/**
+ * 秒杀券售罄标记，售罄后的请求直接在本地拒绝，不再生成订单id和执行Lua脚本
+ * 1. 脚本返回库存不足时标记售罄，并通过Redis发布订阅广播给其他节点
+ * 2. 补充库存时清除标记并广播
+ * 3. 标记超过recheck-ms后放行一个请求重新检查库存，弥补丢失的清除广播，检查结果仍是售罄时重新标记，扣减成功时清除标记
+ */
+@Slf4j
+@Component
+public class SoldOutMarker implements MessageListener {
+
+    private static final String SOLD_OUT = "SOLD";
+    private static final String RESET = "RESET";
+
+    /**
+     * 优惠券id -> 标记(或上一次放行检查)的时间
+     */
+    private final Map<Long, Long> markers = new ConcurrentHashMap<>();
+
+    private final long recheckMillis;
+
+    private final AtomicLong rejectCount = new AtomicLong();
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    public SoldOutMarker(@Value("${hmdp.seckill.sold-out.recheck-ms:5000}") long recheckMillis) {
+        this.recheckMillis = recheckMillis;
+    }
+
+    @PostConstruct
+    private void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(SECKILL_SOLD_OUT_CHANNEL));
+    }
+
+    /**
+     * 判断是否已售罄，返回true时直接拒绝请求
+     */
+    public boolean isSoldOut(Long voucherId) {
+        boolean soldOut = isSoldOut(voucherId, System.currentTimeMillis());
+        if (soldOut) {
+            rejectCount.incrementAndGet();
+        }
+        return soldOut;
+    }
+
+    /**
+     * 标记售罄并广播，已经标记过的不重复广播
+     */
+    public void markSoldOut(Long voucherId) {
+        if (markers.put(voucherId, System.currentTimeMillis()) == null) {
+            publish(SOLD_OUT, voucherId);
+            log.info("优惠券[{}]已售罄", voucherId);
+        }
+    }
+
+    /**
+     * 补充库存后清除售罄标记并广播
+     */
+    public void reset(Long voucherId) {
+        markers.remove(voucherId);
+        publish(RESET, voucherId);
+    }
+
+    /**
+     * 放行检查的请求扣减成功，说明库存已补充但没有收到清除广播，清除本地标记
+     */
+    public void onStockAvailable(Long voucherId) {
+        if (markers.remove(voucherId) != null) {
+            log.info("优惠券[{}]检查到库存已补充，清除售罄标记", voucherId);
+        }
+    }
+
+    /**
+     * 售罄后在本地拒绝的请求数
+     */
+    public long getRejectCount() {
+        return rejectCount.get();
+    }
+
+    /**
+     * 标记超过recheckMillis后，只有一个请求能把标记时间更新为当前时间并被放行
+     */
+    boolean isSoldOut(Long voucherId, long now) {
+        Long markedAt = markers.get(voucherId);
+        if (markedAt == null) {
+            return false;
+        }
+        if (now - markedAt < recheckMillis) {
+            return true;
+        }
+        return !markers.replace(voucherId, markedAt, now);
+    }
+
+    void markLocal(Long voucherId, long now) {
+        markers.put(voucherId, now);
+    }
+
+    void resetLocal(Long voucherId) {
+        markers.remove(voucherId);
+    }
+
+    private void publish(String action, Long voucherId) {
+        // 消息格式：节点标识|动作|优惠券id
+        stringRedisTemplate.convertAndSend(SECKILL_SOLD_OUT_CHANNEL,
+                CacheClient.NODE_ID + "|" + action + "|" + voucherId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] parts = body.split("\\|", 3);
+        if (parts.length != 3 || CacheClient.NODE_ID.equals(parts[0])) {
+            return;
+        }
+        Long voucherId = Long.valueOf(parts[2]);
+        if (SOLD_OUT.equals(parts[1])) {
+            markLocal(voucherId, System.currentTimeMillis());
+        } else if (RESET.equals(parts[1])) {
+            resetLocal(voucherId);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+
+/**
+ * 秒杀库存租约，每个节点一次从 seckill:stock:voucherId 租用一批库存，之后在本地扣减，库存key的访问量降低为原来的 1/批量大小
+ * 1. 本地库存用AtomicLong的CAS扣减，不加锁；本地库存用完后只有一个线程去Redis续租
+ * 2. 租约超过lease-ms后由定时任务把剩余库存归还到Redis，其他节点可以继续租用；停机时归还全部剩余库存
+ * 3. 只负责库存，一人一单仍然需要在Redis中共享判断
+ * 4. 只适用于单个库存key的优惠券，库存分片的优惠券不使用租约
+ */
+@Slf4j
+@Component
+public class StockLeaser {
+
+    private static final DefaultRedisScript<Long> LEASE_SCRIPT;
+
+    static {
+        LEASE_SCRIPT = new DefaultRedisScript<>();
+        LEASE_SCRIPT.setLocation(new ClassPathResource("lease.lua"));
+        LEASE_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final boolean enabled;
+
+    private final int blockSize;
+
+    private final long leaseMillis;
+
+    /**
+     * 优惠券id -> 本节点当前持有的租约
+     */
+    private final Map<Long, Lease> leases = new ConcurrentHashMap<>();
+
+    /**
+     * 续租时按优惠券加锁，同一时刻只有一个线程去Redis租用
+     */
+    private final Map<Long, Object> leaseLocks = new ConcurrentHashMap<>();
+
+    private final AtomicLong leasedUnits = new AtomicLong();
+
+    private final AtomicLong returnedUnits = new AtomicLong();
+
+    public StockLeaser(StringRedisTemplate stringRedisTemplate,
+                       @Value("${hmdp.seckill.lease.enabled:false}") boolean enabled,
+                       @Value("${hmdp.seckill.lease.block-size:50}") int blockSize,
+                       @Value("${hmdp.seckill.lease.lease-ms:10000}") long leaseMillis) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.enabled = enabled;
+        this.blockSize = Math.max(1, blockSize);
+        this.leaseMillis = leaseMillis;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 从本地租约中扣减一个库存，不访问Redis
+     *
+     * @return 本地没有租约或租约已用完时返回false
+     */
+    public boolean takeLocal(Long voucherId) {
+        Lease lease = leases.get(voucherId);
+        return lease != null && lease.take();
+    }
+
+    /**
+     * 本地库存用完后从Redis续租一批库存，并扣减其中一个
+     *
+     * @return Redis中的库存也已经用完时返回false
+     */
+    public boolean renewAndTake(Long voucherId) {
+        synchronized (leaseLocks.computeIfAbsent(voucherId, id -> new Object())) {
+            // 等待锁期间其他线程可能已经续租成功
+            if (takeLocal(voucherId)) {
+                return true;
+            }
+            Long granted = stringRedisTemplate.execute(LEASE_SCRIPT,
+                    Collections.singletonList(SECKILL_STOCK_KEY + voucherId), String.valueOf(blockSize));
+            if (granted == null || granted <= 0) {
+                return false;
+            }
+            leasedUnits.addAndGet(granted);
+            Lease lease = new Lease(granted - 1, System.currentTimeMillis() + leaseMillis);
+            Lease old = leases.put(voucherId, lease);
+            if (old != null) {
+                // 旧租约上还未用完的库存(如已超时但还没有被归还)转移到新租约
+                long left = old.drain();
+                if (left > 0) {
+                    lease.remaining.addAndGet(left);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 归还一个已扣减的库存，用于扣减后发现重复下单或发送订单消息失败的情况
+     * 直接加回Redis，避免与定时归还的任务竞争本地租约
+     */
+    public void giveBack(Long voucherId) {
+        stringRedisTemplate.opsForValue().increment(SECKILL_STOCK_KEY + voucherId);
+    }
+
+    /**
+     * 定时归还超时租约中未用完的库存
+     */
+    @Scheduled(fixedDelayString = "${hmdp.seckill.lease.sweep-interval-ms:1000}")
+    public void returnExpiredLeases() {
+        if (!enabled || leases.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Map.Entry<Long, Lease> entry : leases.entrySet()) {
+            Lease lease = entry.getValue();
+            if (lease.expireAt <= now && leases.remove(entry.getKey(), lease)) {
+                returnStock(entry.getKey(), lease);
+            }
+        }
+    }
+
+    /**
+     * 停机时归还本节点持有的全部库存
+     */
+    @PreDestroy
+    public void returnAll() {
+        for (Long voucherId : leases.keySet()) {
+            Lease lease = leases.remove(voucherId);
+            if (lease != null) {
+                returnStock(voucherId, lease);
+            }
+        }
+    }
+
+    /**
+     * 累计从Redis租用的库存数量
+     */
+    public long getLeasedUnits() {
+        return leasedUnits.get();
+    }
+
+    /**
+     * 累计归还到Redis的库存数量
+     */
+    public long getReturnedUnits() {
+        return returnedUnits.get();
+    }
+
+    private void returnStock(Long voucherId, Lease lease) {
+        long left = lease.drain();
+        if (left <= 0) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForValue().increment(SECKILL_STOCK_KEY + voucherId, left);
+            returnedUnits.addAndGet(left);
+            log.debug("优惠券[{}]租约到期，归还库存{}", voucherId, left);
+        } catch (Exception e) {
+            log.error("优惠券[{}]归还租约库存{}失败", voucherId, left, e);
+        }
+    }
+
+    /**
+     * 一次租约，remaining只通过CAS减少，归还时整体取走，不会出现负数
+     */
+    static class Lease {
+        final AtomicLong remaining;
+        final long expireAt;
+
+        Lease(long remaining, long expireAt) {
+            this.remaining = new AtomicLong(remaining);
+            this.expireAt = expireAt;
+        }
+
+        boolean take() {
+            long current;
+            do {
+                current = remaining.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!remaining.compareAndSet(current, current - 1));
+            return true;
+        }
+
+        /**
+         * 取走剩余的全部库存，之后的take都会失败
+         */
+        long drain() {
+            return remaining.getAndSet(0);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+
+/**
+ * 订单Stream积压监控，定时检查消费进度，裁剪已确认的消息，积压过多时拒绝新的秒杀请求
+ * 1. 消费延迟 = 当前时间 - 第一条还没有投递的消息id中的时间戳，只反映新订单需要排队多久
+ *    pending消息由重试、认领和死信队列处理，个别消息反复失败不会让延迟上涨，也就不会拒绝所有秒杀请求
+ * 2. 每个消费者组最小的pending id(没有pending时是第一条未投递的消息)之前的消息都已确认，可以裁剪(XTRIM MINID)
+ * 3. 延迟超过max-lag-ms或Stream长度超过max-backlog时进入过载状态，秒杀请求直接返回繁忙，不再写入Stream
+ * 4. 检查结果保存在本地，秒杀请求只读取一个volatile变量
+ */
+@Slf4j
+@Component
+public class StreamBacklogMonitor {
+
+    private static final DefaultRedisScript<Long> TRIM_SCRIPT;
+
+    static {
+        TRIM_SCRIPT = new DefaultRedisScript<>();
+        TRIM_SCRIPT.setLocation(new ClassPathResource("xtrim_minid.lua"));
+        TRIM_SCRIPT.setResultType(Long.class);
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final long maxLagMillis;
+
+    private final long maxBacklog;
+
+    private final boolean trimEnabled;
+
+    private volatile boolean overloaded;
+
+    private volatile long length;
+
+    private volatile long pending;
+
+    private volatile long lagMillis;
+
+    private volatile long oldestPendingMillis;
+
+    private volatile String trimmedTo;
+
+    private final AtomicLong shedCount = new AtomicLong();
+
+    private final AtomicLong trimmedCount = new AtomicLong();
+
+    public StreamBacklogMonitor(StringRedisTemplate stringRedisTemplate,
+                                @Value("${hmdp.seckill.backlog.max-lag-ms:5000}") long maxLagMillis,
+                                @Value("${hmdp.seckill.backlog.max-backlog:100000}") long maxBacklog,
+                                @Value("${hmdp.seckill.backlog.trim-enabled:true}") boolean trimEnabled) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.maxLagMillis = maxLagMillis;
+        this.maxBacklog = maxBacklog;
+        this.trimEnabled = trimEnabled;
+    }
+
+    /**
+     * 判断是否需要拒绝新的秒杀请求，拒绝时计数
+     */
+    public boolean shouldShed() {
+        if (overloaded) {
+            shedCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 检查消费进度并裁剪已确认的消息
+     */
+    @Scheduled(fixedDelayString = "${hmdp.seckill.backlog.check-interval-ms:1000}")
+    public void check() {
+        try {
+            doCheck(SECKILL_ORDER_STREAM, System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("检查Stream[{}]积压失败", SECKILL_ORDER_STREAM, e);
+        }
+    }
+
+    private void doCheck(String stream, long now) {
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(stream))) {
+            oldestPendingMillis = 0;
+            update(0, 0, 0);
+            return;
+        }
+        StreamInfo.XInfoGroups groups = stringRedisTemplate.opsForStream().groups(stream);
+        String oldest = null;
+        String oldestPending = null;
+        String trimTo = null;
+        long totalPending = 0;
+        for (int i = 0; i < groups.size(); i++) {
+            StreamInfo.XInfoGroup group = groups.get(i);
+            // 第一条还没有投递的消息，用于计算消费延迟
+            String undelivered = firstAfter(stream, group.lastDeliveredId());
+            oldest = minId(oldest, undelivered);
+            PendingMessagesSummary summary = stringRedisTemplate.opsForStream().pending(stream, group.groupName());
+            long groupPending = summary == null ? 0 : summary.getTotalPendingMessages();
+            totalPending += groupPending;
+            String groupTrimTo;
+            if (groupPending > 0) {
+                // 最小的pending id之前的消息都已确认
+                groupTrimTo = summary.minMessageId();
+                oldestPending = minId(oldestPending, groupTrimTo);
+            } else {
+                // 没有pending消息时，已投递的消息都已确认
+                groupTrimTo = undelivered != null ? undelivered : group.lastDeliveredId();
+            }
+            trimTo = minId(trimTo, groupTrimTo);
+        }
+        if (trimEnabled && trimTo != null && !trimTo.equals(trimmedTo) && compareIds(trimTo, "0-0") > 0) {
+            Long trimmed = stringRedisTemplate.execute(TRIM_SCRIPT, Collections.singletonList(stream), trimTo);
+            if (trimmed != null && trimmed > 0) {
+                trimmedCount.addAndGet(trimmed);
+            }
+            trimmedTo = trimTo;
+        }
+        Long size = stringRedisTemplate.opsForStream().size(stream);
+        long lag = oldest == null ? 0 : Math.max(0, now - idMillis(oldest));
+        // 最早的pending消息只用于观察重试情况，不参与过载判断
+        oldestPendingMillis = oldestPending == null ? 0 : Math.max(0, now - idMillis(oldestPending));
+        update(size == null ? 0 : size, totalPending, lag);
+    }
+
+    /**
+     * 查询lastDeliveredId之后的第一条消息，也就是第一条还没有投递的消息
+     */
+    private String firstAfter(String stream, String lastDeliveredId) {
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                .range(stream, Range.rightUnbounded(Range.Bound.inclusive(lastDeliveredId)), Limit.limit().count(2));
+        if (records == null) {
+            return null;
+        }
+        for (MapRecord<String, Object, Object> record : records) {
+            String id = record.getId().getValue();
+            if (compareIds(id, lastDeliveredId) > 0) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    void update(long length, long pending, long lagMillis) {
+        this.length = length;
+        this.pending = pending;
+        this.lagMillis = lagMillis;
+        boolean over = (maxLagMillis > 0 && lagMillis > maxLagMillis) || (maxBacklog > 0 && length > maxBacklog);
+        if (over != overloaded) {
+            log.warn(over ? "订单Stream积压过多，开始拒绝秒杀请求，长度: {}，延迟: {}ms"
+                    : "订单Stream积压已恢复，长度: {}，延迟: {}ms", length, lagMillis);
+        }
+        overloaded = over;
+    }
+
+    /**
+     * 积压监控的统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("stream", SECKILL_ORDER_STREAM);
+        stats.put("length", length);
+        stats.put("pending", pending);
+        stats.put("lagMillis", lagMillis);
+        stats.put("oldestPendingMillis", oldestPendingMillis);
+        stats.put("overloaded", overloaded);
+        stats.put("maxLagMillis", maxLagMillis);
+        stats.put("maxBacklog", maxBacklog);
+        stats.put("shedCount", shedCount.get());
+        stats.put("trimmedCount", trimmedCount.get());
+        stats.put("trimmedTo", trimmedTo);
+        return stats;
+    }
+
+    /**
+     * 比较两个Stream消息id，格式为 毫秒时间戳-序号
+     */
+    static int compareIds(String a, String b) {
+        int c = Long.compare(idMillis(a), idMillis(b));
+        return c != 0 ? c : Long.compare(idSequence(a), idSequence(b));
+    }
+
+    static long idMillis(String id) {
+        int idx = id.indexOf('-');
+        return Long.parseLong(idx < 0 ? id : id.substring(0, idx));
+    }
+
+    private static long idSequence(String id) {
+        int idx = id.indexOf('-');
+        return idx < 0 ? 0 : Long.parseLong(id.substring(idx + 1));
+    }
+
+    private static String minId(String current, String candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        return current == null || compareIds(candidate, current) < 0 ? candidate : current;
+    }
+}
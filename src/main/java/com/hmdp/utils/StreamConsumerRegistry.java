@@ -0,0 +1,190 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hmdp.utils.RedisConstants.STREAM_CONSUMER_KEY;
+
+/**
+ * Redis Stream消费者注册中心，让多个实例可以同时消费同一个消费者组
+ * 1. 每个消费者使用 节点标识-序号 作为唯一名称，不同实例不会共用同一个pending-list
+ * 2. 定时把本节点消费者的心跳写入ZSET(score为心跳时间)，心跳停止超过dead-ms视为消费者已下线
+ * 3. 下线消费者的pending消息由存活的消费者通过XAUTOCLAIM认领，需要Redis 6.2+
+ * 4. 已下线并且pending消息已被认领完的消费者从消费者组中删除
+ */
+@Slf4j
+@Component
+public class StreamConsumerRegistry {
+
+    private static final DefaultRedisScript<List> AUTOCLAIM_SCRIPT;
+
+    static {
+        AUTOCLAIM_SCRIPT = new DefaultRedisScript<>();
+        AUTOCLAIM_SCRIPT.setLocation(new ClassPathResource("autoclaim.lua"));
+        AUTOCLAIM_SCRIPT.setResultType(List.class);
+    }
+
+    private static final String CURSOR_START = "0-0";
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final long deadMillis;
+
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    /**
+     * 每个消费者的XAUTOCLAIM扫描游标，key为 stream|group|consumer
+     */
+    private final Map<String, String> cursors = new ConcurrentHashMap<>();
+
+    public StreamConsumerRegistry(StringRedisTemplate stringRedisTemplate,
+                                  @Value("${hmdp.stream.dead-ms:60000}") long deadMillis) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.deadMillis = deadMillis;
+    }
+
+    /**
+     * 注册一个消费者并立即写入心跳
+     *
+     * @return 名称在所有实例中唯一的消费者
+     */
+    public Consumer register(String stream, String group) {
+        Consumer consumer = Consumer.from(group, CacheClient.NODE_ID + "-" + sequence.incrementAndGet());
+        registrations.add(new Registration(stream, consumer));
+        stringRedisTemplate.opsForZSet().add(heartbeatKey(stream, group), consumer.getName(), System.currentTimeMillis());
+        log.info("Stream[{}]消费者注册成功: {}", stream, consumer.getName());
+        return consumer;
+    }
+
+    /**
+     * 认领空闲时间超过minIdleMillis的pending消息，认领后消息进入consumer的pending-list，处理完需要XACK
+     * 游标按消费者保存，每次从上一次结束的位置继续扫描，扫描完一轮后从头开始
+     *
+     * @return 认领到的消息，已被删除的消息不会返回
+     */
+    public List<MapRecord<String, Object, Object>> claim(String stream, Consumer consumer, long minIdleMillis, int count) {
+        String cursorKey = stream + "|" + consumer.getGroup() + "|" + consumer.getName();
+        String cursor = cursors.getOrDefault(cursorKey, CURSOR_START);
+        List<?> reply = stringRedisTemplate.execute(AUTOCLAIM_SCRIPT, Collections.singletonList(stream),
+                consumer.getGroup(), consumer.getName(), String.valueOf(minIdleMillis), cursor, String.valueOf(count));
+        if (reply == null || reply.size() < 2) {
+            return Collections.emptyList();
+        }
+        cursors.put(cursorKey, String.valueOf(reply.get(0)));
+        List<MapRecord<String, Object, Object>> records = new ArrayList<>();
+        for (Object item : (List<?>) reply.get(1)) {
+            // Redis 6.2中已被删除的消息返回nil，在Lua中转换为false
+            if (!(item instanceof List)) {
+                continue;
+            }
+            List<?> entry = (List<?>) item;
+            List<?> fields = (List<?>) entry.get(1);
+            Map<Object, Object> values = new LinkedHashMap<>();
+            for (int i = 0; i + 1 < fields.size(); i += 2) {
+                values.put(fields.get(i), fields.get(i + 1));
+            }
+            records.add(StreamRecords.newRecord().in(stream)
+                    .withId(RecordId.of(String.valueOf(entry.get(0)))).ofMap(values));
+        }
+        return records;
+    }
+
+    /**
+     * 写入本节点所有消费者的心跳，并清理已下线的消费者
+     */
+    @Scheduled(fixedDelayString = "${hmdp.stream.heartbeat-ms:5000}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        Set<String> groups = new LinkedHashSet<>();
+        for (Registration registration : registrations) {
+            String stream = registration.stream;
+            String group = registration.consumer.getGroup();
+            stringRedisTemplate.opsForZSet().add(heartbeatKey(stream, group), registration.consumer.getName(), now);
+            groups.add(stream + "|" + group);
+        }
+        for (String item : groups) {
+            int idx = item.indexOf('|');
+            try {
+                removeDeadConsumers(item.substring(0, idx), item.substring(idx + 1), now);
+            } catch (Exception e) {
+                log.error("清理Stream[{}]下线消费者失败", item, e);
+            }
+        }
+    }
+
+    /**
+     * 删除心跳超时、XINFO中空闲超时并且没有pending消息的消费者
+     * 还有pending消息的消费者先等待存活的消费者认领，不能直接删除，否则pending消息会丢失
+     */
+    private void removeDeadConsumers(String stream, String group, long now) {
+        String key = heartbeatKey(stream, group);
+        StreamInfo.XInfoConsumers consumers = stringRedisTemplate.opsForStream().consumers(stream, group);
+        if (consumers == null) {
+            return;
+        }
+        for (int i = 0; i < consumers.size(); i++) {
+            StreamInfo.XInfoConsumer info = consumers.get(i);
+            String name = info.consumerName();
+            Double lastBeat = stringRedisTemplate.opsForZSet().score(key, name);
+            boolean stale = lastBeat == null || now - lastBeat.longValue() > deadMillis;
+            if (!stale || info.idleTimeMs() <= deadMillis || info.pendingCount() > 0) {
+                continue;
+            }
+            stringRedisTemplate.opsForStream().deleteConsumer(stream, Consumer.from(group, name));
+            stringRedisTemplate.opsForZSet().remove(key, name);
+            log.info("Stream[{}]已删除下线的消费者: {}", stream, name);
+        }
+        // 没有出现在消费者组中的过期心跳(如从未读取过消息就下线的消费者)
+        stringRedisTemplate.opsForZSet().removeRangeByScore(key, 0, now - deadMillis * 2);
+    }
+
+    /**
+     * 正常停机时删除心跳，剩余的pending消息由其他实例认领
+     */
+    @PreDestroy
+    public void unregisterAll() {
+        for (Registration registration : registrations) {
+            stringRedisTemplate.opsForZSet().remove(
+                    heartbeatKey(registration.stream, registration.consumer.getGroup()), registration.consumer.getName());
+        }
+        registrations.clear();
+    }
+
+    private static String heartbeatKey(String stream, String group) {
+        return STREAM_CONSUMER_KEY + stream + ":" + group;
+    }
+
+    private static class Registration {
+        final String stream;
+        final Consumer consumer;
+
+        Registration(String stream, Consumer consumer) {
+            this.stream = stream;
+            this.consumer = consumer;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Redis Stream死信队列，重试次数超过上限的消息转移到 原stream.dlq 中，不再阻塞正常消息的消费
+ * 1. 死信消息保留原消息的全部字段，并追加原消息id、失败原因、投递次数和转移时间
+ * 2. 重放时把原字段重新写入原Stream，作为一条新消息消费，然后从死信队列中删除
+ */
+@Slf4j
+@Component
+public class StreamDeadLetterQueue {
+
+    public static final String DLQ_SUFFIX = ".dlq";
+
+    public static final String FIELD_SOURCE_ID = "dlq.sourceId";
+    public static final String FIELD_REASON = "dlq.reason";
+    public static final String FIELD_ATTEMPTS = "dlq.attempts";
+    public static final String FIELD_FAILED_AT = "dlq.failedAt";
+
+    /**
+     * 失败原因的最大长度，避免把完整的异常堆栈写入Redis
+     */
+    private static final int MAX_REASON_LENGTH = 512;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    public StreamDeadLetterQueue(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 把pending-list中的一条消息转移到死信队列，并在消费者组中确认原消息
+     *
+     * @param attempts 已投递的次数
+     * @param reason   最后一次失败的原因
+     * @return 写入死信队列的字段，即原消息的字段加上dlq.*字段，原消息已被删除时返回null
+     */
+    public Map<String, String> moveToDeadLetter(String stream, String group, RecordId id, long attempts, String reason) {
+        return moveToDeadLetter(stream, group, id, attempts, source -> reason);
+    }
+
+    /**
+     * 同上，失败原因根据原消息的字段获取，用于原因保存在消息之外（如订单状态）的场景
+     *
+     * @param reasonOf 根据原消息的字段返回失败原因，只在原消息存在时调用
+     */
+    public Map<String, String> moveToDeadLetter(String stream, String group, RecordId id, long attempts,
+                                                Function<Map<String, String>, String> reasonOf) {
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                .range(stream, Range.closed(id.getValue(), id.getValue()));
+        Map<String, String> values = null;
+        if (records != null && !records.isEmpty()) {
+            values = new LinkedHashMap<>();
+            for (Map.Entry<Object, Object> entry : records.get(0).getValue().entrySet()) {
+                values.put(String.valueOf(entry.getKey()), String.valueOf(entry.getValue()));
+            }
+            String reason = reasonOf.apply(Collections.unmodifiableMap(values));
+            values.put(FIELD_SOURCE_ID, id.getValue());
+            values.put(FIELD_REASON, abbreviate(reason));
+            values.put(FIELD_ATTEMPTS, String.valueOf(attempts));
+            values.put(FIELD_FAILED_AT, String.valueOf(System.currentTimeMillis()));
+            stringRedisTemplate.opsForStream().add(StreamRecords.newRecord().in(dlqKey(stream)).ofMap(values));
+            log.error("Stream[{}]消息{}投递{}次仍然失败，已转移到死信队列: {}", stream, id, attempts, reason);
+        } else {
+            // 原消息已被删除，只需要确认
+            log.error("Stream[{}]消息{}投递{}次仍然失败，原消息已不存在", stream, id, attempts);
+        }
+        stringRedisTemplate.opsForStream().acknowledge(stream, group, id);
+        return values;
+    }
+
+    /**
+     * 查询死信队列中最新的消息
+     */
+    public List<Map<String, Object>> list(String stream, int count) {
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                .reverseRange(dlqKey(stream), Range.unbounded(), Limit.limit().count(count));
+        if (records == null) {
+            return Collections.emptyList();
+        }
+        List<Map<String, Object>> list = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", record.getId().getValue());
+            item.put("values", record.getValue());
+            list.add(item);
+        }
+        return list;
+    }
+
+    /**
+     * 死信队列中的消息数量
+     */
+    public long size(String stream) {
+        Long size = stringRedisTemplate.opsForStream().size(dlqKey(stream));
+        return size == null ? 0 : size;
+    }
+
+    /**
+     * 把死信消息的原字段重新写入原Stream，并从死信队列中删除
+     *
+     * @return 新消息的id，死信消息不存在时返回null
+     */
+    public RecordId replay(String stream, String dlqId) {
+        String dlq = dlqKey(stream);
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                .range(dlq, Range.closed(dlqId, dlqId));
+        if (records == null || records.isEmpty()) {
+            return null;
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        records.get(0).getValue().forEach((k, v) -> {
+            String field = String.valueOf(k);
+            if (!field.startsWith("dlq.")) {
+                values.put(field, String.valueOf(v));
+            }
+        });
+        RecordId newId = stringRedisTemplate.opsForStream().add(StreamRecords.newRecord().in(stream).ofMap(values));
+        stringRedisTemplate.opsForStream().delete(dlq, dlqId);
+        log.info("死信消息{}已重新投递到Stream[{}]: {}", dlqId, stream, newId);
+        return newId;
+    }
+
+    public static String dlqKey(String stream) {
+        return stream + DLQ_SUFFIX;
+    }
+
+    private static String abbreviate(String reason) {
+        if (reason == null) {
+            return "";
+        }
+        return reason.length() <= MAX_REASON_LENGTH ? reason : reason.substring(0, MAX_REASON_LENGTH);
+    }
+}
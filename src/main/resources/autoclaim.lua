@@ -0,0 +1,9 @@
+-- 认领消费者组中长时间未确认的消息，需要Redis 6.2+
+-- KEYS[1]: stream
+-- ARGV[1]: 消费者组
+-- ARGV[2]: 认领消息的消费者
+-- ARGV[3]: 最小空闲时间(毫秒)，空闲时间超过该值的pending消息才会被认领
+-- ARGV[4]: 扫描起点，第一次为0-0，之后使用上一次返回的游标
+-- ARGV[5]: 每次最多认领的消息数
+-- 返回值: {下一次扫描的游标, {{消息id, {字段, 值, ...}}, ...}, ...}
+return redis.call('xautoclaim', KEYS[1], ARGV[1], ARGV[2], ARGV[3], ARGV[4], 'COUNT', ARGV[5])
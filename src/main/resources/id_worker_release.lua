@@ -0,0 +1,13 @@
+-- 释放worker id租约，并保存该worker id最后发放的时间戳
+-- KEYS[1]: 租约key，如 id:worker:5
+-- KEYS[2]: 各worker id最后时间戳的hash
+-- ARGV[1]: 节点标识
+-- ARGV[2]: worker id
+-- ARGV[3]: 最后发放的时间戳
+-- 返回值: 1 释放成功；0 租约已不属于当前节点
+if (redis.call('get', KEYS[1]) ~= ARGV[1]) then
+    return 0
+end
+redis.call('hset', KEYS[2], ARGV[2], ARGV[3])
+redis.call('del', KEYS[1])
+return 1
@@ -0,0 +1,14 @@
+-- 续期worker id租约，并保存该worker id最后发放的时间戳
+-- KEYS[1]: 租约key，如 id:worker:5
+-- KEYS[2]: 各worker id最后时间戳的hash
+-- ARGV[1]: 节点标识
+-- ARGV[2]: 租约有效期(毫秒)
+-- ARGV[3]: worker id
+-- ARGV[4]: 最后发放的时间戳
+-- 返回值: 1 续期成功；0 租约已过期或已被其他节点占用
+if (redis.call('get', KEYS[1]) ~= ARGV[1]) then
+    return 0
+end
+redis.call('pexpire', KEYS[1], ARGV[2])
+redis.call('hset', KEYS[2], ARGV[3], ARGV[4])
+return 1
@@ -0,0 +1,11 @@
+-- 从秒杀库存中租用一批库存到节点本地
+-- KEYS[1]: 库存key，如 seckill:stock:voucherId
+-- ARGV[1]: 每次租用的数量
+-- 返回值: 实际租到的数量，库存不足一批时租走剩余的全部库存，0表示已售罄
+local stock = tonumber(redis.call('get', KEYS[1]))
+if (stock == nil or stock <= 0) then
+    return 0
+end
+local n = math.min(stock, tonumber(ARGV[1]))
+redis.call('incrby', KEYS[1], -n)
+return n
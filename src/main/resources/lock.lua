@@ -0,0 +1,11 @@
+-- 获取可重入分布式锁，锁保存为hash：field为持有者标识，value为重入次数
+-- KEYS[1]: 锁的key，如 lock:order:1010
+-- ARGV[1]: 持有者标识，节点UUID-线程id
+-- ARGV[2]: 锁的有效期(毫秒)
+-- 返回值: nil 获取成功(包括重入)；否则返回锁的剩余有效期(毫秒)，用于决定等待多久
+if (redis.call('exists', KEYS[1]) == 0) or (redis.call('hexists', KEYS[1], ARGV[1]) == 1) then
+    redis.call('hincrby', KEYS[1], ARGV[1], 1)
+    redis.call('pexpire', KEYS[1], ARGV[2])
+    return nil
+end
+return redis.call('pttl', KEYS[1])
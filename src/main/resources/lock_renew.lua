@@ -0,0 +1,10 @@
+-- 看门狗续期分布式锁
+-- KEYS[1]: 锁的key
+-- ARGV[1]: 持有者标识
+-- ARGV[2]: 锁的有效期(毫秒)
+-- 返回值: 1 续期成功；0 锁已不属于该持有者
+if (redis.call('hexists', KEYS[1], ARGV[1]) == 0) then
+    return 0
+end
+redis.call('pexpire', KEYS[1], ARGV[2])
+return 1
@@ -0,0 +1,30 @@
+-- 批量秒杀Lua脚本 - 一次调用处理多个用户的抢购请求，每个请求的判断逻辑与seckill.lua相同
+-- 参数列表，每3个参数为一个请求
+-- ARGV[i]: 优惠券id
+-- ARGV[i+1]: 用户id
+-- ARGV[i+2]: 订单id
+-- 返回值: 与请求顺序一致的结果数组，0 成功；1 库存不足；2 重复下单
+
+local results = {}
+for i = 1, #ARGV, 3 do
+    local voucherId = ARGV[i]
+    local userId = ARGV[i + 1]
+    local stockKey = 'seckill:stock:' .. voucherId
+    local orderKey = 'seckill:order:' .. voucherId
+
+    local stock = tonumber(redis.call('get', stockKey))
+    if (stock == nil or stock <= 0) then
+        -- 库存不足
+        results[#results + 1] = 1
+    elseif (redis.call('sismember', orderKey, userId) == 1) then
+        -- 重复下单，同一批中同一用户的第二个请求也会在这里被拒绝
+        results[#results + 1] = 2
+    else
+        -- 扣减库存、记录下单用户、发送订单消息
+        redis.call('incrby', stockKey, -1)
+        redis.call('sadd', orderKey, userId)
+        redis.call('xadd', 'stream.orders', '*', 'userId', userId, 'voucherId', voucherId, 'id', ARGV[i + 2])
+        results[#results + 1] = 0
+    end
+end
+return results
@@ -0,0 +1,16 @@
+-- 租约模式的秒杀脚本，库存已经在节点本地扣减，这里只做一人一单判断和发送订单消息
+-- KEYS[1]: 下单用户集合，如 seckill:order:voucherId
+-- KEYS[2]: 订单消息Stream
+-- ARGV[1]: 用户id
+-- ARGV[2]: 优惠券id
+-- ARGV[3]: 订单id
+-- 返回值: 0 成功；2 重复下单
+
+-- 1. 判断用户是否已经下单，未下单时加入集合
+if (redis.call('sadd', KEYS[1], ARGV[1]) == 0) then
+    return 2
+end
+
+-- 2. 发送消息到Stream消息队列
+redis.call('xadd', KEYS[2], '*', 'userId', ARGV[1], 'voucherId', ARGV[2], 'id', ARGV[3])
+return 0
@@ -0,0 +1,22 @@
+-- 分片库存的秒杀脚本，只访问用户所在主分片的key，两个key带有相同的hash tag，在集群中位于同一个slot
+-- KEYS[1]: 主分片库存key，如 seckill:stock:{voucherId:shard}
+-- KEYS[2]: 主分片下单用户集合，如 seckill:order:{voucherId:shard}
+-- ARGV[1]: 用户id
+-- 返回值: 0 扣减主分片库存成功；2 重复下单；3 已占用下单资格，但主分片库存不足，需要尝试其他分片
+
+-- 1. 一人一单，用户只会被路由到自己的主分片，主分片的用户集合即可判断是否重复下单
+if (redis.call('sismember', KEYS[2], ARGV[1]) == 1) then
+    return 2
+end
+
+-- 2. 先占用下单资格，并发的重复请求在尝试其他分片期间也会被拦截
+redis.call('sadd', KEYS[2], ARGV[1])
+
+-- 3. 扣减主分片库存
+local stock = tonumber(redis.call('get', KEYS[1]))
+if (stock ~= nil and stock > 0) then
+    redis.call('incrby', KEYS[1], -1)
+    return 0
+end
+
+return 3
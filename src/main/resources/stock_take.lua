@@ -0,0 +1,9 @@
+-- 从一个库存分片扣减1个库存
+-- KEYS[1]: 库存分片key
+-- 返回值: 1 扣减成功；0 库存不足
+local stock = tonumber(redis.call('get', KEYS[1]))
+if (stock ~= nil and stock > 0) then
+    redis.call('incrby', KEYS[1], -1)
+    return 1
+end
+return 0
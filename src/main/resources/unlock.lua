@@ -0,0 +1,15 @@
+-- 释放可重入分布式锁，判断持有者和删除在一个脚本中完成，不会误删其他线程的锁
+-- KEYS[1]: 锁的key
+-- KEYS[2]: 锁释放的通知频道
+-- ARGV[1]: 持有者标识
+-- 返回值: -1 锁不属于当前持有者(已过期或被其他线程持有)；0 重入次数减一，锁仍被持有；1 锁已释放
+if (redis.call('hexists', KEYS[1], ARGV[1]) == 0) then
+    return -1
+end
+if (redis.call('hincrby', KEYS[1], ARGV[1], -1) > 0) then
+    return 0
+end
+redis.call('del', KEYS[1])
+-- 通知等待该锁的线程
+redis.call('publish', KEYS[2], KEYS[1])
+return 1
@@ -0,0 +1,5 @@
+-- 按最小id裁剪Stream，id小于ARGV[1]的消息会被删除，需要Redis 6.2+
+-- KEYS[1]: stream
+-- ARGV[1]: 需要保留的最小消息id
+-- 返回值: 删除的消息数量，使用近似裁剪(~)，实际保留的消息可能略多
+return redis.call('xtrim', KEYS[1], 'MINID', '~', ARGV[1])
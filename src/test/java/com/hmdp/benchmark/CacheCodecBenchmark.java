@@ -0,0 +1,151 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Blog;
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.CacheCodec;
+import com.hmdp.utils.CacheCodecRegistry;
+import com.hmdp.utils.RedisData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存编解码器基准测试，比较各编解码器对Shop、Blog、UserDTO的编解码吞吐量和序列化后的字节数
+ * 运行方式：mvn test-compile 后执行本类的main方法，或在IDE中直接运行
+ * 加上 -prof gc 参数可以同时观察每次操作的内存分配量
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheCodecBenchmark {
+
+    @Param({"json", "jackson", "kryo"})
+    private String codecName;
+
+    @Param({"shop", "blog", "user"})
+    private String payload;
+
+    private CacheCodec codec;
+    private Class<?> type;
+    private Object value;
+    private byte[] encoded;
+    private byte[] encodedLogical;
+    private RedisData redisData;
+
+    @Setup
+    public void setup() {
+        codec = new CacheCodecRegistry(codecName, "").getCodec(codecName);
+        value = sample(payload);
+        type = value.getClass();
+        redisData = new RedisData();
+        redisData.setData(value);
+        redisData.setExpireTime(LocalDateTime.now().plusMinutes(30));
+        encoded = codec.encode(value);
+        encodedLogical = codec.encodeLogical(redisData);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(value);
+    }
+
+    @Benchmark
+    public Object decode() {
+        return codec.decode(encoded, type);
+    }
+
+    @Benchmark
+    public byte[] encodeLogical() {
+        return codec.encodeLogical(redisData);
+    }
+
+    /**
+     * 逻辑过期缓存的读取路径，对应店铺详情查询
+     */
+    @Benchmark
+    public RedisData decodeLogical() {
+        return codec.decodeLogical(encodedLogical, type);
+    }
+
+    static Object sample(String payload) {
+        LocalDateTime time = LocalDateTime.of(2022, 1, 13, 17, 32, 19);
+        switch (payload) {
+            case "shop":
+                return new Shop()
+                        .setId(1L)
+                        .setName("103茶餐厅")
+                        .setTypeId(1L)
+                        .setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg")
+                        .setArea("大关")
+                        .setAddress("金华路锦昌文华苑29号")
+                        .setX(120.149192)
+                        .setY(30.316078)
+                        .setAvgPrice(80L)
+                        .setSold(4215)
+                        .setComments(3035)
+                        .setScore(37)
+                        .setOpenHours("10:00-22:00")
+                        .setCreateTime(time)
+                        .setUpdateTime(time);
+            case "blog":
+                return new Blog()
+                        .setId(4L)
+                        .setShopId(4L)
+                        .setUserId(2L)
+                        .setTitle("无尽浪漫的夜晚丨在万花丛中摇晃着红酒杯🍷品战斧牛排🥩")
+                        .setImages("/imgs/blogs/7/14/4771fefb-1a87-4252-816c-9f7ec41ffa4a.jpg,/imgs/blogs/4/10/2f07e3c9-ddce-482d-9ea7-c21450f8d7cd.jpg")
+                        .setContent("生活就是一半烟火·一半诗意<br/>手执烟火谋生活·心怀诗意以谋爱·<br/>当然<br/>男朋友给不了的浪漫要学会自己给🍒<br/>"
+                                + "无法重来的一生·尽量快乐.<br/><br/>🏰「小筑里·神秘浪漫花园餐厅」🏰<br/><br/>💯这是一家最最最美花园的西餐厅")
+                        .setLiked(37)
+                        .setComments(104)
+                        .setCreateTime(time)
+                        .setUpdateTime(time);
+            case "user":
+                UserDTO user = new UserDTO();
+                user.setId(2L);
+                user.setNickName("可可今天不吃肉");
+                user.setIcon("/imgs/icons/kkjtbcr.jpg");
+                return user;
+            default:
+                throw new IllegalArgumentException("未知的测试数据: " + payload);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        // 先输出各编解码器序列化后的字节数
+        for (String payload : new String[]{"shop", "blog", "user"}) {
+            Object value = sample(payload);
+            RedisData redisData = new RedisData();
+            redisData.setData(value);
+            redisData.setExpireTime(LocalDateTime.now().plusMinutes(30));
+            for (String name : new String[]{"json", "jackson", "kryo"}) {
+                CacheCodec codec = new CacheCodecRegistry(name, "").getCodec(name);
+                System.out.printf("%-5s %-8s bytes=%4d logicalBytes=%4d%n",
+                        payload, name, codec.encode(value).length, codec.encodeLogical(redisData).length);
+            }
+        }
+        Options options = new OptionsBuilder()
+                .include(CacheCodecBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,90 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.utils.IdWorker;
+import com.hmdp.utils.RedisIdWorker;
+import com.hmdp.utils.SnowflakeIdWorker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * id生成器基准测试，比较每次访问Redis、号段模式和Snowflake三种方式的吞吐量，多个线程共用一个生成器
+ * 运行方式：mvn test-compile 后执行本类的main方法，或在IDE中直接运行
+ * redis和redis-segment需要可访问的Redis，通过 -Dredis.host -Dredis.port -Dredis.password 指定，默认localhost:6379
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdWorkerBenchmark {
+
+    @Param({"redis", "redis-segment", "snowflake"})
+    private String workerType;
+
+    private IdWorker idWorker;
+
+    private LettuceConnectionFactory connectionFactory;
+
+    @Setup
+    public void setup() throws Exception {
+        if ("snowflake".equals(workerType)) {
+            idWorker = new SnowflakeIdWorker(1, 5000);
+            return;
+        }
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(
+                System.getProperty("redis.host", "localhost"), Integer.getInteger("redis.port", 6379));
+        String password = System.getProperty("redis.password");
+        if (password != null) {
+            config.setPassword(password);
+        }
+        connectionFactory = new LettuceConnectionFactory(config);
+        connectionFactory.afterPropertiesSet();
+        StringRedisTemplate template = new StringRedisTemplate(connectionFactory);
+        RedisIdWorker worker = new RedisIdWorker("redis-segment".equals(workerType), 1000, 0.8, 2);
+        Field field = RedisIdWorker.class.getDeclaredField("stringRedisTemplate");
+        field.setAccessible(true);
+        field.set(worker, template);
+        idWorker = worker;
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    @Benchmark
+    public long nextId() {
+        return idWorker.nextId("bench");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(IdWorkerBenchmark.class.getSimpleName())
+                .threads(8)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,174 @@
+package com.hmdp.service.impl;
+
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.mapper.SeckillVoucherMapper;
+import com.hmdp.mapper.VoucherOrderMapper;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.ShardedStockCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SECKILL_VOUCHER_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SECKILL_VOUCHER_TTL;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * SeckillVoucherServiceImpl 单元测试，覆盖秒杀开始前的库存预热
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("秒杀券服务测试")
+class SeckillVoucherServiceImplTest {
+
+    @InjectMocks
+    private SeckillVoucherServiceImpl seckillVoucherService;
+
+    @Mock
+    private SeckillVoucherMapper seckillVoucherMapper;
+
+    @Mock
+    private VoucherOrderMapper voucherOrderMapper;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private CacheClient cacheClient;
+
+    @Mock
+    private RedisOperations<String, String> operations;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private SetOperations<String, String> setOperations;
+
+    @BeforeEach
+    void setUp() {
+        // 库存不拆分，预热写入单个库存key
+        ReflectionTestUtils.setField(seckillVoucherService, "baseMapper", seckillVoucherMapper);
+        ReflectionTestUtils.setField(seckillVoucherService, "shardedStockCounter", new ShardedStockCounter(stringRedisTemplate, 1));
+        ReflectionTestUtils.setField(seckillVoucherService, "leadMinutes", 10L);
+        ReflectionTestUtils.setField(seckillVoucherService, "batchSize", 100);
+        lenient().when(operations.opsForValue()).thenReturn(valueOperations);
+        lenient().when(operations.opsForSet()).thenReturn(setOperations);
+    }
+
+    @Nested
+    @DisplayName("预热库存 - preheat")
+    class PreheatTest {
+
+        @Test
+        @DisplayName("库存key丢失 - 按数据库库存恢复，并恢复已下单用户集合")
+        void preheat_WhenStockKeyMissing_ShouldRestoreStockAndBuyers() {
+            // Given - 10分钟后开始的秒杀，Redis中库存key和缓存都不存在
+            SeckillVoucher voucher = createVoucher(1L, 100);
+            when(seckillVoucherMapper.selectList(any()))
+                    .thenReturn(Collections.singletonList(voucher))
+                    .thenReturn(Collections.emptyList());
+            when(voucherOrderMapper.selectList(any()))
+                    .thenReturn(Arrays.asList(createOrder(1L, 100L), createOrder(1L, 101L)));
+            // 第一次pipeline检查key是否存在，第二次pipeline写回库存，在Mock的RedisOperations上执行
+            when(stringRedisTemplate.executePipelined(any(SessionCallback.class)))
+                    .thenReturn(Arrays.asList(false, false))
+                    .thenAnswer(inv -> {
+                        inv.<SessionCallback<Object>>getArgument(0).execute(operations);
+                        return Collections.emptyList();
+                    });
+
+            // When
+            int restored = seckillVoucherService.preheat();
+
+            // Then - 库存用SETNX写回，已下单的用户写回一人一单集合
+            assertEquals(1, restored);
+            verify(valueOperations).setIfAbsent(SECKILL_STOCK_KEY + 1, "100");
+            verify(setOperations).add(SECKILL_ORDER_KEY + 1, "100", "101");
+            verify(cacheClient).set(CACHE_SECKILL_VOUCHER_KEY + 1, voucher, CACHE_SECKILL_VOUCHER_TTL, TimeUnit.MINUTES);
+        }
+
+        @Test
+        @DisplayName("库存key已存在 - 不查询已下单用户，也不写回库存")
+        void preheat_WhenStockKeyExists_ShouldLeaveUntouched() {
+            // Given - 库存key和缓存都存在
+            when(seckillVoucherMapper.selectList(any()))
+                    .thenReturn(Collections.singletonList(createVoucher(1L, 100)))
+                    .thenReturn(Collections.emptyList());
+            when(stringRedisTemplate.executePipelined(any(SessionCallback.class)))
+                    .thenReturn(Arrays.asList(true, true));
+
+            // When
+            int restored = seckillVoucherService.preheat();
+
+            // Then - 只执行了检查key的pipeline
+            assertEquals(0, restored);
+            verify(stringRedisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+            verify(voucherOrderMapper, never()).selectList(any());
+            verifyNoInteractions(valueOperations, setOperations);
+            verify(cacheClient, never()).set(anyString(), any(), anyLong(), any());
+        }
+        @Test
+        @DisplayName("部分分片的库存key丢失 - 重新预热，已存在的分片不覆盖")
+        void preheat_WhenOneShardKeyMissing_ShouldRestoreMissingShard() {
+            // Given - 库存拆分为2个分片，分片1的库存key丢失，分片0和分片数量key仍然存在
+            ReflectionTestUtils.setField(seckillVoucherService, "shardedStockCounter", new ShardedStockCounter(stringRedisTemplate, 2));
+            when(seckillVoucherMapper.selectList(any()))
+                    .thenReturn(Collections.singletonList(createVoucher(1L, 100)))
+                    .thenReturn(Collections.emptyList());
+            when(voucherOrderMapper.selectList(any())).thenReturn(Collections.emptyList());
+            when(stringRedisTemplate.executePipelined(any(SessionCallback.class)))
+                    .thenReturn(Arrays.asList(true, false, true, true))
+                    .thenAnswer(inv -> {
+                        inv.<SessionCallback<Object>>getArgument(0).execute(operations);
+                        return Collections.emptyList();
+                    });
+
+            // When
+            int restored = seckillVoucherService.preheat();
+
+            // Then - 每个分片都用SETNX写回，分片0已存在的库存不会被覆盖
+            assertEquals(1, restored);
+            verify(valueOperations).setIfAbsent(ShardedStockCounter.stockKey(1L, 0), "50");
+            verify(valueOperations).setIfAbsent(ShardedStockCounter.stockKey(1L, 1), "50");
+            verify(valueOperations, never()).set(eq(ShardedStockCounter.stockKey(1L, 0)), anyString());
+            verify(cacheClient, never()).set(anyString(), any(), anyLong(), any());
+        }
+    }
+
+    private SeckillVoucher createVoucher(Long voucherId, int stock) {
+        SeckillVoucher voucher = new SeckillVoucher();
+        voucher.setVoucherId(voucherId);
+        voucher.setStock(stock);
+        voucher.setBeginTime(LocalDateTime.now().plusMinutes(10));
+        voucher.setEndTime(LocalDateTime.now().plusHours(1));
+        return voucher;
+    }
+
+    private VoucherOrder createOrder(Long voucherId, Long userId) {
+        VoucherOrder order = new VoucherOrder();
+        order.setVoucherId(voucherId);
+        order.setUserId(userId);
+        return order;
+    }
+}
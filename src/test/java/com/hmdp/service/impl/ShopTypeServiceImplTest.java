@@ -1,11 +1,10 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.json.JSONUtil;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
+import com.hmdp.service.IShopTypeService;
+import com.hmdp.utils.RedisCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -14,16 +13,15 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_KEY;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 /**
@@ -42,17 +40,12 @@ class ShopTypeServiceImplTest {
     private ShopTypeMapper shopTypeMapper;
 
     @Mock
-    private StringRedisTemplate stringRedisTemplate;
-
-    @Mock
-    private ValueOperations<String, String> valueOperations;
-
-    private static final String CACHE_SHOP_TYPE_KEY = "cache:shoptype:list";
+    private IShopTypeService proxyShopTypeService;
 
     @BeforeEach
     void setUp() {
-        // Mock Redis链式调用: stringRedisTemplate.opsForValue().xxx()
-        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        // 缓存由@RedisCache切面实现，这里直接注入自身代理的Mock
+        ReflectionTestUtils.setField(shopTypeService, "proxyShopTypeService", proxyShopTypeService);
     }
 
     @Nested
@@ -60,12 +53,11 @@ class ShopTypeServiceImplTest {
     class QueryTypeListTest {
 
         @Test
-        @DisplayName("缓存命中 - 直接返回Redis缓存数据")
-        void queryTypeList_WhenCacheHit_ShouldReturnCachedData() {
+        @DisplayName("存在店铺类型 - 通过自身代理查询，缓存注解生效")
+        void queryTypeList_WhenTypesExist_ShouldReturnTypes() {
             // Given - 准备数据
             List<ShopType> expectedList = createMockShopTypeList();
-            String cachedJson = JSONUtil.toJsonStr(expectedList);
-            when(valueOperations.get(CACHE_SHOP_TYPE_KEY)).thenReturn(cachedJson);
+            when(proxyShopTypeService.listTypes()).thenReturn(expectedList);
 
             // When - 执行调用
             Result result = shopTypeService.queryTypeList();
@@ -73,52 +65,23 @@ class ShopTypeServiceImplTest {
             // Then - 断言结果
             assertTrue(result.getSuccess(), "请求应该成功");
             assertNotNull(result.getData(), "返回数据不应为空");
-            
+
             @SuppressWarnings("unchecked")
             List<ShopType> actualList = (List<ShopType>) result.getData();
             assertEquals(2, actualList.size(), "应返回2条店铺类型");
             assertEquals("美食", actualList.get(0).getName(), "第一个类型应该是美食");
             assertEquals("娱乐", actualList.get(1).getName(), "第二个类型应该是娱乐");
 
-            // Verify - 验证从Redis读取，不应查询数据库
-            verify(valueOperations, times(1)).get(CACHE_SHOP_TYPE_KEY);
+            // Verify - 通过代理调用，不直接查询数据库
+            verify(proxyShopTypeService, times(1)).listTypes();
             verify(shopTypeMapper, never()).selectList(any());
         }
 
         @Test
-        @DisplayName("缓存未命中 - 从数据库查询并写入缓存")
-        void queryTypeList_WhenCacheMiss_ShouldQueryDbAndSetCache() {
-            // Given - 缓存未命中（返回null）
-            when(valueOperations.get(CACHE_SHOP_TYPE_KEY)).thenReturn(null);
-            
-            // 模拟数据库返回数据
-            List<ShopType> dbList = createMockShopTypeList();
-            when(shopTypeMapper.selectList(any())).thenReturn(dbList);
-
-            // When - 执行调用
-            Result result = shopTypeService.queryTypeList();
-
-            // Then - 断言结果
-            assertTrue(result.getSuccess(), "请求应该成功");
-            assertNotNull(result.getData(), "返回数据不应为空");
-            
-            @SuppressWarnings("unchecked")
-            List<ShopType> actualList = (List<ShopType>) result.getData();
-            assertEquals(2, actualList.size(), "应返回2条店铺类型");
-
-            // Verify - 验证写入缓存
-            verify(valueOperations, times(1)).get(CACHE_SHOP_TYPE_KEY);
-            verify(valueOperations, times(1)).set(eq(CACHE_SHOP_TYPE_KEY), anyString());
-        }
-
-        @Test
-        @DisplayName("缓存未命中且数据库为空 - 返回失败")
-        void queryTypeList_WhenCacheMissAndDbEmpty_ShouldReturnFail() {
-            // Given - 缓存未命中
-            when(valueOperations.get(CACHE_SHOP_TYPE_KEY)).thenReturn(null);
-            
-            // 数据库返回空列表
-            when(shopTypeMapper.selectList(any())).thenReturn(Collections.emptyList());
+        @DisplayName("店铺类型不存在 - 返回失败")
+        void queryTypeList_WhenTypesMissing_ShouldReturnFail() {
+            // Given - 缓存或数据库中没有数据
+            when(proxyShopTypeService.listTypes()).thenReturn(null);
 
             // When - 执行调用
             Result result = shopTypeService.queryTypeList();
@@ -127,27 +90,48 @@ class ShopTypeServiceImplTest {
             assertFalse(result.getSuccess(), "请求应该失败");
             assertEquals("店铺类型不存在", result.getErrorMsg(), "错误信息应匹配");
             assertNull(result.getData(), "失败时data应为null");
+        }
+    }
 
-            // Verify - 不应写入缓存
-            verify(valueOperations, never()).set(anyString(), anyString());
+    @Nested
+    @DisplayName("查询数据库 - listTypes")
+    class ListTypesTest {
+
+        @Test
+        @DisplayName("缓存注解 - 使用店铺类型的缓存key")
+        void listTypes_ShouldBeCached() throws NoSuchMethodException {
+            RedisCache redisCache = ShopTypeServiceImpl.class.getMethod("listTypes").getAnnotation(RedisCache.class);
+
+            assertNotNull(redisCache, "listTypes应该由@RedisCache缓存");
+            assertEquals(CACHE_SHOP_TYPE_KEY, redisCache.prefix());
         }
 
         @Test
-        @DisplayName("缓存为空字符串 - 应从数据库查询")
-        void queryTypeList_WhenCacheEmpty_ShouldQueryDb() {
-            // Given - 缓存返回空字符串（StrUtil.isNotBlank会返回false）
-            when(valueOperations.get(CACHE_SHOP_TYPE_KEY)).thenReturn("");
-            
-            List<ShopType> dbList = createMockShopTypeList();
-            when(shopTypeMapper.selectList(any())).thenReturn(dbList);
+        @DisplayName("数据库有数据 - 返回店铺类型列表")
+        void listTypes_WhenDbHasData_ShouldReturnList() {
+            // Given
+            when(shopTypeMapper.selectList(any())).thenReturn(createMockShopTypeList());
 
-            // When - 执行调用
-            Result result = shopTypeService.queryTypeList();
+            // When
+            List<ShopType> typeList = shopTypeService.listTypes();
 
-            // Then - 应该查询数据库
-            assertTrue(result.getSuccess(), "请求应该成功");
+            // Then
+            assertEquals(2, typeList.size(), "应返回2条店铺类型");
             verify(shopTypeMapper, times(1)).selectList(any());
         }
+
+        @Test
+        @DisplayName("数据库为空 - 返回null，由缓存空值处理")
+        void listTypes_WhenDbEmpty_ShouldReturnNull() {
+            // Given - 数据库返回空列表
+            when(shopTypeMapper.selectList(any())).thenReturn(Collections.emptyList());
+
+            // When
+            List<ShopType> typeList = shopTypeService.listTypes();
+
+            // Then
+            assertNull(typeList, "没有数据时应返回null");
+        }
     }
 
     /**
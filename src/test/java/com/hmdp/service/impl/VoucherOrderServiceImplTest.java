@@ -0,0 +1,612 @@
+package com.hmdp.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.extension.conditions.update.UpdateChainWrapper;
+import com.hmdp.dto.OrderStatusDTO;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.SeckillVoucher;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.mapper.SeckillVoucherMapper;
+import com.hmdp.mapper.VoucherOrderMapper;
+import com.hmdp.service.ISeckillVoucherService;
+import com.hmdp.service.IVoucherOrderService;
+import com.hmdp.utils.IdWorker;
+import com.hmdp.utils.OrderStatusStore;
+import com.hmdp.utils.SoldOutMarker;
+import com.hmdp.utils.StockLeaser;
+import com.hmdp.utils.StreamBacklogMonitor;
+import com.hmdp.utils.StreamDeadLetterQueue;
+import com.hmdp.utils.UserHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_GROUP;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * VoucherOrderServiceImpl 单元测试，覆盖订单消息按用户分发到订单通道以及落库失败的处理
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("秒杀订单消费测试")
+class VoucherOrderServiceImplTest {
+
+    @InjectMocks
+    private VoucherOrderServiceImpl voucherOrderService;
+
+    @Mock
+    private VoucherOrderMapper voucherOrderMapper;
+
+    @Mock
+    private IVoucherOrderService proxyVoucherOrderService;
+
+    @Mock
+    private OrderStatusStore orderStatusStore;
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private StreamOperations<String, Object, Object> streamOperations;
+
+    @Mock
+    private ISeckillVoucherService seckillVoucherService;
+
+    @Mock
+    private StreamBacklogMonitor backlogMonitor;
+
+    @Mock
+    private StockLeaser stockLeaser;
+
+    @Mock
+    private SoldOutMarker soldOutMarker;
+
+    @Mock
+    private IdWorker idWorker;
+
+    @Mock
+    private SeckillVoucherMapper seckillVoucherMapper;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(voucherOrderService, "baseMapper", voucherOrderMapper);
+        ReflectionTestUtils.setField(voucherOrderService, "proxyVoucherOrderService", proxyVoucherOrderService);
+        ReflectionTestUtils.setField(voucherOrderService, "laneCount", 4);
+        ReflectionTestUtils.setField(voucherOrderService, "laneCapacity", 16);
+        ReflectionTestUtils.setField(voucherOrderService, "batchSize", 10);
+        ReflectionTestUtils.setField(voucherOrderService, "laneTimeoutMillis", 5000L);
+        lenient().when(stringRedisTemplate.opsForStream()).thenReturn(streamOperations);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UserHolder.removeUser();
+        ReflectionTestUtils.setField(voucherOrderService, "running", false);
+        ExecutorService executor = (ExecutorService) ReflectionTestUtils.getField(voucherOrderService, "orderLaneExecutor");
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Nested
+    @DisplayName("按用户分发 - handleBatch")
+    class RoutingTest {
+
+        @Test
+        @DisplayName("同一用户的订单总是由同一个通道线程落库，全部成功后一次确认")
+        void handleBatch_SameUser_ShouldUseSameLane() {
+            // Given - 记录每个用户的订单在哪个线程落库
+            voucherOrderService.startLanes();
+            Map<Long, Set<String>> threads = new ConcurrentHashMap<>();
+            when(proxyVoucherOrderService.createVoucherOrders(anyList())).thenAnswer(inv -> {
+                List<VoucherOrder> orders = inv.getArgument(0);
+                for (VoucherOrder order : orders) {
+                    threads.computeIfAbsent(order.getUserId(), k -> ConcurrentHashMap.newKeySet())
+                            .add(Thread.currentThread().getName());
+                }
+                return orders;
+            });
+            List<MapRecord<String, Object, Object>> records = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                records.add(createRecord(i + 1, 100L + i % 2, 1L));
+            }
+
+            // When
+            voucherOrderService.handleBatch(records);
+
+            // Then
+            assertSame(voucherOrderService.laneOf(100L), voucherOrderService.laneOf(100L));
+            assertEquals(1, threads.get(100L).size());
+            assertEquals(1, threads.get(101L).size());
+            assertNotEquals(threads.get(100L), threads.get(101L));
+            ArgumentCaptor<RecordId> acked = ArgumentCaptor.forClass(RecordId.class);
+            verify(streamOperations).acknowledge(eq(SECKILL_ORDER_STREAM), eq(SECKILL_ORDER_GROUP), acked.capture());
+            assertEquals(6, acked.getAllValues().size());
+        }
+    }
+
+    @Nested
+    @DisplayName("落库失败 - handleBatch")
+    class FailureTest {
+
+        @Test
+        @DisplayName("唯一索引冲突且查询订单失败 - 不阻塞，消息不确认并标记重试")
+        void handleBatch_DuplicateAndLookupFails_ShouldLeavePending() {
+            // Given
+            voucherOrderService.startLanes();
+            when(proxyVoucherOrderService.createVoucherOrders(anyList()))
+                    .thenThrow(new DuplicateKeyException("duplicate"))
+                    .thenAnswer(inv -> inv.getArgument(0));
+            when(voucherOrderMapper.selectById(1L)).thenThrow(new QueryTimeoutException("timeout"));
+
+            // When
+            voucherOrderService.handleBatch(Collections.singletonList(createRecord(1L, 100L, 1L)));
+
+            // Then
+            verify(streamOperations, never()).acknowledge(anyString(), anyString(), any(RecordId.class));
+            verify(orderStatusStore).mark(eq(1L), eq(100L), eq(1L), eq(OrderStatusDTO.RETRYING), anyString());
+
+            // 通道仍然可用
+            voucherOrderService.handleBatch(Collections.singletonList(createRecord(2L, 100L, 1L)));
+            verify(streamOperations).acknowledge(eq(SECKILL_ORDER_STREAM), eq(SECKILL_ORDER_GROUP), any(RecordId.class));
+        }
+
+        @Test
+        @DisplayName("落库时抛出Error - 等待的消费者收到失败，通道线程不退出")
+        void handleBatch_Error_ShouldCompleteAndKeepLane() {
+            // Given
+            voucherOrderService.startLanes();
+            when(proxyVoucherOrderService.createVoucherOrders(anyList()))
+                    .thenThrow(new NoClassDefFoundError("mapper"))
+                    .thenAnswer(inv -> inv.getArgument(0));
+
+            // When
+            voucherOrderService.handleBatch(Collections.singletonList(createRecord(1L, 100L, 1L)));
+
+            // Then
+            verify(streamOperations, never()).acknowledge(anyString(), anyString(), any(RecordId.class));
+            verify(orderStatusStore).mark(eq(1L), eq(100L), eq(1L), eq(OrderStatusDTO.RETRYING), contains("NoClassDefFoundError"));
+
+            voucherOrderService.handleBatch(Collections.singletonList(createRecord(2L, 100L, 1L)));
+            verify(streamOperations).acknowledge(eq(SECKILL_ORDER_STREAM), eq(SECKILL_ORDER_GROUP), any(RecordId.class));
+        }
+
+        @Test
+        @DisplayName("落库超时 - 消息不确认，留在pending-list中重试")
+        void handleBatch_Timeout_ShouldLeavePending() throws InterruptedException {
+            // Given - 落库阻塞直到测试结束
+            ReflectionTestUtils.setField(voucherOrderService, "laneTimeoutMillis", 200L);
+            voucherOrderService.startLanes();
+            CountDownLatch release = new CountDownLatch(1);
+            when(proxyVoucherOrderService.createVoucherOrders(anyList())).thenAnswer(inv -> {
+                release.await(5, TimeUnit.SECONDS);
+                return inv.getArgument(0);
+            });
+
+            // When
+            long start = System.currentTimeMillis();
+            voucherOrderService.handleBatch(Collections.singletonList(createRecord(1L, 100L, 1L)));
+            long elapsed = System.currentTimeMillis() - start;
+            release.countDown();
+
+            // Then
+            assertTrue(elapsed < 2000);
+            verify(streamOperations, never()).acknowledge(anyString(), anyString(), any(RecordId.class));
+            verify(orderStatusStore).mark(eq(1L), eq(100L), eq(1L), eq(OrderStatusDTO.RETRYING), eq("等待订单落库超时"));
+        }
+    }
+
+    @Nested
+    @DisplayName("订单通道批量落库 - OrderLane")
+    class LaneBatchTest {
+
+        @Test
+        @DisplayName("通道中排队的订单合并到一个事务中落库")
+        void run_QueuedOrders_ShouldSaveInOneBatch() throws Exception {
+            // Given - 通道线程启动前已有3个订单排队
+            VoucherOrderServiceImpl.OrderLane lane = voucherOrderService.new OrderLane();
+            when(proxyVoucherOrderService.createVoucherOrders(anyList())).thenAnswer(inv -> inv.getArgument(0));
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (long i = 1; i <= 3; i++) {
+                futures.add(lane.submit(createOrder(i, 100L + i, 1L)));
+            }
+
+            // When
+            startLane(lane);
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+            // Then - 一次调用落库全部订单
+            ArgumentCaptor<List<VoucherOrder>> batch = ArgumentCaptor.forClass(List.class);
+            verify(proxyVoucherOrderService).createVoucherOrders(batch.capture());
+            assertEquals(3, batch.getValue().size());
+            verify(orderStatusStore).markSuccess(batch.getValue());
+        }
+
+        @Test
+        @DisplayName("整批落库失败 - 逐个重新落库，重复下单的订单标记失败，其余订单成功")
+        void run_BatchFails_ShouldRetryOneByOne() throws Exception {
+            // Given - 订单2的用户已经购买过，整批事务被唯一索引回滚
+            VoucherOrderServiceImpl.OrderLane lane = voucherOrderService.new OrderLane();
+            when(proxyVoucherOrderService.createVoucherOrders(anyList())).thenAnswer(inv -> {
+                List<VoucherOrder> orders = inv.getArgument(0);
+                if (orders.size() > 1 || orders.get(0).getId() == 2L) {
+                    throw new DuplicateKeyException("uk_user_voucher");
+                }
+                return orders;
+            });
+            when(voucherOrderMapper.selectById(2L)).thenReturn(null);
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (long i = 1; i <= 3; i++) {
+                futures.add(lane.submit(createOrder(i, 100L + i, 1L)));
+            }
+
+            // When
+            startLane(lane);
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+
+            // Then - 1次整批 + 3次逐个，所有订单都已完成，消息可以确认
+            verify(proxyVoucherOrderService, times(4)).createVoucherOrders(anyList());
+            verify(orderStatusStore).mark(2L, 102L, 1L, OrderStatusDTO.FAILED, "不能重复下单！");
+            verify(orderStatusStore, times(2)).markSuccess(argThat(orders -> orders.size() == 1 && orders.iterator().next().getId() != 2L));
+        }
+
+        private void startLane(VoucherOrderServiceImpl.OrderLane lane) {
+            Thread thread = new Thread(lane, "seckill-lane-test");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Nested
+    @DisplayName("批量创建订单 - createVoucherOrders")
+    class CreateVoucherOrdersTest {
+
+        @BeforeEach
+        void setUp() {
+            // 每次update()返回新的链式更新，在Mock的SeckillVoucherMapper上执行
+            lenient().when(seckillVoucherService.update()).thenAnswer(inv -> new UpdateChainWrapper<>(seckillVoucherMapper));
+        }
+
+        @Test
+        @DisplayName("批内同一用户重复下单 - 只保存一次，按去重后的数量聚合扣减库存")
+        void createVoucherOrders_DuplicateInBatch_ShouldDedupAndDeductOnce() {
+            // Given - 用户100在批内下了两次单
+            when(seckillVoucherMapper.update(isNull(), any())).thenReturn(1);
+            List<VoucherOrder> orders = Arrays.asList(
+                    createOrder(1L, 100L, 1L), createOrder(2L, 100L, 1L), createOrder(3L, 101L, 1L));
+
+            // When
+            List<VoucherOrder> saved = voucherOrderService.createVoucherOrders(orders);
+
+            // Then - 一条UPDATE扣减2个库存，一条多行INSERT保存2个订单
+            assertEquals(Arrays.asList(1L, 3L), ids(saved));
+            assertEquals(Collections.singletonList("stock = stock - 2"), sqlSets());
+            verify(voucherOrderMapper).insertBatch(saved);
+        }
+
+        @Test
+        @DisplayName("批内包含多种优惠券 - 每种优惠券执行一次聚合扣减")
+        void createVoucherOrders_MultipleVouchers_ShouldDeductPerVoucher() {
+            // Given
+            when(seckillVoucherMapper.update(isNull(), any())).thenReturn(1);
+            List<VoucherOrder> orders = Arrays.asList(
+                    createOrder(1L, 100L, 1L), createOrder(2L, 101L, 2L), createOrder(3L, 102L, 1L));
+
+            // When
+            List<VoucherOrder> saved = voucherOrderService.createVoucherOrders(orders);
+
+            // Then
+            assertEquals(3, saved.size());
+            assertEquals(Arrays.asList("stock = stock - 2", "stock = stock - 1"), sqlSets());
+            verify(voucherOrderMapper).insertBatch(anyList());
+        }
+
+        @Test
+        @DisplayName("数据库库存不足以满足整批 - 只保存剩余库存数量的订单")
+        void createVoucherOrders_NotEnoughStock_ShouldKeepPartOfBatch() {
+            // Given - 整批扣减3个失败，数据库只剩1个库存
+            when(seckillVoucherMapper.update(isNull(), any())).thenReturn(0, 1);
+            SeckillVoucher voucher = createVoucher(1L);
+            voucher.setStock(1);
+            when(seckillVoucherService.getById(1L)).thenReturn(voucher);
+            List<VoucherOrder> orders = Arrays.asList(
+                    createOrder(1L, 100L, 1L), createOrder(2L, 101L, 1L), createOrder(3L, 102L, 1L));
+
+            // When
+            List<VoucherOrder> saved = voucherOrderService.createVoucherOrders(orders);
+
+            // Then
+            assertEquals(Collections.singletonList(1L), ids(saved));
+            assertEquals(Arrays.asList("stock = stock - 3", "stock = stock - 1"), sqlSets());
+        }
+
+        @Test
+        @DisplayName("数据库没有库存 - 不保存订单")
+        void createVoucherOrders_NoStock_ShouldSaveNothing() {
+            // Given
+            when(seckillVoucherMapper.update(isNull(), any())).thenReturn(0);
+            SeckillVoucher voucher = createVoucher(1L);
+            voucher.setStock(0);
+            when(seckillVoucherService.getById(1L)).thenReturn(voucher);
+
+            // When
+            List<VoucherOrder> saved = voucherOrderService.createVoucherOrders(
+                    Collections.singletonList(createOrder(1L, 100L, 1L)));
+
+            // Then
+            assertTrue(saved.isEmpty());
+            verify(voucherOrderMapper, never()).insertBatch(anyList());
+        }
+
+        private List<String> sqlSets() {
+            ArgumentCaptor<Wrapper<SeckillVoucher>> wrappers = ArgumentCaptor.forClass(Wrapper.class);
+            verify(seckillVoucherMapper, atLeastOnce()).update(isNull(), wrappers.capture());
+            List<String> sqlSets = new ArrayList<>();
+            for (Wrapper<SeckillVoucher> wrapper : wrappers.getAllValues()) {
+                sqlSets.add(wrapper.getSqlSet());
+            }
+            return sqlSets;
+        }
+
+        private List<Long> ids(List<VoucherOrder> orders) {
+            List<Long> ids = new ArrayList<>();
+            for (VoucherOrder order : orders) {
+                ids.add(order.getId());
+            }
+            return ids;
+        }
+    }
+
+    @Nested
+    @DisplayName("重试pending消息 - retryPendingMessages")
+    class RetryTest {
+
+        private final Consumer consumer = Consumer.from(SECKILL_ORDER_GROUP, "c1");
+
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(voucherOrderService, "maxAttempts", 5);
+            ReflectionTestUtils.setField(voucherOrderService, "retryBackoffMillis", 1000L);
+            ReflectionTestUtils.setField(voucherOrderService, "retryBackoffMaxMillis", 16000L);
+            ReflectionTestUtils.setField(voucherOrderService, "deadLetterQueue", new StreamDeadLetterQueue(stringRedisTemplate));
+        }
+
+        @Test
+        @DisplayName("退避时间按投递次数指数增长，不超过上限")
+        void backoffMillis_ShouldGrowExponentiallyUpToMax() {
+            assertEquals(1000L, voucherOrderService.backoffMillis(1));
+            assertEquals(2000L, voucherOrderService.backoffMillis(2));
+            assertEquals(8000L, voucherOrderService.backoffMillis(4));
+            assertEquals(16000L, voucherOrderService.backoffMillis(5));
+            assertEquals(16000L, voucherOrderService.backoffMillis(100));
+        }
+
+        @Test
+        @DisplayName("按XPENDING中的投递次数判断退避 - 只重新投递退避时间已到的消息")
+        void retryPendingMessages_ShouldClaimOnlyDueMessages() {
+            // Given - 消息1投递2次、空闲3秒(退避2秒)，消息2投递3次、空闲3秒(退避4秒)
+            RecordId due = RecordId.of(1L, 0);
+            RecordId waiting = RecordId.of(2L, 0);
+            when(streamOperations.pending(eq(SECKILL_ORDER_STREAM), eq(consumer), any(), eq(10L)))
+                    .thenReturn(pendingOf(pendingMessage(due, 3000, 2), pendingMessage(waiting, 3000, 3)));
+            // 原消息已被删除，XCLAIM不返回
+            when(streamOperations.claim(eq(SECKILL_ORDER_STREAM), eq(SECKILL_ORDER_GROUP), eq("c1"), any(XClaimOptions.class)))
+                    .thenReturn(Collections.emptyList());
+
+            // When
+            voucherOrderService.new VoucherOrderHandler(consumer).retryPendingMessages();
+
+            // Then - 只认领消息1，认领不到的消息直接确认
+            ArgumentCaptor<XClaimOptions> options = ArgumentCaptor.forClass(XClaimOptions.class);
+            verify(streamOperations).claim(eq(SECKILL_ORDER_STREAM), eq(SECKILL_ORDER_GROUP), eq("c1"), options.capture());
+            assertEquals(Collections.singletonList(due), options.getValue().getIds());
+            verify(streamOperations).acknowledge(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP, due);
+            verifyNoInteractions(orderStatusStore);
+        }
+
+        @Test
+        @DisplayName("超过最大投递次数 - 转移到死信队列，原因取自订单状态中记录的失败原因")
+        void retryPendingMessages_WhenMaxAttempts_ShouldMoveToDeadLetterWithReason() {
+            // Given - 消息已投递5次，最近一次落库失败的原因记录在订单状态中
+            RecordId id = RecordId.of(1L, 0);
+            when(streamOperations.pending(eq(SECKILL_ORDER_STREAM), eq(consumer), any(), eq(10L)))
+                    .thenReturn(pendingOf(pendingMessage(id, 0, 5)));
+            when(streamOperations.range(eq(SECKILL_ORDER_STREAM), any()))
+                    .thenReturn(Collections.singletonList(createRecord(1L, 100L, 2L)));
+            when(orderStatusStore.getReason(1L)).thenReturn("等待订单落库超时");
+
+            // When
+            voucherOrderService.new VoucherOrderHandler(consumer).retryPendingMessages();
+
+            // Then - 死信消息带上原因和投递次数，原消息被确认，订单标记为失败
+            ArgumentCaptor<MapRecord<String, String, String>> dead = ArgumentCaptor.forClass(MapRecord.class);
+            verify(streamOperations).add(dead.capture());
+            assertEquals(SECKILL_ORDER_STREAM + StreamDeadLetterQueue.DLQ_SUFFIX, dead.getValue().getStream());
+            assertEquals("等待订单落库超时", dead.getValue().getValue().get(StreamDeadLetterQueue.FIELD_REASON));
+            assertEquals("5", dead.getValue().getValue().get(StreamDeadLetterQueue.FIELD_ATTEMPTS));
+            verify(streamOperations).acknowledge(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP, id);
+            verify(orderStatusStore).mark(1L, 100L, 2L, OrderStatusDTO.FAILED, "等待订单落库超时");
+            verify(streamOperations, never()).claim(anyString(), anyString(), anyString(), any(XClaimOptions.class));
+        }
+
+        @Test
+        @DisplayName("超过最大投递次数且没有记录失败原因 - 使用默认原因")
+        void retryPendingMessages_WhenNoReasonRecorded_ShouldUseDefaultReason() {
+            // Given - 订单状态已过期
+            RecordId id = RecordId.of(1L, 0);
+            when(streamOperations.pending(eq(SECKILL_ORDER_STREAM), eq(consumer), any(), eq(10L)))
+                    .thenReturn(pendingOf(pendingMessage(id, 0, 6)));
+            when(streamOperations.range(eq(SECKILL_ORDER_STREAM), any()))
+                    .thenReturn(Collections.singletonList(createRecord(1L, 100L, 2L)));
+            when(orderStatusStore.getReason(1L)).thenReturn(null);
+
+            // When
+            voucherOrderService.new VoucherOrderHandler(consumer).retryPendingMessages();
+
+            // Then
+            verify(orderStatusStore).mark(1L, 100L, 2L, OrderStatusDTO.FAILED, "超过最大投递次数");
+        }
+
+        private PendingMessage pendingMessage(RecordId id, long idleMillis, long deliveryCount) {
+            return new PendingMessage(id, consumer, Duration.ofMillis(idleMillis), deliveryCount);
+        }
+
+        private PendingMessages pendingOf(PendingMessage... messages) {
+            return new PendingMessages(SECKILL_ORDER_GROUP, Arrays.asList(messages));
+        }
+    }
+
+    @Nested
+    @DisplayName("秒杀下单 - seckillVoucher")
+    class SeckillVoucherTest {
+
+        @Test
+        @DisplayName("已从租约扣减库存后生成订单id失败 - 归还库存")
+        void seckillVoucher_WhenIdWorkerFails_ShouldGiveBackLeasedStock() {
+            // Given - 秒杀进行中，本地租约还有库存
+            when(seckillVoucherService.queryCached(1L)).thenReturn(createVoucher(1L));
+            when(stockLeaser.isEnabled()).thenReturn(true);
+            when(stockLeaser.takeLocal(1L)).thenReturn(true);
+            when(idWorker.nextId("order")).thenThrow(new IllegalStateException("worker id lease lost"));
+            UserHolder.saveUser(createUser(100L));
+
+            // When & Then
+            assertThrows(IllegalStateException.class, () -> voucherOrderService.seckillVoucher(1L));
+            verify(stockLeaser).giveBack(1L);
+        }
+
+        @Test
+        @DisplayName("秒杀未开始或已结束 - 直接拒绝，不扣减库存也不执行Lua脚本")
+        void seckillVoucher_OutsideWindow_ShouldRejectBeforeRedis() {
+            // Given - 秒杀券1还没有开始，秒杀券2已经结束
+            SeckillVoucher notStarted = createVoucher(1L);
+            notStarted.setBeginTime(LocalDateTime.now().plusMinutes(5));
+            SeckillVoucher ended = createVoucher(2L);
+            ended.setEndTime(LocalDateTime.now().minusMinutes(5));
+            when(seckillVoucherService.queryCached(1L)).thenReturn(notStarted);
+            when(seckillVoucherService.queryCached(2L)).thenReturn(ended);
+
+            // When
+            Result notStartedResult = voucherOrderService.seckillVoucher(1L);
+            Result endedResult = voucherOrderService.seckillVoucher(2L);
+
+            // Then
+            assertEquals("秒杀尚未开始！", notStartedResult.getErrorMsg());
+            assertEquals("秒杀已经结束！", endedResult.getErrorMsg());
+            verifyNoInteractions(stringRedisTemplate, stockLeaser, idWorker);
+        }
+    }
+
+    @Nested
+    @DisplayName("查询订单状态 - queryOrderStatus")
+    class QueryOrderStatusTest {
+
+        @Test
+        @DisplayName("没有状态记录且订单未落库 - 返回订单不存在，而不是一直处理中")
+        void queryOrderStatus_WhenNoRecordAndNoOrder_ShouldFail() {
+            // Given
+            UserHolder.saveUser(createUser(100L));
+            when(orderStatusStore.get(1L, 100L)).thenReturn(null);
+            when(voucherOrderMapper.selectById(1L)).thenReturn(null);
+
+            // When
+            Result result = voucherOrderService.queryOrderStatus(1L);
+
+            // Then
+            assertFalse(result.getSuccess());
+            assertEquals("订单不存在！", result.getErrorMsg());
+        }
+
+        @Test
+        @DisplayName("状态记录已过期但订单已落库 - 返回成功")
+        void queryOrderStatus_WhenRecordExpiredAndOrderSaved_ShouldReturnSuccess() {
+            // Given
+            UserHolder.saveUser(createUser(100L));
+            VoucherOrder order = new VoucherOrder();
+            order.setId(1L);
+            order.setUserId(100L);
+            order.setVoucherId(2L);
+            when(orderStatusStore.get(1L, 100L)).thenReturn(null);
+            when(voucherOrderMapper.selectById(1L)).thenReturn(order);
+
+            // When
+            Result result = voucherOrderService.queryOrderStatus(1L);
+
+            // Then
+            assertTrue(result.getSuccess());
+            assertEquals(OrderStatusDTO.SUCCESS, ((OrderStatusDTO) result.getData()).getStatus());
+        }
+    }
+
+    private SeckillVoucher createVoucher(Long voucherId) {
+        SeckillVoucher voucher = new SeckillVoucher();
+        voucher.setVoucherId(voucherId);
+        voucher.setStock(100);
+        voucher.setBeginTime(LocalDateTime.now().minusHours(1));
+        voucher.setEndTime(LocalDateTime.now().plusHours(1));
+        return voucher;
+    }
+
+    private UserDTO createUser(Long userId) {
+        UserDTO user = new UserDTO();
+        user.setId(userId);
+        return user;
+    }
+
+    private VoucherOrder createOrder(long orderId, long userId, long voucherId) {
+        VoucherOrder order = new VoucherOrder();
+        order.setId(orderId);
+        order.setUserId(userId);
+        order.setVoucherId(voucherId);
+        return order;
+    }
+
+    private MapRecord<String, Object, Object> createRecord(long orderId, long userId, long voucherId) {
+        Map<Object, Object> values = new HashMap<>();
+        values.put("id", String.valueOf(orderId));
+        values.put("userId", String.valueOf(userId));
+        values.put("voucherId", String.valueOf(voucherId));
+        return StreamRecords.newRecord()
+                .in(SECKILL_ORDER_STREAM)
+                .withId(RecordId.of(orderId, 0))
+                .ofMap(values);
+    }
+}
@@ -0,0 +1,76 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AdminInterceptor 单元测试
+ */
+@DisplayName("运维接口权限拦截器测试")
+class AdminInterceptorTest {
+
+    @AfterEach
+    void tearDown() {
+        UserHolder.removeUser();
+    }
+
+    @Test
+    @DisplayName("管理员 - 放行")
+    void preHandle_WhenAdmin_ShouldPass() {
+        // Given
+        AdminInterceptor interceptor = new AdminInterceptor(Arrays.asList(1L, 2L));
+        UserHolder.saveUser(createUser(2L));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When & Then
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest("PUT", "/admin/cache/policy"), response, null));
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    @DisplayName("普通用户 - 返回403")
+    void preHandle_WhenNotAdmin_ShouldReject() {
+        // Given
+        AdminInterceptor interceptor = new AdminInterceptor(Collections.singletonList(1L));
+        UserHolder.saveUser(createUser(1010L));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When & Then
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest("POST", "/admin/seckill/dlq/1-0/replay"), response, null));
+        assertEquals(403, response.getStatus());
+    }
+
+    @Test
+    @DisplayName("未配置管理员或未登录 - 全部拒绝")
+    void preHandle_WhenNoAdminsOrNoUser_ShouldReject() {
+        // Given
+        MockHttpServletResponse anonymous = new MockHttpServletResponse();
+        MockHttpServletResponse user = new MockHttpServletResponse();
+
+        // When & Then - 未登录
+        assertFalse(new AdminInterceptor(Collections.singletonList(1L))
+                .preHandle(new MockHttpServletRequest("GET", "/admin/lock/stats"), anonymous, null));
+        assertEquals(401, anonymous.getStatus());
+
+        // 未配置管理员
+        UserHolder.saveUser(createUser(1L));
+        assertFalse(new AdminInterceptor(null)
+                .preHandle(new MockHttpServletRequest("GET", "/admin/lock/stats"), user, null));
+        assertEquals(403, user.getStatus());
+    }
+
+    private UserDTO createUser(Long id) {
+        UserDTO user = new UserDTO();
+        user.setId(id);
+        return user;
+    }
+}
@@ -0,0 +1,156 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.TypeReference;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.entity.Shop;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CacheCodec 单元测试
+ */
+@DisplayName("缓存编解码器测试")
+class CacheCodecTest {
+
+    private final List<CacheCodec> codecs = Arrays.asList(new HutoolJsonCodec(), new JacksonCodec(), new KryoCodec());
+
+    @Test
+    @DisplayName("普通数据 - 编码后解码得到相同对象")
+    void decode_AfterEncode_ShouldReturnEqualObject() {
+        // Given
+        Shop shop = newShop();
+
+        for (CacheCodec codec : codecs) {
+            // When
+            Shop decoded = codec.decode(codec.encode(shop), Shop.class);
+
+            // Then
+            assertEquals(shop, decoded, codec.name());
+        }
+    }
+
+    @Test
+    @DisplayName("逻辑过期数据 - 一次解码得到过期时间和目标类型的数据")
+    void decodeLogical_AfterEncode_ShouldReturnTypedData() {
+        // Given
+        UserDTO user = new UserDTO();
+        user.setId(1L);
+        user.setNickName("user_1");
+        user.setIcon("/imgs/icons/1.jpg");
+        RedisData redisData = new RedisData();
+        redisData.setData(user);
+        redisData.setExpireTime(LocalDateTime.of(2030, 1, 1, 12, 0, 0, 123_000_000));
+        redisData.setDelta(35);
+
+        for (CacheCodec codec : codecs) {
+            // When
+            RedisData decoded = codec.decodeLogical(codec.encodeLogical(redisData), UserDTO.class);
+
+            // Then
+            assertEquals(redisData.getExpireTime(), decoded.getExpireTime(), codec.name());
+            assertEquals(35, decoded.getDelta(), codec.name());
+            assertEquals(user, decoded.getData(), codec.name());
+        }
+    }
+
+    @Test
+    @DisplayName("二进制编码 - 比JSON更紧凑")
+    void encode_Kryo_ShouldBeSmallerThanJson() {
+        Shop shop = newShop();
+
+        int jsonSize = new HutoolJsonCodec().encode(shop).length;
+        int kryoSize = new KryoCodec().encode(shop).length;
+
+        assertTrue(kryoSize < jsonSize, "kryo: " + kryoSize + ", json: " + jsonSize);
+    }
+
+    @Test
+    @DisplayName("二进制编码 - 类型不一致时解码失败")
+    void decode_Kryo_WhenTypeMismatch_ShouldThrow() {
+        KryoCodec codec = new KryoCodec();
+        byte[] bytes = codec.encode(newShop());
+
+        assertThrows(IllegalStateException.class, () -> codec.decode(bytes, UserDTO.class));
+    }
+
+    @Test
+    @DisplayName("按前缀选择编解码器 - 最长前缀优先，未配置的使用默认编解码器")
+    void codecFor_ShouldMatchLongestPrefix() {
+        // Given
+        CacheCodecRegistry registry = new CacheCodecRegistry("json", "cache:=jackson, cache:shop:=kryo");
+
+        // Then
+        assertEquals(KryoCodec.NAME, registry.codecFor("cache:shop:1").name());
+        assertEquals(JacksonCodec.NAME, registry.codecFor("cache:user:1").name());
+        assertEquals(HutoolJsonCodec.NAME, registry.codecFor("blog:liked:1").name());
+    }
+
+    @Test
+    @DisplayName("未知的编解码器名称 - 启动时报错")
+    void constructor_WhenUnknownCodec_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> new CacheCodecRegistry("json", "cache:shop:=protobuf"));
+    }
+
+    @Test
+    @DisplayName("注解绑定编解码器 - 新前缀生效，已配置的前缀保持配置")
+    void bind_ShouldNotOverrideConfiguredPrefix() {
+        // Given
+        CacheCodecRegistry registry = new CacheCodecRegistry("json", "cache:shop:=kryo");
+
+        // When
+        registry.bind("cache:blog:", JacksonCodec.NAME);
+        CacheCodec shopCodec = registry.bind("cache:shop:", JacksonCodec.NAME);
+
+        // Then
+        assertEquals(JacksonCodec.NAME, registry.codecFor("cache:blog:1").name());
+        assertEquals(KryoCodec.NAME, shopCodec.name());
+        assertEquals(KryoCodec.NAME, registry.codecFor("cache:shop:1").name());
+    }
+
+    @Test
+    @DisplayName("JSON编码集合 - 按泛型类型解码出元素类型")
+    void decode_WithGenericType_ShouldConvertElements() {
+        // Given
+        Type type = new TypeReference<List<Shop>>() {}.getType();
+        List<Shop> shops = Arrays.asList(newShop(), newShop().setId(2L));
+
+        for (CacheCodec codec : Arrays.asList(new HutoolJsonCodec(), new JacksonCodec())) {
+            // When
+            List<Shop> plain = codec.decode(codec.encode(shops), type);
+            RedisData redisData = new RedisData();
+            redisData.setData(shops);
+            redisData.setExpireTime(LocalDateTime.now().plusMinutes(5));
+            Object logical = codec.decodeLogical(codec.encodeLogical(redisData), type).getData();
+
+            // Then
+            assertEquals(shops, plain, codec.name());
+            assertEquals(shops, logical, codec.name());
+        }
+    }
+
+    static Shop newShop() {
+        return new Shop()
+                .setId(1L)
+                .setName("103茶餐厅")
+                .setTypeId(1L)
+                .setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg")
+                .setArea("大关")
+                .setAddress("金华路锦昌文华苑29号")
+                .setX(120.149192)
+                .setY(30.316078)
+                .setAvgPrice(80L)
+                .setSold(4215)
+                .setComments(3035)
+                .setScore(37)
+                .setOpenHours("10:00-22:00")
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39))
+                .setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+    }
+}
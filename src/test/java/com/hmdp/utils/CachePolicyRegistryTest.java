@@ -0,0 +1,95 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CachePolicy / CachePolicyRegistry 单元测试
+ */
+@DisplayName("缓存过期策略测试")
+class CachePolicyRegistryTest {
+
+    @Test
+    @DisplayName("随机抖动 - TTL在基础TTL上下浮动")
+    void apply_ShouldJitterWithinRange() {
+        CachePolicy policy = new CachePolicy(0.2, CachePolicy.UNSET, CachePolicy.UNSET, CachePolicy.UNSET);
+
+        assertEquals(800, policy.apply(1000, 0));
+        assertEquals(1000, policy.apply(1000, 0.5));
+        assertEquals(1200, policy.apply(1000, 1));
+    }
+
+    @Test
+    @DisplayName("上下限与固定TTL - 固定TTL覆盖调用方的TTL，结果限制在上下限之间")
+    void apply_ShouldRespectBoundsAndFixedTtl() {
+        CachePolicy bounded = new CachePolicy(0.5, 900, 1100, CachePolicy.UNSET);
+        CachePolicy fixed = new CachePolicy(0, CachePolicy.UNSET, CachePolicy.UNSET, 5000);
+
+        assertEquals(900, bounded.apply(1000, 0));
+        assertEquals(1100, bounded.apply(1000, 0.99));
+        assertEquals(5000, fixed.apply(1000, 0.3));
+    }
+
+    @Test
+    @DisplayName("按前缀匹配 - 使用最长前缀的策略，运行时覆盖优先")
+    void ttlMillis_ShouldUseLongestPrefixAndOverride() {
+        // Given
+        CachePolicyRegistry registry = new CachePolicyRegistry(0, "cache:=0//;cache:shop:=0/100/");
+
+        // Then - cache:shop: 的下限为100秒
+        assertEquals(TimeUnit.SECONDS.toMillis(100), registry.ttlMillis("cache:shop:1", 20, TimeUnit.SECONDS));
+        assertEquals(TimeUnit.SECONDS.toMillis(20), registry.ttlMillis("cache:user:1", 20, TimeUnit.SECONDS));
+
+        // When - 运行时覆盖为固定30秒
+        registry.override("cache:shop:", new CachePolicy(0, CachePolicy.UNSET, CachePolicy.UNSET, 30_000));
+
+        // Then
+        assertEquals(30_000, registry.ttlMillis("cache:shop:1", 20, TimeUnit.SECONDS));
+
+        // When - 取消覆盖
+        registry.clearOverride("cache:shop:");
+
+        // Then
+        assertEquals(TimeUnit.SECONDS.toMillis(100), registry.ttlMillis("cache:shop:1", 20, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("过期时间分布 - 开启抖动后同一批写入的key分散到多个时间桶")
+    @SuppressWarnings("unchecked")
+    void expiryDistribution_WithJitter_ShouldSpreadExpiry() {
+        // Given
+        CachePolicyRegistry registry = new CachePolicyRegistry(0, "cache:shop:=0.2//");
+
+        // When - 同一时刻写入1000个key，TTL为30分钟
+        for (int i = 0; i < 1000; i++) {
+            registry.ttlMillis("cache:shop:" + i, 30, TimeUnit.MINUTES);
+        }
+
+        // Then - 分布在约20个桶中(±20%，桶宽为TTL的1/50)，峰值远小于总数
+        Map<String, Object> distribution = (Map<String, Object>) registry.expiryDistribution().get("cache:shop:");
+        assertEquals(1000L, distribution.get("total"));
+        assertTrue(((List<?>) distribution.get("buckets")).size() >= 15);
+        assertTrue((double) distribution.get("peakToMean") < 2);
+    }
+
+    @Test
+    @DisplayName("续期 - 使用同样的策略，但不记录到过期时间分布")
+    void renewalTtlMillis_ShouldNotRecordDistribution() {
+        // Given
+        CachePolicyRegistry registry = new CachePolicyRegistry(0, "login:token:=0/100/");
+
+        // When - 每次请求都续期
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(TimeUnit.SECONDS.toMillis(100), registry.renewalTtlMillis("login:token:abc", 20, TimeUnit.SECONDS));
+        }
+
+        // Then
+        assertFalse(registry.expiryDistribution().containsKey("login:token:"));
+    }
+}
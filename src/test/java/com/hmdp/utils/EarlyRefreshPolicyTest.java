@@ -0,0 +1,76 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * EarlyRefreshPolicy 单元测试
+ */
+@DisplayName("概率提前刷新策略测试")
+class EarlyRefreshPolicyTest {
+
+    @Test
+    @DisplayName("已过期 - 总是刷新")
+    void shouldRefresh_WhenExpired_ShouldReturnTrue() {
+        EarlyRefreshPolicy policy = new EarlyRefreshPolicy(1.0, 0);
+
+        assertTrue(policy.shouldRefresh(0, 10, 0.99));
+        assertTrue(policy.shouldRefresh(-100, 10, 0.99));
+    }
+
+    @Test
+    @DisplayName("beta为0 - 过期前不会提前刷新")
+    void shouldRefresh_WhenBetaZero_ShouldNotRefreshEarly() {
+        EarlyRefreshPolicy policy = new EarlyRefreshPolicy(0, 500);
+
+        assertFalse(policy.shouldRefresh(1, 10_000, 0.000001));
+    }
+
+    @Test
+    @DisplayName("越接近过期 - 提前刷新的概率越大")
+    void shouldRefresh_ProbabilityShouldIncreaseNearExpiry() {
+        // Given - 重建耗时1秒
+        EarlyRefreshPolicy policy = new EarlyRefreshPolicy(1.0, 0);
+        Random random = new Random(42);
+        int samples = 100_000;
+        int far = 0;
+        int near = 0;
+
+        // When - 分别统计剩余3秒和剩余0.1秒时的刷新比例
+        for (int i = 0; i < samples; i++) {
+            double r = random.nextDouble();
+            if (policy.shouldRefresh(3000, 1000, r)) {
+                far++;
+            }
+            if (policy.shouldRefresh(100, 1000, r)) {
+                near++;
+            }
+        }
+
+        // Then - 刷新概率为 exp(-剩余时间/delta)，约为5%和90%
+        assertEquals(Math.exp(-3), (double) far / samples, 0.01);
+        assertEquals(Math.exp(-0.1), (double) near / samples, 0.01);
+    }
+
+    @Test
+    @DisplayName("重建耗时低于下限 - 按下限计算")
+    void shouldRefresh_WhenDeltaBelowMin_ShouldUseMin() {
+        EarlyRefreshPolicy policy = new EarlyRefreshPolicy(1.0, 1000);
+
+        // -ln(0.5)*1000 ≈ 693ms
+        assertTrue(policy.shouldRefresh(600, 5, 0.5));
+        assertFalse(policy.shouldRefresh(800, 5, 0.5));
+    }
+
+    @Test
+    @DisplayName("提前刷新窗口 - 为delta*beta的3倍，beta为0时没有窗口")
+    void windowMillis_ShouldScaleWithDeltaAndBeta() {
+        assertEquals(3000, new EarlyRefreshPolicy(1.0, 500).windowMillis(1000));
+        assertEquals(3000, new EarlyRefreshPolicy(2.0, 500).windowMillis(5));
+        assertEquals(0, new EarlyRefreshPolicy(0, 500).windowMillis(1000));
+    }
+}
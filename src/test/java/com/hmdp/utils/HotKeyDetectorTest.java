@@ -0,0 +1,81 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HotKeyDetector 单元测试
+ */
+@DisplayName("热点key探测测试")
+class HotKeyDetectorTest {
+
+    @Test
+    @DisplayName("访问量达到阈值 - 判定为热点")
+    void record_WhenOverThreshold_ShouldBeHot() {
+        // Given - 10秒窗口，阈值100
+        HotKeyDetector detector = new HotKeyDetector(10_000, 5, 100, 10, 1.0);
+        long now = 1_000_000;
+
+        // When
+        boolean hot = false;
+        for (int i = 0; i < 100; i++) {
+            hot = detector.record("cache:shop:1", now);
+        }
+        detector.record("cache:shop:2", now);
+
+        // Then
+        assertTrue(hot);
+        assertTrue(detector.estimate("cache:shop:1", now) >= 100);
+        assertTrue(detector.estimate("cache:shop:2", now) < 100);
+    }
+
+    @Test
+    @DisplayName("访问离开滑动窗口 - 计数清零")
+    void estimate_AfterWindow_ShouldDecay() {
+        HotKeyDetector detector = new HotKeyDetector(10_000, 5, 100, 10, 1.0);
+        long now = 1_000_000;
+        for (int i = 0; i < 100; i++) {
+            detector.record("cache:shop:1", now);
+        }
+
+        // 窗口内仍然计数，超过窗口后不再计数
+        assertEquals(100, detector.estimate("cache:shop:1", now + 8_000));
+        assertEquals(0, detector.estimate("cache:shop:1", now + 10_000));
+    }
+
+    @Test
+    @DisplayName("TopK - 按访问量降序返回访问最多的key")
+    void topK_ShouldReturnMostFrequentKeys() {
+        // Given - 只保留3个
+        HotKeyDetector detector = new HotKeyDetector(10_000, 5, 1000, 3, 1.0);
+        long now = 1_000_000;
+
+        // When - key i 访问 i*10 次
+        for (int i = 1; i <= 10; i++) {
+            for (int j = 0; j < i * 10; j++) {
+                detector.record("blog:liked:" + i, now);
+            }
+        }
+
+        // Then
+        Map<String, Long> top = detector.topK(now);
+        assertEquals(Arrays.asList("blog:liked:10", "blog:liked:9", "blog:liked:8"), new ArrayList<>(top.keySet()));
+        assertEquals(100, top.get("blog:liked:10").longValue());
+    }
+
+    @Test
+    @DisplayName("采样 - 计数按采样率放大")
+    void record_WithSampling_ShouldScaleCount() {
+        HotKeyDetector detector = new HotKeyDetector(10_000, 5, 100, 10, 0.1);
+
+        detector.record("cache:shop:1", 1_000_000);
+
+        assertEquals(10, detector.estimate("cache:shop:1", 1_000_000));
+    }
+}
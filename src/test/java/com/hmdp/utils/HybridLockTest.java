@@ -0,0 +1,124 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HybridLock 单元测试，分布式锁替换为记录并发的内存实现
+ */
+@DisplayName("两级锁测试")
+class HybridLockTest {
+
+    /**
+     * 记录同时向"Redis"请求锁的线程数
+     */
+    private static class CountingLockManager extends RedisLockManager {
+        final AtomicInteger remoteCalls = new AtomicInteger();
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        CountingLockManager() {
+            super(null, null, 30000);
+        }
+
+        @Override
+        public SimpleRedisLock getLock(String name) {
+            return new SimpleRedisLock(name, null, this) {
+                @Override
+                Long acquireOnce(String owner, long leaseMillis) {
+                    remoteCalls.incrementAndGet();
+                    maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                    return null;
+                }
+
+                @Override
+                Long release(String owner) {
+                    concurrent.decrementAndGet();
+                    return 1L;
+                }
+            };
+        }
+
+        @Override
+        void onAcquired(String lockKey, String owner, boolean watchdogRequested) {
+            // 不启动看门狗
+        }
+    }
+
+    @Test
+    @DisplayName("同一节点并发访问同一个key - 本地串行，Redis上同一时间只有一个线程在抢锁")
+    void execute_SameKeyConcurrently_ShouldSerializeLocally() throws InterruptedException {
+        // Given
+        CountingLockManager manager = new CountingLockManager();
+        HybridLock hybridLock = new HybridLock(manager, 16, 10_000);
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger overlap = new AtomicInteger();
+        int threads = 8;
+        int perThread = 50;
+        CountDownLatch latch = new CountDownLatch(threads);
+
+        // When - 8个线程各执行50次
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < perThread; j++) {
+                    hybridLock.execute("follow", 1010L, () -> {
+                        if (inside.incrementAndGet() > 1) {
+                            overlap.incrementAndGet();
+                        }
+                        inside.decrementAndGet();
+                        return true;
+                    }, () -> false);
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+
+        // Then
+        assertEquals(0, overlap.get());
+        assertEquals(1, manager.maxConcurrent.get());
+        assertEquals(threads * perThread, manager.remoteCalls.get());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stats = (Map<String, Object>) hybridLock.stats().get("follow");
+        assertEquals((long) threads * perThread, stats.get("attempts"));
+        assertEquals(0L, stats.get("timeouts"));
+    }
+
+    @Test
+    @DisplayName("本地分段锁等待超时 - 返回onBusy的结果并计数")
+    void execute_StripeBusy_ShouldReturnOnBusy() throws InterruptedException {
+        // Given - 其他线程持有锁不放
+        HybridLock hybridLock = new HybridLock(new CountingLockManager(), 16, 100);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> hybridLock.execute("like", 7L, () -> {
+            holding.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "ok";
+        }, () -> "busy"));
+        holder.start();
+        holding.await();
+
+        // When
+        String result = hybridLock.execute("like", 7L, () -> "ok", () -> "busy");
+        release.countDown();
+        holder.join();
+
+        // Then
+        assertEquals("busy", result);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stats = (Map<String, Object>) hybridLock.stats().get("like");
+        assertEquals(1L, stats.get("timeouts"));
+        assertEquals(1L, stats.get("localContended"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LocalCache 单元测试
+ */
+@DisplayName("本地缓存测试")
+class LocalCacheTest {
+
+    @Test
+    @DisplayName("写入后读取 - 返回同一个对象")
+    void get_AfterPut_ShouldReturnValue() {
+        // Given
+        LocalCache cache = new LocalCache(100);
+        Object value = new Object();
+
+        // When
+        cache.put("cache:shop:1", value, 10_000);
+
+        // Then
+        assertSame(value, cache.get("cache:shop:1"));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    @DisplayName("缓存空值 - 返回空值占位符")
+    void get_WhenNullCached_ShouldReturnNullValue() {
+        LocalCache cache = new LocalCache(100);
+
+        cache.put("cache:shop:999", null, 10_000);
+
+        assertSame(LocalCache.NULL_VALUE, cache.get("cache:shop:999"));
+    }
+
+    @Test
+    @DisplayName("条目过期 - 返回null")
+    void get_WhenExpired_ShouldReturnNull() throws InterruptedException {
+        LocalCache cache = new LocalCache(100);
+
+        cache.put("cache:shop:1", "v", 20);
+        Thread.sleep(50);
+
+        assertNull(cache.get("cache:shop:1"));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("超出容量 - 淘汰最久未访问的条目")
+    void put_WhenOverCapacity_ShouldEvictLeastRecentlyUsed() {
+        // Given - 每段容量为1
+        LocalCache cache = new LocalCache(16);
+
+        // When - 写入大量条目
+        for (int i = 0; i < 1000; i++) {
+            cache.put("cache:shop:" + i, i, 10_000);
+        }
+
+        // Then - 总条目数不超过容量
+        assertTrue(cache.size() <= 16, "条目数不应超过最大容量");
+        assertTrue(cache.getEvictionCount() >= 1000 - 16);
+    }
+
+    @Test
+    @DisplayName("删除key - 之后读取返回null")
+    void invalidate_ShouldRemoveEntry() {
+        LocalCache cache = new LocalCache(100);
+        cache.put("cache:shop:1", "v", 10_000);
+
+        cache.invalidate("cache:shop:1");
+
+        assertNull(cache.get("cache:shop:1"));
+    }
+}
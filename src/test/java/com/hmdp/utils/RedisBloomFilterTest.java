@@ -0,0 +1,83 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RedisBloomFilter 单元测试（只测试本地位数组，不依赖Redis）
+ */
+@DisplayName("布隆过滤器测试")
+class RedisBloomFilterTest {
+
+    @Test
+    @DisplayName("已插入的元素 - 一定判断为可能存在")
+    void mightContain_WhenInserted_ShouldReturnTrue() {
+        RedisBloomFilter filter = new RedisBloomFilter("cache:shop:", 10_000, 0.01);
+
+        for (long id = 1; id <= 10_000; id++) {
+            filter.putLocal(id);
+        }
+
+        for (long id = 1; id <= 10_000; id++) {
+            assertTrue(filter.mightContain(id), "不允许漏判: " + id);
+        }
+    }
+
+    @Test
+    @DisplayName("未插入的元素 - 误判率接近期望值")
+    void mightContain_WhenNotInserted_ShouldKeepFppLow() {
+        // Given
+        RedisBloomFilter filter = new RedisBloomFilter("cache:shop:", 10_000, 0.01);
+        for (long id = 1; id <= 10_000; id++) {
+            filter.putLocal(id);
+        }
+
+        // When
+        int falsePositives = 0;
+        for (long id = 1_000_000; id < 1_100_000; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+
+        // Then
+        double fpp = falsePositives / 100_000.0;
+        assertTrue(fpp < 0.02, "误判率过高: " + fpp);
+        assertTrue(filter.estimatedFpp() < 0.02, "估算误判率过高: " + filter.estimatedFpp());
+    }
+
+    @Test
+    @DisplayName("Redis bitmap格式互转 - 合并后结果一致")
+    void mergeRedisBitmap_ShouldRestoreSameBits() {
+        // Given
+        RedisBloomFilter source = new RedisBloomFilter("cache:shop:", 1_000, 0.01);
+        for (long id = 1; id <= 1_000; id++) {
+            source.putLocal(id);
+        }
+
+        // When
+        RedisBloomFilter target = new RedisBloomFilter("cache:shop:", 1_000, 0.01);
+        target.mergeRedisBitmap(source.toRedisBitmap());
+
+        // Then
+        for (long id = 1; id <= 1_000; id++) {
+            assertTrue(target.mightContain(id));
+        }
+        assertEquals(source.estimatedFpp(), target.estimatedFpp(), 0.0);
+    }
+
+    @Test
+    @DisplayName("Redis bitmap位序 - offset 0 对应第一个字节的最高位")
+    void toRedisBitmap_ShouldUseRedisBitOrder() {
+        RedisBloomFilter filter = new RedisBloomFilter("test", 100, 0.01);
+
+        filter.setBit(0);
+        filter.setBit(9);
+
+        byte[] bytes = filter.toRedisBitmap();
+        assertEquals((byte) 0x80, bytes[0]);
+        assertEquals((byte) 0x40, bytes[1]);
+    }
+}
@@ -0,0 +1,82 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RedisIdWorker 号段模式单元测试，用内存计数器代替Redis的INCRBY
+ */
+@DisplayName("号段模式id生成测试")
+class RedisIdWorkerTest {
+
+    /**
+     * 记录INCRBY调用次数的内存实现
+     */
+    private static class InMemoryIdWorker extends RedisIdWorker {
+        final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+        final AtomicInteger reserveCount = new AtomicInteger();
+
+        InMemoryIdWorker(boolean segmentEnabled, long segmentSize) {
+            super(segmentEnabled, segmentSize, 0.8, 2);
+        }
+
+        @Override
+        long reserve(String keyPrefix, long day, long delta) {
+            reserveCount.incrementAndGet();
+            return counters.computeIfAbsent(keyPrefix + ":" + day, k -> new AtomicLong()).addAndGet(delta);
+        }
+    }
+
+    @Test
+    @DisplayName("并发生成id - 全部唯一，Redis访问次数约为 id数量/号段大小")
+    void nextId_Concurrently_ShouldBeUniqueAndReserveBySegment() throws InterruptedException {
+        // Given
+        InMemoryIdWorker worker = new InMemoryIdWorker(true, 100);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        CountDownLatch latch = new CountDownLatch(8);
+
+        // When - 8个线程各生成1000个id
+        for (int i = 0; i < 8; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    ids.add(worker.nextId("order"));
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+
+        // Then
+        assertEquals(8000, ids.size(), "id不能重复");
+        assertTrue(worker.reserveCount.get() <= 82, "每100个id最多访问一次Redis，实际: " + worker.reserveCount.get());
+    }
+
+    @Test
+    @DisplayName("id结构 - 高32位为时间戳，低32位为序列号，与逐个INCR的格式一致")
+    void nextId_ShouldKeepTimestampAndSequenceLayout() {
+        // Given
+        InMemoryIdWorker segment = new InMemoryIdWorker(true, 10);
+        InMemoryIdWorker single = new InMemoryIdWorker(false, 10);
+
+        // When
+        long first = segment.nextId("order");
+        long second = segment.nextId("order");
+        long legacy = single.nextId("order");
+
+        // Then - 序列号从1开始连续发放
+        assertEquals(1L, first & 0xFFFFFFFFL);
+        assertEquals(2L, second & 0xFFFFFFFFL);
+        assertEquals(1L, legacy & 0xFFFFFFFFL);
+        assertTrue((first >>> 32) > 0, "时间戳部分应为正数");
+        assertEquals(1, single.reserveCount.get());
+    }
+}
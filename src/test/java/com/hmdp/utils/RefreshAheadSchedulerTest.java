@@ -0,0 +1,139 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RefreshAheadScheduler 单元测试
+ */
+@DisplayName("缓存重建调度器测试")
+class RefreshAheadSchedulerTest {
+
+    private RefreshAheadScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("同一个key重复提交 - 只执行一次")
+    void submit_WhenSameKeyPending_ShouldDeduplicate() throws InterruptedException {
+        // Given
+        scheduler = new RefreshAheadScheduler(1, 10, 3000, 60_000, 100, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        Runnable task = () -> {
+            runs.incrementAndGet();
+            await(release);
+        };
+
+        // When
+        assertTrue(scheduler.submit("cache:shop:1", task));
+        assertFalse(scheduler.submit("cache:shop:1", task));
+        release.countDown();
+        waitUntil(() -> scheduler.stats().get("completed").equals(1L));
+
+        // Then
+        assertEquals(1, runs.get());
+        assertEquals(1L, scheduler.stats().get("deduplicated"));
+    }
+
+    @Test
+    @DisplayName("队列已满 - 拒绝并计数")
+    void submit_WhenQueueFull_ShouldReject() {
+        // Given - 1个线程，队列容量1
+        scheduler = new RefreshAheadScheduler(1, 1, 3000, 60_000, 100, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocking = () -> await(release);
+
+        // When - 1个执行中，1个排队，第3个被拒绝
+        assertTrue(scheduler.submit("k1", blocking));
+        waitUntil(() -> scheduler.stats().get("activeThreads").equals(1));
+        assertTrue(scheduler.submit("k2", blocking));
+        boolean third = scheduler.submit("k3", blocking);
+        release.countDown();
+
+        // Then
+        assertFalse(third);
+        assertEquals(1L, scheduler.stats().get("rejected"));
+    }
+
+    @Test
+    @DisplayName("即将过期的key - 扫描时提前重建，传入记录的过期时间")
+    void scan_WhenNearExpiry_ShouldRefreshAhead() {
+        // Given - 提前3秒重建
+        scheduler = new RefreshAheadScheduler(1, 10, 3000, 60_000, 100, 100);
+        long now = System.currentTimeMillis();
+        AtomicLong refreshed = new AtomicLong();
+        AtomicInteger farRuns = new AtomicInteger();
+        scheduler.track("cache:shop:1", now + 1000, refreshed::set);
+        scheduler.track("cache:shop:2", now + 60_000, expireAt -> farRuns.incrementAndGet());
+
+        // When
+        scheduler.scan();
+        waitUntil(() -> refreshed.get() != 0);
+
+        // Then - 只有即将过期的key被重建
+        assertEquals(now + 1000, refreshed.get());
+        assertEquals(0, farRuns.get());
+        assertEquals(1L, scheduler.stats().get("refreshAhead"));
+    }
+
+    @Test
+    @DisplayName("长时间没有访问的key - 不再跟踪")
+    void scan_WhenIdle_ShouldUntrack() throws InterruptedException {
+        scheduler = new RefreshAheadScheduler(1, 10, 3000, 10, 100, 100);
+        scheduler.track("cache:shop:1", System.currentTimeMillis() + 60_000, expireAt -> { });
+
+        Thread.sleep(30);
+        scheduler.scan();
+
+        assertEquals(0, scheduler.stats().get("trackedKeys"));
+    }
+
+    @Test
+    @DisplayName("超过限速 - 剩余的key下一轮再重建")
+    void scan_WhenRateLimited_ShouldDefer() {
+        // Given - 每秒只允许2次提前重建
+        scheduler = new RefreshAheadScheduler(1, 100, 3000, 60_000, 100, 2);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            scheduler.track("cache:shop:" + i, now, expireAt -> { });
+        }
+
+        // When
+        scheduler.scan();
+
+        // Then
+        assertEquals(2L, scheduler.stats().get("refreshAhead"));
+        assertEquals(1L, scheduler.stats().get("rateLimited"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        assertTrue(condition.getAsBoolean(), "等待超时");
+    }
+}
@@ -0,0 +1,132 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SeckillAdmissionBatcher 单元测试，用内存实现代替Lua脚本
+ */
+@DisplayName("秒杀请求合并测试")
+class SeckillAdmissionBatcherTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(16);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("并发请求 - 合并为少量批次，每个请求拿到自己的结果")
+    void admit_Concurrently_ShouldCoalesceAndRouteResults() throws Exception {
+        // Given - 按用户id返回结果：偶数用户重复下单，奇数用户成功
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        SeckillAdmissionBatcher batcher = new SeckillAdmissionBatcher(null, true, 64, 20000, Duration.ofSeconds(3)) {
+            @Override
+            List<Long> execute(List<Attempt> batch) {
+                batchSizes.add(batch.size());
+                List<Long> results = new ArrayList<>();
+                for (Attempt attempt : batch) {
+                    results.add(Long.parseLong(attempt.userId) % 2 == 0 ? 2L : 0L);
+                }
+                return results;
+            }
+        };
+        batcher.start();
+        CountDownLatch ready = new CountDownLatch(1);
+
+        // When - 32个用户同时抢购
+        List<Future<Long>> futures = new ArrayList<>();
+        for (long userId = 1; userId <= 32; userId++) {
+            long uid = userId;
+            futures.add(pool.submit(() -> {
+                ready.await();
+                return batcher.admit(1L, uid, 1000 + uid);
+            }));
+        }
+        ready.countDown();
+
+        // Then
+        for (int i = 0; i < futures.size(); i++) {
+            long expected = (i + 1) % 2 == 0 ? 2L : 0L;
+            assertEquals(Long.valueOf(expected), futures.get(i).get());
+        }
+        int total = batchSizes.stream().mapToInt(Integer::intValue).sum();
+        assertEquals(32, total);
+        assertTrue(batchSizes.size() < 32, "并发请求应当被合并，实际批次: " + batchSizes);
+        batcher.stop();
+    }
+
+    @Test
+    @DisplayName("脚本执行失败 - 整批请求都收到异常")
+    void admit_WhenExecuteFails_ShouldPropagateException() {
+        // Given
+        SeckillAdmissionBatcher batcher = new SeckillAdmissionBatcher(null, true, 64, 0, Duration.ofSeconds(3)) {
+            @Override
+            List<Long> execute(List<Attempt> batch) {
+                throw new IllegalStateException("redis down");
+            }
+        };
+        batcher.start();
+
+        // When & Then
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> batcher.admit(1L, 1L, 1L));
+        assertEquals("redis down", e.getMessage());
+        batcher.stop();
+    }
+
+    @Test
+    @DisplayName("脚本执行卡住 - 请求等待超时后失败，不会一直阻塞")
+    void admit_WhenExecuteHangs_ShouldTimeout() {
+        // Given - Redis命令超时200ms，脚本一直不返回
+        CountDownLatch release = new CountDownLatch(1);
+        SeckillAdmissionBatcher batcher = new SeckillAdmissionBatcher(null, true, 64, 0, Duration.ofMillis(200)) {
+            @Override
+            List<Long> execute(List<Attempt> batch) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("redis timeout");
+            }
+        };
+        batcher.start();
+
+        // When
+        long start = System.currentTimeMillis();
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> batcher.admit(1L, 1L, 1L));
+        long elapsed = System.currentTimeMillis() - start;
+        release.countDown();
+
+        // Then
+        assertEquals("秒杀请求超时", e.getMessage());
+        assertTrue(elapsed < 2000, "等待时间应接近超时时间，实际: " + elapsed);
+        batcher.stop();
+    }
+
+    @Test
+    @DisplayName("合并器已停止 - 请求立即失败")
+    void admit_WhenStopped_ShouldFail() {
+        // Given
+        SeckillAdmissionBatcher batcher = new SeckillAdmissionBatcher(null, true, 64, 0, Duration.ofSeconds(3));
+        batcher.start();
+        batcher.stop();
+
+        // When & Then
+        assertThrows(IllegalStateException.class, () -> batcher.admit(1L, 1L, 1L));
+    }
+}
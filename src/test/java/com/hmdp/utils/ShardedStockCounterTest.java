@@ -0,0 +1,235 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_SHARDS_KEY;
+import static com.hmdp.utils.RedisConstants.SECKILL_STOCK_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ShardedStockCounter 单元测试，Lua脚本用内存中的库存和用户集合模拟
+ */
+@DisplayName("分片库存计数器测试")
+class ShardedStockCounterTest {
+
+    private static final Long VOUCHER_ID = 1L;
+
+    private static final int SHARDS = 4;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private ValueOperations<String, String> valueOperations;
+
+    private SetOperations<String, String> setOperations;
+
+    private final Map<String, Integer> stocks = new HashMap<>();
+
+    private final Map<String, Set<String>> buyers = new HashMap<>();
+
+    private ShardedStockCounter counter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        setOperations = mock(SetOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(stringRedisTemplate.opsForSet()).thenReturn(setOperations);
+        // seckill_shard.lua有两个key和一个参数，stock_take.lua只有一个key
+        Answer<Long> script = inv -> {
+            List<String> keys = inv.getArgument(1);
+            if (keys.size() == 2) {
+                return shardScript(keys.get(0), keys.get(1), inv.getArgument(2));
+            }
+            return takeScript(keys.get(0));
+        };
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(script);
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList())).thenAnswer(script);
+        when(setOperations.remove(anyString(), any())).thenAnswer(inv -> {
+            Set<String> set = buyers.get(inv.<String>getArgument(0));
+            return set != null && set.remove(inv.<String>getArgument(1)) ? 1L : 0L;
+        });
+        counter = new ShardedStockCounter(stringRedisTemplate, SHARDS);
+    }
+
+    @Test
+    @DisplayName("主分片 - 同一用户总是路由到同一分片，负数id也在分片范围内")
+    void homeShard_ShouldBeStableAndInRange() {
+        for (long userId = -50; userId < 50; userId++) {
+            int shard = ShardedStockCounter.homeShard(userId, SHARDS);
+            assertTrue(shard >= 0 && shard < SHARDS);
+            assertEquals(shard, ShardedStockCounter.homeShard(userId, SHARDS));
+        }
+        assertEquals(0, ShardedStockCounter.homeShard(100L, 1));
+    }
+
+    @Test
+    @DisplayName("主分片有库存 - 扣减主分片并记录下单用户")
+    void acquire_WhenHomeHasStock_ShouldTakeFromHome() {
+        // Given
+        Long userId = 100L;
+        int home = ShardedStockCounter.homeShard(userId, SHARDS);
+        fillShards(1);
+
+        // When
+        int shard = counter.acquire(VOUCHER_ID, userId, SHARDS);
+
+        // Then
+        assertEquals(home, shard);
+        assertEquals(0, stock(home));
+        assertTrue(buyers(home).contains("100"));
+        verify(stringRedisTemplate, times(1)).execute(any(RedisScript.class), anyList(), any());
+        verify(stringRedisTemplate, never()).execute(any(RedisScript.class), anyList());
+    }
+
+    @Test
+    @DisplayName("主分片库存不足 - 依次尝试相邻分片，下单资格仍记录在主分片")
+    void acquire_WhenHomeEmpty_ShouldFallBackToNeighbour() {
+        // Given - 主分片和下一个分片都没有库存，再下一个分片有库存
+        Long userId = 100L;
+        int home = ShardedStockCounter.homeShard(userId, SHARDS);
+        fillShards(1);
+        stocks.put(ShardedStockCounter.stockKey(VOUCHER_ID, home), 0);
+        stocks.put(ShardedStockCounter.stockKey(VOUCHER_ID, (home + 1) % SHARDS), 0);
+
+        // When
+        int shard = counter.acquire(VOUCHER_ID, userId, SHARDS);
+
+        // Then
+        assertEquals((home + 2) % SHARDS, shard);
+        assertEquals(0, stock(shard));
+        assertTrue(buyers(home).contains("100"));
+        assertFalse(buyers(shard).contains("100"));
+    }
+
+    @Test
+    @DisplayName("所有分片都没有库存 - 返回库存不足并释放下单资格")
+    void acquire_WhenAllEmpty_ShouldReleaseUser() {
+        // Given
+        Long userId = 100L;
+        fillShards(0);
+
+        // When
+        int shard = counter.acquire(VOUCHER_ID, userId, SHARDS);
+
+        // Then - 用户之后还可以重新抢购
+        assertEquals(ShardedStockCounter.NO_STOCK, shard);
+        assertFalse(buyers(ShardedStockCounter.homeShard(userId, SHARDS)).contains("100"));
+        verify(stringRedisTemplate, times(SHARDS - 1)).execute(any(RedisScript.class), anyList());
+    }
+
+    @Test
+    @DisplayName("重复下单 - 在主分片拦截，不尝试其他分片")
+    void acquire_WhenDuplicate_ShouldRejectOnHome() {
+        // Given
+        Long userId = 100L;
+        fillShards(1);
+        assertEquals(ShardedStockCounter.homeShard(userId, SHARDS), counter.acquire(VOUCHER_ID, userId, SHARDS));
+
+        // When
+        int shard = counter.acquire(VOUCHER_ID, userId, SHARDS);
+
+        // Then
+        assertEquals(ShardedStockCounter.DUPLICATE, shard);
+        verify(stringRedisTemplate, never()).execute(any(RedisScript.class), anyList());
+    }
+
+    @Test
+    @DisplayName("撤销扣减 - 归还扣减的分片库存，并从主分片释放下单资格")
+    void release_ShouldReturnStockToTakenShard() {
+        // Given - 主分片没有库存，从相邻分片扣减
+        Long userId = 100L;
+        int home = ShardedStockCounter.homeShard(userId, SHARDS);
+        fillShards(1);
+        stocks.put(ShardedStockCounter.stockKey(VOUCHER_ID, home), 0);
+        int shard = counter.acquire(VOUCHER_ID, userId, SHARDS);
+
+        // When
+        counter.release(VOUCHER_ID, userId, SHARDS, shard);
+
+        // Then
+        verify(valueOperations).increment(ShardedStockCounter.stockKey(VOUCHER_ID, shard));
+        assertFalse(buyers(home).contains("100"));
+    }
+
+    @Test
+    @DisplayName("预热库存 - 平均拆分到各分片，余数分给前几个分片，并写入分片数量")
+    void preload_ShouldSplitStockAcrossShards() {
+        // When
+        counter.preload(VOUCHER_ID, 10);
+
+        // Then - 10个库存拆分为3、3、2、2
+        verify(valueOperations).set(ShardedStockCounter.stockKey(VOUCHER_ID, 0), "3");
+        verify(valueOperations).set(ShardedStockCounter.stockKey(VOUCHER_ID, 1), "3");
+        verify(valueOperations).set(ShardedStockCounter.stockKey(VOUCHER_ID, 2), "2");
+        verify(valueOperations).set(ShardedStockCounter.stockKey(VOUCHER_ID, 3), "2");
+        verify(valueOperations).set(SECKILL_SHARDS_KEY + VOUCHER_ID, String.valueOf(SHARDS));
+        assertEquals(SHARDS, counter.shardsOf(VOUCHER_ID));
+        assertEquals(Arrays.asList(ShardedStockCounter.stockKey(VOUCHER_ID, 0), ShardedStockCounter.stockKey(VOUCHER_ID, 1),
+                ShardedStockCounter.stockKey(VOUCHER_ID, 2), ShardedStockCounter.stockKey(VOUCHER_ID, 3),
+                SECKILL_SHARDS_KEY + VOUCHER_ID), counter.preheatKeys(VOUCHER_ID));
+    }
+
+    @Test
+    @DisplayName("没有分片数量的优惠券 - 使用单个库存key")
+    void shardsOf_WhenNotSharded_ShouldReturnOne() {
+        // Given
+        when(valueOperations.get(SECKILL_SHARDS_KEY + VOUCHER_ID)).thenReturn(null);
+
+        // When & Then
+        assertEquals(1, counter.shardsOf(VOUCHER_ID));
+        assertEquals(Arrays.asList(SECKILL_STOCK_KEY + VOUCHER_ID),
+                new ShardedStockCounter(stringRedisTemplate, 1).preheatKeys(VOUCHER_ID));
+    }
+
+    // 模拟seckill_shard.lua
+    private Long shardScript(String stockKey, String orderKey, String userId) {
+        Set<String> set = buyers.computeIfAbsent(orderKey, k -> new HashSet<>());
+        if (set.contains(userId)) {
+            return 2L;
+        }
+        set.add(userId);
+        return takeScript(stockKey) == 1 ? 0L : 3L;
+    }
+
+    // 模拟stock_take.lua
+    private Long takeScript(String stockKey) {
+        int stock = stocks.getOrDefault(stockKey, 0);
+        if (stock > 0) {
+            stocks.put(stockKey, stock - 1);
+            return 1L;
+        }
+        return 0L;
+    }
+
+    private void fillShards(int stock) {
+        for (int i = 0; i < SHARDS; i++) {
+            stocks.put(ShardedStockCounter.stockKey(VOUCHER_ID, i), stock);
+        }
+    }
+
+    private int stock(int shard) {
+        return stocks.get(ShardedStockCounter.stockKey(VOUCHER_ID, shard));
+    }
+
+    private Set<String> buyers(int shard) {
+        return buyers.getOrDefault(ShardedStockCounter.orderKey(VOUCHER_ID, shard), new HashSet<>());
+    }
+}
@@ -0,0 +1,125 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SimpleRedisLock 单元测试，用内存中的hash代替lock.lua和unlock.lua
+ */
+@DisplayName("可重入分布式锁测试")
+class SimpleRedisLockTest {
+
+    /**
+     * 模拟Redis中的锁：持有者和重入次数，锁的剩余有效期固定为10秒，释放时发出通知
+     */
+    private static class InMemoryLock extends SimpleRedisLock {
+        private static String holder;
+        private static int holds;
+
+        private final RedisLockManager manager;
+
+        InMemoryLock(RedisLockManager manager) {
+            super("test", null, manager);
+            this.manager = manager;
+        }
+
+        @Override
+        Long acquireOnce(String owner, long leaseMillis) {
+            synchronized (InMemoryLock.class) {
+                if (holder == null || holder.equals(owner)) {
+                    holder = owner;
+                    holds++;
+                    return null;
+                }
+                return 10_000L;
+            }
+        }
+
+        @Override
+        Long release(String owner) {
+            synchronized (InMemoryLock.class) {
+                if (!owner.equals(holder)) {
+                    return -1L;
+                }
+                if (--holds > 0) {
+                    return 0L;
+                }
+                holder = null;
+            }
+            manager.onRelease(getKey());
+            return 1L;
+        }
+
+        static void reset() {
+            synchronized (InMemoryLock.class) {
+                holder = null;
+                holds = 0;
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("重入后需要同样次数的unlock，释放通知立即唤醒等待线程")
+    void unlock_Reentrant_ShouldWakeWaiterOnFinalRelease() throws InterruptedException {
+        // Given - 主线程重入两次
+        InMemoryLock.reset();
+        RedisLockManager manager = new RedisLockManager(null, null, 30000);
+        InMemoryLock lock = new InMemoryLock(manager);
+        assertTrue(lock.tryLock(10));
+        assertTrue(lock.tryLock(10));
+
+        AtomicBoolean acquired = new AtomicBoolean();
+        AtomicLong waitedMillis = new AtomicLong();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            InMemoryLock other = new InMemoryLock(manager);
+            started.countDown();
+            long begin = System.currentTimeMillis();
+            try {
+                acquired.set(other.tryLock(5, 10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            waitedMillis.set(System.currentTimeMillis() - begin);
+            other.unlock();
+            done.countDown();
+        });
+        waiter.start();
+        started.await();
+
+        // When - 第一次unlock后锁仍被持有
+        Thread.sleep(200);
+        lock.unlock();
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS), "锁仍被持有，等待线程不能获取锁");
+        lock.unlock();
+
+        // Then - 锁的剩余有效期是10秒，等待线程由释放通知唤醒
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertTrue(acquired.get());
+        assertTrue(waitedMillis.get() < 2000);
+    }
+
+    @Test
+    @DisplayName("释放不属于当前线程的锁 - 抛出IllegalMonitorStateException")
+    void unlock_NotOwner_ShouldThrow() throws InterruptedException {
+        // Given - 其他线程持有锁
+        InMemoryLock.reset();
+        RedisLockManager manager = new RedisLockManager(null, null, 30000);
+        Thread holder = new Thread(() -> new InMemoryLock(manager).tryLock(10));
+        holder.start();
+        holder.join();
+
+        // When & Then
+        InMemoryLock lock = new InMemoryLock(manager);
+        assertFalse(lock.tryLock(0, 10, TimeUnit.SECONDS));
+        assertThrows(IllegalMonitorStateException.class, lock::unlock);
+    }
+}
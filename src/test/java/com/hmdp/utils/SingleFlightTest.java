@@ -0,0 +1,96 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SingleFlight 单元测试
+ */
+@DisplayName("请求合并测试")
+class SingleFlightTest {
+
+    @Test
+    @DisplayName("并发加载同一个key - 只执行一次加载")
+    void execute_WhenConcurrent_ShouldLoadOnce() throws Exception {
+        // Given
+        SingleFlight singleFlight = new SingleFlight();
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            // When - 第一个线程开始加载后阻塞，其余线程进入等待
+            Future<String> leader = executor.submit(() -> singleFlight.execute("cache:shop:1", () -> {
+                loadCount.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return "shop-1";
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            List<Future<String>> followers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                followers.add(executor.submit(() -> singleFlight.execute("cache:shop:1", () -> {
+                    loadCount.incrementAndGet();
+                    return "other";
+                })));
+            }
+            // 等待所有跟随者进入等待状态
+            long deadline = System.currentTimeMillis() + 5000;
+            while (singleFlight.getSharedCount() < 7 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            // Then
+            assertEquals("shop-1", leader.get(5, TimeUnit.SECONDS));
+            for (Future<String> follower : followers) {
+                assertEquals("shop-1", follower.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loadCount.get(), "只应加载一次");
+            assertEquals(0, singleFlight.inFlightCount(), "加载结束后应清理");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("加载结果为null - 正常返回null")
+    void execute_WhenLoaderReturnsNull_ShouldReturnNull() {
+        SingleFlight singleFlight = new SingleFlight();
+
+        assertNull(singleFlight.execute("cache:shop:999", () -> null));
+    }
+
+    @Test
+    @DisplayName("加载抛出异常 - 异常传递给调用方且之后可以重新加载")
+    void execute_WhenLoaderThrows_ShouldPropagateAndAllowRetry() {
+        SingleFlight singleFlight = new SingleFlight();
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.execute("k", () -> {
+            throw new IllegalStateException("db down");
+        }));
+
+        assertEquals("ok", singleFlight.execute("k", () -> "ok"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
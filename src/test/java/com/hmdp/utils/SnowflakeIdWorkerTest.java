@@ -0,0 +1,99 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SnowflakeIdWorker 单元测试，使用固定的worker id，不访问Redis
+ */
+@DisplayName("Snowflake id生成测试")
+class SnowflakeIdWorkerTest {
+
+    /**
+     * 时钟可以手动拨动的生成器
+     */
+    private static class ManualClockIdWorker extends SnowflakeIdWorker {
+        volatile long now = SnowflakeIdWorker.EPOCH_MILLIS + 1_000_000;
+
+        ManualClockIdWorker(long workerId, long maxBackwardMillis) {
+            super(workerId, maxBackwardMillis);
+        }
+
+        @Override
+        long currentMillis() {
+            return now;
+        }
+    }
+
+    @Test
+    @DisplayName("多线程并发生成的id不重复，且包含worker id")
+    void testConcurrentUnique() throws InterruptedException {
+        // Given: 8个线程，每个线程生成5万个id
+        SnowflakeIdWorker worker = new SnowflakeIdWorker(513, 5000);
+        int threads = 8;
+        int perThread = 50_000;
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        AtomicInteger nonIncreasing = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(threads);
+
+        // When
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                long last = 0;
+                for (int i = 0; i < perThread; i++) {
+                    long id = worker.nextId("order");
+                    if (id <= last) {
+                        nonIncreasing.incrementAndGet();
+                    }
+                    last = id;
+                    ids.add(id);
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+
+        // Then: 没有重复，单个线程内严格递增
+        assertEquals(threads * perThread, ids.size());
+        assertEquals(0, nonIncreasing.get());
+        long sample = ids.iterator().next();
+        assertEquals(513, SnowflakeIdWorker.workerIdOf(sample));
+        assertTrue(Math.abs(SnowflakeIdWorker.timestampOf(sample) - System.currentTimeMillis()) < 60_000);
+    }
+
+    @Test
+    @DisplayName("小幅时钟回拨时id继续递增，超过上限时拒绝生成")
+    void testClockBackward() {
+        // Given: 允许回拨100ms
+        ManualClockIdWorker worker = new ManualClockIdWorker(1, 100);
+        long before = worker.nextId("order");
+
+        // When: 时钟回拨50ms，并且同一毫秒内的序列号用完
+        worker.now -= 50;
+        long last = before;
+        for (int i = 0; i < 5000; i++) {
+            long id = worker.nextId("order");
+            // Then: 沿用上一次的时间戳，序列号用完后借用下一毫秒，id保持递增
+            assertTrue(id > last);
+            last = id;
+        }
+        assertTrue(SnowflakeIdWorker.timestampOf(last) > SnowflakeIdWorker.timestampOf(before));
+
+        // When: 时钟回拨超过100ms
+        worker.now -= 200;
+
+        // Then
+        assertThrows(IllegalStateException.class, () -> worker.nextId("order"));
+
+        // When: 时钟追上之后恢复正常
+        worker.now += 1000;
+        assertTrue(worker.nextId("order") > last);
+    }
+}
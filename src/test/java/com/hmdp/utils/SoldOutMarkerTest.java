@@ -0,0 +1,57 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SoldOutMarker 单元测试
+ */
+@DisplayName("售罄标记测试")
+class SoldOutMarkerTest {
+
+    @Test
+    @DisplayName("标记售罄后 - 检查间隔内的请求都被拒绝")
+    void isSoldOut_WithinRecheckInterval_ShouldReject() {
+        // Given
+        SoldOutMarker marker = new SoldOutMarker(5000);
+
+        // When
+        marker.markLocal(1L, 1000);
+
+        // Then
+        assertTrue(marker.isSoldOut(1L, 1000));
+        assertTrue(marker.isSoldOut(1L, 5999));
+        assertFalse(marker.isSoldOut(2L, 1000), "未标记的优惠券不受影响");
+    }
+
+    @Test
+    @DisplayName("超过检查间隔 - 只放行一个请求重新检查库存")
+    void isSoldOut_AfterRecheckInterval_ShouldLetOneRequestThrough() {
+        // Given
+        SoldOutMarker marker = new SoldOutMarker(5000);
+        marker.markLocal(1L, 1000);
+
+        // When - 同一时刻的多个请求
+        boolean first = marker.isSoldOut(1L, 6000);
+        boolean second = marker.isSoldOut(1L, 6000);
+
+        // Then - 第一个放行，其余继续拒绝直到下一个检查间隔
+        assertFalse(first);
+        assertTrue(second);
+        assertTrue(marker.isSoldOut(1L, 10999));
+        assertFalse(marker.isSoldOut(1L, 11000));
+    }
+
+    @Test
+    @DisplayName("清除标记 - 请求不再被拒绝")
+    void resetLocal_ShouldClearMarker() {
+        SoldOutMarker marker = new SoldOutMarker(5000);
+        marker.markLocal(1L, 1000);
+
+        marker.resetLocal(1L);
+
+        assertFalse(marker.isSoldOut(1L, 1000));
+    }
+}
@@ -0,0 +1,63 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StockLeaser 本地租约单元测试
+ */
+@DisplayName("库存租约测试")
+class StockLeaserTest {
+
+    @Test
+    @DisplayName("并发扣减本地租约 - 成功次数等于租约库存，不会超卖")
+    void take_Concurrently_ShouldNotOversell() throws InterruptedException {
+        // Given
+        StockLeaser.Lease lease = new StockLeaser.Lease(50, Long.MAX_VALUE);
+        AtomicInteger success = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(8);
+
+        // When - 8个线程各扣减20次
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < 20; j++) {
+                    if (lease.take()) {
+                        success.incrementAndGet();
+                    }
+                }
+                latch.countDown();
+            });
+            threads.add(t);
+            t.start();
+        }
+        latch.await();
+
+        // Then
+        assertEquals(50, success.get());
+        assertEquals(0, lease.remaining.get(), "剩余库存不会被减成负数");
+    }
+
+    @Test
+    @DisplayName("归还租约 - 取走剩余库存后扣减失败")
+    void drain_ShouldTakeAllRemainingUnits() {
+        // Given
+        StockLeaser.Lease lease = new StockLeaser.Lease(3, Long.MAX_VALUE);
+        assertTrue(lease.take());
+
+        // When
+        long left = lease.drain();
+
+        // Then
+        assertEquals(2, left);
+        assertFalse(lease.take());
+        assertEquals(0, lease.drain(), "重复归还不会多还库存");
+    }
+}
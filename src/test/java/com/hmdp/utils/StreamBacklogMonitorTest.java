@@ -0,0 +1,135 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_GROUP;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * StreamBacklogMonitor 单元测试
+ */
+@DisplayName("订单Stream积压监控测试")
+class StreamBacklogMonitorTest {
+
+    @Test
+    @DisplayName("比较消息id - 先比较时间戳再比较序号")
+    void compareIds_ShouldCompareMillisThenSequence() {
+        assertTrue(StreamBacklogMonitor.compareIds("1700000000000-5", "1700000000001-0") < 0);
+        assertTrue(StreamBacklogMonitor.compareIds("1700000000000-10", "1700000000000-9") > 0, "序号按数值比较");
+        assertEquals(0, StreamBacklogMonitor.compareIds("1700000000000-1", "1700000000000-1"));
+        assertEquals(1700000000000L, StreamBacklogMonitor.idMillis("1700000000000-3"));
+    }
+
+    @Test
+    @DisplayName("延迟或长度超过阈值 - 拒绝请求并计数，恢复后放行")
+    void shouldShed_WhenOverThreshold_ShouldRejectUntilRecovered() {
+        // Given
+        StreamBacklogMonitor monitor = new StreamBacklogMonitor(null, 5000, 1000, true);
+
+        // When & Then - 正常
+        monitor.update(100, 10, 200);
+        assertFalse(monitor.shouldShed());
+
+        // When & Then - 延迟超过阈值
+        monitor.update(100, 10, 6000);
+        assertTrue(monitor.shouldShed());
+
+        // When & Then - 长度超过阈值
+        monitor.update(1001, 10, 0);
+        assertTrue(monitor.shouldShed());
+
+        // When & Then - 恢复
+        monitor.update(100, 0, 0);
+        assertFalse(monitor.shouldShed());
+        assertEquals(2L, monitor.stats().get("shedCount"));
+    }
+
+    @Test
+    @DisplayName("只有一条很早的pending消息在重试，没有未投递的消息 - 不拒绝请求，但按最小pending id裁剪")
+    void check_WhenOldPendingAndNoUndelivered_ShouldNotShed() {
+        // Given - 20秒前的消息一直在退避重试，之后的消息都已投递并确认
+        long now = System.currentTimeMillis();
+        String pendingId = (now - 20_000) + "-0";
+        String lastDeliveredId = (now - 100) + "-0";
+        StringRedisTemplate redisTemplate = mockStream(pendingId, lastDeliveredId, Collections.emptyList());
+        StreamBacklogMonitor monitor = new StreamBacklogMonitor(redisTemplate, 5000, 100_000, true);
+
+        // When
+        monitor.check();
+
+        // Then
+        assertFalse(monitor.shouldShed());
+        assertEquals(0L, monitor.stats().get("lagMillis"));
+        assertTrue((long) monitor.stats().get("oldestPendingMillis") >= 20_000);
+        verify(redisTemplate).execute(any(RedisScript.class), eq(Collections.singletonList(SECKILL_ORDER_STREAM)), eq(pendingId));
+    }
+
+    @Test
+    @DisplayName("未投递的消息已排队超过阈值 - 拒绝请求")
+    void check_WhenUndeliveredTailIsOld_ShouldShed() {
+        // Given - 6秒前写入的消息还没有被任何消费者读取
+        long now = System.currentTimeMillis();
+        String lastDeliveredId = (now - 7000) + "-0";
+        String undeliveredId = (now - 6000) + "-0";
+        List<MapRecord<String, Object, Object>> tail = Arrays.asList(
+                record(lastDeliveredId), record(undeliveredId));
+        StringRedisTemplate redisTemplate = mockStream(null, lastDeliveredId, tail);
+        StreamBacklogMonitor monitor = new StreamBacklogMonitor(redisTemplate, 5000, 100_000, true);
+
+        // When
+        monitor.check();
+
+        // Then
+        assertTrue(monitor.shouldShed());
+        assertTrue((long) monitor.stats().get("lagMillis") >= 6000);
+    }
+
+    /**
+     * 模拟只有一个消费者组的订单Stream
+     *
+     * @param pendingId 最小的pending id，为null时没有pending消息
+     * @param tail      从lastDeliveredId开始的消息
+     */
+    @SuppressWarnings("unchecked")
+    private StringRedisTemplate mockStream(String pendingId, String lastDeliveredId,
+                                           List<MapRecord<String, Object, Object>> tail) {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        StreamOperations<String, Object, Object> streamOperations = mock(StreamOperations.class);
+        when(redisTemplate.hasKey(SECKILL_ORDER_STREAM)).thenReturn(true);
+        when(redisTemplate.opsForStream()).thenReturn(streamOperations);
+        when(streamOperations.groups(SECKILL_ORDER_STREAM)).thenReturn(StreamInfo.XInfoGroups.fromList(
+                Collections.singletonList(Arrays.asList("name", SECKILL_ORDER_GROUP, "consumers", 1L,
+                        "pending", pendingId == null ? 0L : 1L, "last-delivered-id", lastDeliveredId))));
+        PendingMessagesSummary summary = pendingId == null
+                ? new PendingMessagesSummary(SECKILL_ORDER_GROUP, 0, Range.unbounded(), Collections.emptyMap())
+                : new PendingMessagesSummary(SECKILL_ORDER_GROUP, 1, Range.closed(pendingId, pendingId),
+                Collections.singletonMap("c1", 1L));
+        when(streamOperations.pending(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP)).thenReturn(summary);
+        when(streamOperations.range(eq(SECKILL_ORDER_STREAM), any(Range.class), any(Limit.class))).thenReturn(tail);
+        when(streamOperations.size(SECKILL_ORDER_STREAM)).thenReturn(10L);
+        return redisTemplate;
+    }
+
+    private MapRecord<String, Object, Object> record(String id) {
+        return StreamRecords.newRecord().in(SECKILL_ORDER_STREAM).withId(RecordId.of(id))
+                .ofMap(Collections.<Object, Object>singletonMap("id", "1"));
+    }
+}
@@ -0,0 +1,159 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_GROUP;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+import static com.hmdp.utils.RedisConstants.STREAM_CONSUMER_KEY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * StreamConsumerRegistry 单元测试
+ */
+@DisplayName("Stream消费者注册中心测试")
+class StreamConsumerRegistryTest {
+
+    private static final String HEARTBEAT_KEY = STREAM_CONSUMER_KEY + SECKILL_ORDER_STREAM + ":" + SECKILL_ORDER_GROUP;
+
+    private static final long DEAD_MS = 60000;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private ZSetOperations<String, String> zSetOperations;
+
+    private StreamOperations<String, Object, Object> streamOperations;
+
+    private StreamConsumerRegistry registry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        zSetOperations = mock(ZSetOperations.class);
+        streamOperations = mock(StreamOperations.class);
+        when(stringRedisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(stringRedisTemplate.opsForStream()).thenReturn(streamOperations);
+        registry = new StreamConsumerRegistry(stringRedisTemplate, DEAD_MS);
+    }
+
+    @Test
+    @DisplayName("注册消费者 - 名称带节点标识且不重复，并立即写入心跳")
+    void register_ShouldUseUniqueNamesAndWriteHeartbeat() {
+        // When
+        Consumer first = registry.register(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP);
+        Consumer second = registry.register(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP);
+
+        // Then
+        assertEquals(SECKILL_ORDER_GROUP, first.getGroup());
+        assertTrue(first.getName().startsWith(CacheClient.NODE_ID + "-"));
+        assertNotEquals(first.getName(), second.getName());
+        verify(zSetOperations).add(eq(HEARTBEAT_KEY), eq(first.getName()), anyDouble());
+        verify(zSetOperations).add(eq(HEARTBEAT_KEY), eq(second.getName()), anyDouble());
+    }
+
+    @Test
+    @DisplayName("心跳 - 刷新本节点消费者的心跳时间")
+    void heartbeat_ShouldRefreshRegisteredConsumers() {
+        // Given
+        Consumer consumer = registry.register(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP);
+        when(streamOperations.consumers(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP)).thenReturn(consumersOf());
+        long before = System.currentTimeMillis();
+
+        // When
+        registry.heartbeat();
+
+        // Then - 注册时一次，心跳时一次，心跳时间不早于调用时间
+        ArgumentCaptor<Double> scores = ArgumentCaptor.forClass(Double.class);
+        verify(zSetOperations, times(2)).add(eq(HEARTBEAT_KEY), eq(consumer.getName()), scores.capture());
+        assertTrue(scores.getAllValues().get(1) >= before);
+    }
+
+    @Test
+    @DisplayName("清理下线消费者 - 只删除心跳超时、空闲超时且没有pending消息的消费者")
+    void heartbeat_ShouldRemoveOnlyDeadConsumersWithoutPending() {
+        // Given - dead已下线且没有pending，busy已下线但还有pending，alive心跳正常
+        registry.register(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP);
+        long now = System.currentTimeMillis();
+        when(streamOperations.consumers(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP)).thenReturn(consumersOf(
+                consumer("dead", 0, DEAD_MS * 2),
+                consumer("busy", 3, DEAD_MS * 2),
+                consumer("alive", 0, DEAD_MS * 2)));
+        when(zSetOperations.score(HEARTBEAT_KEY, "dead")).thenReturn((double) (now - DEAD_MS * 2));
+        when(zSetOperations.score(HEARTBEAT_KEY, "busy")).thenReturn((double) (now - DEAD_MS * 2));
+        when(zSetOperations.score(HEARTBEAT_KEY, "alive")).thenReturn((double) now);
+
+        // When
+        registry.heartbeat();
+
+        // Then - pending消息等待XAUTOCLAIM认领完后再删除
+        verify(streamOperations).deleteConsumer(SECKILL_ORDER_STREAM, Consumer.from(SECKILL_ORDER_GROUP, "dead"));
+        verify(streamOperations, times(1)).deleteConsumer(anyString(), any(Consumer.class));
+        verify(zSetOperations).remove(HEARTBEAT_KEY, "dead");
+        verify(zSetOperations).removeRangeByScore(eq(HEARTBEAT_KEY), eq(0D), anyDouble());
+    }
+
+    @Test
+    @DisplayName("认领消息 - 解析XAUTOCLAIM结果，跳过已删除的消息，下一次从返回的游标继续")
+    void claim_ShouldParseReplyAndKeepCursor() {
+        // Given - 第一次返回游标5-0，一条消息和一条已删除的消息(nil在Lua中转换为false)
+        Consumer consumer = registry.register(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP);
+        List<Object> entry = Arrays.asList("1-0", Arrays.asList("id", "1", "userId", "100"));
+        when(stringRedisTemplate.execute(any(RedisScript.class), anyList(), any(), any(), any(), any(), any()))
+                .thenReturn(Arrays.asList("5-0", Arrays.asList(entry, false)))
+                .thenReturn(Arrays.asList("0-0", Collections.emptyList()));
+
+        // When
+        List<MapRecord<String, Object, Object>> first = registry.claim(SECKILL_ORDER_STREAM, consumer, 30000, 10);
+        List<MapRecord<String, Object, Object>> second = registry.claim(SECKILL_ORDER_STREAM, consumer, 30000, 10);
+
+        // Then
+        assertEquals(1, first.size());
+        assertEquals("1-0", first.get(0).getId().getValue());
+        assertEquals("100", first.get(0).getValue().get("userId"));
+        assertTrue(second.isEmpty());
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(Collections.singletonList(SECKILL_ORDER_STREAM)),
+                eq(SECKILL_ORDER_GROUP), eq(consumer.getName()), eq("30000"), eq("0-0"), eq("10"));
+        verify(stringRedisTemplate).execute(any(RedisScript.class), eq(Collections.singletonList(SECKILL_ORDER_STREAM)),
+                eq(SECKILL_ORDER_GROUP), eq(consumer.getName()), eq("30000"), eq("5-0"), eq("10"));
+    }
+
+    @Test
+    @DisplayName("停机 - 删除本节点消费者的心跳")
+    void unregisterAll_ShouldRemoveHeartbeats() {
+        // Given
+        Consumer consumer = registry.register(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP);
+
+        // When
+        registry.unregisterAll();
+        registry.heartbeat();
+
+        // Then - 已注销的消费者不再写入心跳
+        verify(zSetOperations).remove(HEARTBEAT_KEY, consumer.getName());
+        verify(zSetOperations, times(1)).add(eq(HEARTBEAT_KEY), eq(consumer.getName()), anyDouble());
+    }
+
+    private List<Object> consumer(String name, long pending, long idleMillis) {
+        return Arrays.asList("name", name, "pending", pending, "idle", idleMillis);
+    }
+
+    @SafeVarargs
+    private final StreamInfo.XInfoConsumers consumersOf(List<Object>... consumers) {
+        return StreamInfo.XInfoConsumers.fromList(SECKILL_ORDER_GROUP, Arrays.asList((Object[]) consumers));
+    }
+}
@@ -0,0 +1,150 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_GROUP;
+import static com.hmdp.utils.RedisConstants.SECKILL_ORDER_STREAM;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * StreamDeadLetterQueue 单元测试
+ */
+@DisplayName("Stream死信队列测试")
+class StreamDeadLetterQueueTest {
+
+    private static final String DLQ = SECKILL_ORDER_STREAM + StreamDeadLetterQueue.DLQ_SUFFIX;
+
+    private StreamOperations<String, Object, Object> streamOperations;
+
+    private StreamDeadLetterQueue deadLetterQueue;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        streamOperations = mock(StreamOperations.class);
+        when(stringRedisTemplate.opsForStream()).thenReturn(streamOperations);
+        deadLetterQueue = new StreamDeadLetterQueue(stringRedisTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("转移死信 - 保留原字段并追加原消息id、原因和投递次数，确认原消息")
+    void moveToDeadLetter_ShouldCopyFieldsAndAcknowledge() {
+        // Given
+        RecordId id = RecordId.of("1700000000000-0");
+        when(streamOperations.range(eq(SECKILL_ORDER_STREAM), any()))
+                .thenReturn(Collections.singletonList(createRecord(SECKILL_ORDER_STREAM, id.getValue(), orderFields())));
+
+        // When
+        Map<String, String> values = deadLetterQueue.moveToDeadLetter(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP, id, 5, "库存不足");
+
+        // Then
+        ArgumentCaptor<MapRecord<String, String, String>> dead = ArgumentCaptor.forClass(MapRecord.class);
+        verify(streamOperations).add(dead.capture());
+        assertEquals(DLQ, dead.getValue().getStream());
+        Map<String, String> fields = dead.getValue().getValue();
+        assertEquals("1", fields.get("id"));
+        assertEquals("100", fields.get("userId"));
+        assertEquals(id.getValue(), fields.get(StreamDeadLetterQueue.FIELD_SOURCE_ID));
+        assertEquals("库存不足", fields.get(StreamDeadLetterQueue.FIELD_REASON));
+        assertEquals("5", fields.get(StreamDeadLetterQueue.FIELD_ATTEMPTS));
+        assertEquals(fields, values);
+        verify(streamOperations).acknowledge(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP, id);
+    }
+
+    @Test
+    @DisplayName("转移死信 - 按原消息字段获取失败原因")
+    void moveToDeadLetter_WithReasonResolver_ShouldResolveFromSource() {
+        // Given
+        RecordId id = RecordId.of("1700000000000-0");
+        when(streamOperations.range(eq(SECKILL_ORDER_STREAM), any()))
+                .thenReturn(Collections.singletonList(createRecord(SECKILL_ORDER_STREAM, id.getValue(), orderFields())));
+
+        // When
+        Map<String, String> values = deadLetterQueue.moveToDeadLetter(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP, id, 5,
+                source -> "订单" + source.get("id") + "落库失败");
+
+        // Then
+        assertEquals("订单1落库失败", values.get(StreamDeadLetterQueue.FIELD_REASON));
+    }
+
+    @Test
+    @DisplayName("转移死信 - 原消息已被删除时只确认，不写入死信队列")
+    void moveToDeadLetter_WhenSourceMissing_ShouldOnlyAcknowledge() {
+        // Given
+        RecordId id = RecordId.of("1700000000000-0");
+        when(streamOperations.range(eq(SECKILL_ORDER_STREAM), any())).thenReturn(Collections.emptyList());
+
+        // When
+        Map<String, String> values = deadLetterQueue.moveToDeadLetter(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP, id, 5, "库存不足");
+
+        // Then
+        assertNull(values);
+        verify(streamOperations, never()).add(any(MapRecord.class));
+        verify(streamOperations).acknowledge(SECKILL_ORDER_STREAM, SECKILL_ORDER_GROUP, id);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    @DisplayName("重放 - 去掉dlq.*字段后写回原Stream，并从死信队列中删除")
+    void replay_ShouldRepublishOriginalFieldsAndDelete() {
+        // Given
+        Map<Object, Object> fields = orderFields();
+        fields.put(StreamDeadLetterQueue.FIELD_SOURCE_ID, "1700000000000-0");
+        fields.put(StreamDeadLetterQueue.FIELD_REASON, "库存不足");
+        fields.put(StreamDeadLetterQueue.FIELD_ATTEMPTS, "5");
+        when(streamOperations.range(eq(DLQ), any()))
+                .thenReturn(Collections.singletonList(createRecord(DLQ, "1700000001000-0", fields)));
+        when(streamOperations.add(any(MapRecord.class))).thenReturn(RecordId.of("1700000002000-0"));
+
+        // When
+        RecordId newId = deadLetterQueue.replay(SECKILL_ORDER_STREAM, "1700000001000-0");
+
+        // Then
+        assertEquals("1700000002000-0", newId.getValue());
+        ArgumentCaptor<MapRecord<String, String, String>> replayed = ArgumentCaptor.forClass(MapRecord.class);
+        verify(streamOperations).add(replayed.capture());
+        assertEquals(SECKILL_ORDER_STREAM, replayed.getValue().getStream());
+        assertEquals(3, replayed.getValue().getValue().size());
+        assertFalse(replayed.getValue().getValue().containsKey(StreamDeadLetterQueue.FIELD_REASON));
+        verify(streamOperations).delete(DLQ, "1700000001000-0");
+    }
+
+    @Test
+    @DisplayName("重放 - 死信消息不存在时返回null")
+    void replay_WhenMissing_ShouldReturnNull() {
+        // Given
+        when(streamOperations.range(eq(DLQ), any())).thenReturn(Collections.emptyList());
+
+        // When & Then
+        assertNull(deadLetterQueue.replay(SECKILL_ORDER_STREAM, "1700000001000-0"));
+        verify(streamOperations, never()).delete(anyString(), any(String[].class));
+    }
+
+    private Map<Object, Object> orderFields() {
+        Map<Object, Object> fields = new HashMap<>();
+        fields.put("id", "1");
+        fields.put("userId", "100");
+        fields.put("voucherId", "2");
+        return fields;
+    }
+
+    private MapRecord<String, Object, Object> createRecord(String stream, String id, Map<Object, Object> fields) {
+        return StreamRecords.newRecord().in(stream).withId(RecordId.of(id)).ofMap(fields);
+    }
+}
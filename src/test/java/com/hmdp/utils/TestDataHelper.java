@@ -10,6 +10,8 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+
 /**
  * 测试数据准备工具类
  * 用于在集成测试中准备和清理测试数据
@@ -26,6 +28,9 @@ public class TestDataHelper {
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
 
+    @Autowired
+    private BloomFilterRegistry bloomFilterRegistry;
+
     /**
      * 创建测试商铺并插入数据库
      * 
@@ -50,6 +55,8 @@ public class TestDataHelper {
         shop.setCreateTime(LocalDateTime.now());
         
         shopMapper.insert(shop);
+        // 直接插入数据库的店铺也要加入布隆过滤器，否则查询会被拦截
+        bloomFilterRegistry.add(CACHE_SHOP_KEY, shop.getId());
         return shop;
     }
 